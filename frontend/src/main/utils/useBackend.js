@@ -25,12 +25,40 @@ import { toast } from "react-toastify";
 //     []
 // );
 
+// The backend sends an ETag with GET responses that can be revalidated.
+// The last ETag and data for each GET url and params are kept here, so
+// that a refetch sends If-None-Match and reuses the data on a 304.
+const etagCache = new Map();
+
+export async function getWithEtag(axiosParameters) {
+    const method = (axiosParameters.method || "GET").toUpperCase();
+    if (method !== "GET") {
+        return (await axios(axiosParameters)).data;
+    }
+    const key = JSON.stringify([axiosParameters.url, axiosParameters.params]);
+    const cached = etagCache.get(key);
+    const headers = cached ? { ...axiosParameters.headers, "If-None-Match": cached.etag } : axiosParameters.headers;
+    const response = await axios({
+        ...axiosParameters,
+        headers,
+        validateStatus: (status) => (status >= 200 && status < 300) || (cached !== undefined && status === 304)
+    });
+    if (response.status === 304) {
+        return cached.data;
+    }
+    if (response.headers.etag) {
+        etagCache.set(key, { etag: response.headers.etag, data: response.data });
+    } else {
+        etagCache.delete(key);
+    }
+    return response.data;
+}
+
 export function useBackend(queryKey, axiosParameters, initialData) {
 
     return useQuery(queryKey, async () => {
         try {
-            const response = await axios(axiosParameters);
-            return response.data;
+            return await getWithEtag(axiosParameters);
         } catch (e) {
             const errorMessage = `Error communicating with backend via ${axiosParameters.method} on ${axiosParameters.url}`;
             toast(errorMessage);
@@ -3,7 +3,7 @@ import { renderHook, act } from '@testing-library/react-hooks'
 
 import axios from "axios";
 import AxiosMockAdapter from "axios-mock-adapter";
-import { useBackend, useBackendMutation } from "main/utils/useBackend";
+import { useBackend, useBackendMutation, getWithEtag } from "main/utils/useBackend";
 
 
 jest.mock('react-router-dom');
@@ -187,4 +187,68 @@ describe("utils/useBackend tests", () => {
             expect(errorMessage2).toMatch(/onError from mutation.mutate called!/);
         });
     });
-});
\ No newline at end of file
+    describe("utils/useBackend getWithEtag tests", () => {
+        test("test getWithEtag sends If-None-Match and reuses the data on 304", async () => {
+            const axiosMock = new AxiosMockAdapter(axios);
+            const requests = [];
+            axiosMock.onGet("/api/ucsbdates/all").reply((config) => {
+                requests.push(config.headers);
+                return requests.length === 1 ? [200, [{ id: 1 }], { etag: '"ucsbdates-1-0"' }] : [304];
+            });
+
+            const params = { method: "GET", url: "/api/ucsbdates/all" };
+            expect(await getWithEtag(params)).toEqual([{ id: 1 }]);
+            expect(await getWithEtag(params)).toEqual([{ id: 1 }]);
+
+            expect(requests[0]["If-None-Match"]).toBeUndefined();
+            expect(requests[1]["If-None-Match"]).toBe('"ucsbdates-1-0"');
+        });
+
+        test("test getWithEtag keeps separate tags per params and replaces a changed tag", async () => {
+            const axiosMock = new AxiosMockAdapter(axios);
+            const requests = [];
+            axiosMock.onGet("/api/ucsbdates").reply((config) => {
+                requests.push(config);
+                const version = requests.length;
+                return [200, { id: config.params.id, version }, { etag: `"v${version}"` }];
+            });
+
+            expect(await getWithEtag({ method: "GET", url: "/api/ucsbdates", params: { id: 1 } })).toEqual({ id: 1, version: 1 });
+            expect(await getWithEtag({ method: "GET", url: "/api/ucsbdates", params: { id: 2 } })).toEqual({ id: 2, version: 2 });
+            expect(await getWithEtag({ method: "GET", url: "/api/ucsbdates", params: { id: 1 } })).toEqual({ id: 1, version: 3 });
+            expect(await getWithEtag({ method: "GET", url: "/api/ucsbdates", params: { id: 1 } })).toEqual({ id: 1, version: 4 });
+
+            expect(requests[1].headers["If-None-Match"]).toBeUndefined();
+            expect(requests[2].headers["If-None-Match"]).toBe('"v1"');
+            expect(requests[3].headers["If-None-Match"]).toBe('"v3"');
+        });
+
+        test("test getWithEtag forgets the tag when a response has none", async () => {
+            const axiosMock = new AxiosMockAdapter(axios);
+            const requests = [];
+            axiosMock.onGet("/api/currentUser").reply((config) => {
+                requests.push(config.headers);
+                return requests.length === 1 ? [200, "first", { etag: '"t1"' }] : [200, "again"];
+            });
+
+            const params = { url: "/api/currentUser" };
+            expect(await getWithEtag(params)).toEqual("first");
+            expect(await getWithEtag(params)).toEqual("again");
+            expect(await getWithEtag(params)).toEqual("again");
+
+            expect(requests[1]["If-None-Match"]).toBe('"t1"');
+            expect(requests[2]["If-None-Match"]).toBeUndefined();
+        });
+
+        test("test getWithEtag rejects a 304 it has no data for, and does not tag other methods", async () => {
+            const axiosMock = new AxiosMockAdapter(axios);
+            axiosMock.onGet("/api/ucsborganization/all").reply(304);
+            axiosMock.onPost("/api/ucsborganization/post").reply((config) => [200, { ifNoneMatch: config.headers["If-None-Match"] }, { etag: '"x"' }]);
+
+            await expect(getWithEtag({ method: "GET", url: "/api/ucsborganization/all" })).rejects.toThrow("Request failed with status code 304");
+            const params = { method: "post", url: "/api/ucsborganization/post" };
+            expect(await getWithEtag(params)).toEqual({});
+            expect(await getWithEtag(params)).toEqual({});
+        });
+    });
+});
@@ -0,0 +1,21 @@
+package edu.ucsb.cs156.example.aop;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Lets concurrent identical calls of a read-only controller handler share
+// one execution (see CoalescingAspect).  Calls are identical when they
+// have equal arguments, callers with the same authorities (or the same
+// user, with perUser) and, for @VersionedTable controllers, the same
+// table version.  Only for handlers whose result may be shared as is.
+
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CoalesceRequests {
+  // true when the result depends on who is asking, not just on their roles
+  boolean perUser() default false;
+}
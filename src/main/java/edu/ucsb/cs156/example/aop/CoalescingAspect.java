@@ -0,0 +1,86 @@
+package edu.ucsb.cs156.example.aop;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import edu.ucsb.cs156.example.interceptors.VersionedTable;
+import edu.ucsb.cs156.example.services.ResponseFormats;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Runs @CoalesceRequests handlers through a SingleFlight, so that when many
+// clients ask for the same thing at once only one call reaches the
+// database and every caller gets its result.  The caller's authorities
+// are part of the key, so a shared result only goes to callers that
+// @PreAuthorize would have let through on their own.  So is the format
+// the response is negotiated to (ResponseFormats), as handlers that encode
+// their own body return JSON, CBOR or Smile bytes.  The table version
+// is too, so a call that starts after a write never gets a result read
+// before it.  Records app.handler.coalesced, per handler (Controller.method),
+// counting the calls answered with another call's result.
+
+@Aspect
+@Component
+public class CoalescingAspect {
+
+  record Key(String handler, List<Object> args, Object caller, MediaType format, long version) {
+  }
+
+  @Autowired
+  MeterRegistry meterRegistry;
+
+  @Autowired
+  TableVersionService tableVersions;
+
+  @Autowired
+  ResponseFormats formats;
+
+  private final SingleFlight<Key> flights = new SingleFlight<>();
+
+  @Around("@annotation(coalesce)")
+  public Object coalesce(ProceedingJoinPoint joinPoint, CoalesceRequests coalesce) throws Throwable {
+    Class<?> controller = joinPoint.getSignature().getDeclaringType();
+    String handler = controller.getSimpleName() + "." + joinPoint.getSignature().getName();
+    VersionedTable table = joinPoint.getTarget().getClass().getAnnotation(VersionedTable.class);
+    Key key = new Key(handler,
+        Arrays.asList(joinPoint.getArgs()),
+        caller(coalesce.perUser()),
+        formats.negotiate(),
+        table == null ? 0 : tableVersions.version(table.value()));
+    return flights.run(key, joinPoint::proceed, () -> coalesced(handler).increment());
+  }
+
+  private static Object caller(boolean perUser) {
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    if (authentication == null) {
+      return null;
+    }
+    if (perUser) {
+      return authentication.getName();
+    }
+    Set<String> authorities = authentication.getAuthorities().stream()
+        .map(GrantedAuthority::getAuthority)
+        .collect(Collectors.toSet());
+    return List.of(authentication.isAuthenticated(), authorities);
+  }
+
+  private Counter coalesced(String handler) {
+    return Counter.builder("app.handler.coalesced")
+        .description("Calls of @CoalesceRequests handlers that shared a concurrent identical call's result")
+        .tag("handler", handler)
+        .register(meterRegistry);
+  }
+}
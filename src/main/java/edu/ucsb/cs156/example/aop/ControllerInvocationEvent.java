@@ -0,0 +1,50 @@
+package edu.ucsb.cs156.example.aop;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// Flight Recorder event for one controller handler call, committed by
+// LoggingAspect.  The event's own start time and duration cover the handler
+// method; fields are filled in only when the event is enabled and recorded.
+
+@Name("edu.ucsb.cs156.example.ControllerInvocation")
+@Label("Controller Invocation")
+@Category({ "UCSB CS156", "Controllers" })
+@Description("A call to a controller handler method")
+@StackTrace(false)
+public class ControllerInvocationEvent extends Event {
+
+  @Label("Handler")
+  @Description("Controller.method")
+  String handler;
+
+  @Label("HTTP Method")
+  String method;
+
+  @Label("URI")
+  String uri;
+
+  @Label("Status")
+  @Description("HTTP status of the handler's result, or the status its exception maps to")
+  int status;
+
+  @Label("Exception")
+  String exception;
+
+  @Label("Allocated")
+  @Description("Bytes allocated by the request thread inside the handler, or -1 if unknown")
+  @DataAmount
+  long allocated;
+
+  @Label("SQL Statements")
+  long statements;
+
+  @Label("User")
+  @Description("Principal name (the Google subject id) or null when not logged in")
+  String user;
+}
@@ -1,19 +1,65 @@
 package edu.ucsb.cs156.example.aop;
 
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.StatementBudgetExceededException;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
-import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
-import org.aspectj.lang.annotation.Before;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
+import com.sun.management.ThreadMXBean;
+
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Logs a sample of controller calls (see RequestLogSampling) as key=value
+// pairs, formatted only for the calls that are logged, and records,
+// per handler (Controller.method):
+//   app.handler.duration  timer with p50/p95/p99, tagged with the exception thrown (or none)
+//   app.handler.errors    counter of calls that threw, tagged with the exception
+//   app.handler.inflight  gauge of calls currently running
+//   app.handler.allocated distribution (p50/p95/p99) of bytes the calling thread
+//                         allocated inside the handler, when the JVM supports it
+//   app.handler.statements distribution of SQL statements issued inside the
+//                         handler (SqlStatementCounter), checked against the
+//                         handler's @StatementBudget if it has one
+// When a handler returns a StreamingResponseBody its queries run later, on a
+// streaming thread, so allocations and statements are recorded (and the
+// budget checked) once the body has been written, adding what the body did
+// there to what the handler did on the request thread.
+// all visible under /actuator/metrics.  The meters are built and registered
+// once per handler (and exception) and kept in a map, not on every call.
+// Each call is also a ControllerInvocationEvent for JDK Flight Recorder.
 
 @Slf4j
 @Aspect
@@ -32,16 +78,210 @@ public class LoggingAspect {
   private ArrayList<String> stoplist = new ArrayList<String>(Arrays.asList(
       "edu.ucsb.cs156.example.controllers.FrontendProxyController"));
 
-  @Before(pointcut)
-  public void logControllers(JoinPoint joinPoint) {
-    getCurrentHttpRequest().ifPresent(
-        request -> {
-          String declaringTypeName = joinPoint.getSignature().getDeclaringTypeName();
-          if (!stoplist.contains(declaringTypeName)) {
-            log.info("===== %s %s handled by %s in %s".formatted(request.getMethod(), request.getRequestURI(),
-                joinPoint.getSignature().getName(), declaringTypeName));
-          }
-        });
+  @Autowired
+  MeterRegistry meterRegistry;
+
+  @Autowired
+  RequestLogSampling requestLogSampling;
+
+  @Value("${app.sql.budget.failOnExceed:false}")
+  boolean failOnStatementBudget;
+
+  // the meters of one handler
+  private final class HandlerMeters {
+    final String handler;
+    final AtomicInteger inFlight = new AtomicInteger();
+    final ConcurrentMap<String, Timer> durations = new ConcurrentHashMap<>();
+    final ConcurrentMap<String, Counter> errors = new ConcurrentHashMap<>();
+    final DistributionSummary allocated;
+    final DistributionSummary statements;
+
+    HandlerMeters(String handler) {
+      this.handler = handler;
+      Gauge.builder("app.handler.inflight", inFlight, AtomicInteger::get)
+          .description("Controller handler calls currently running")
+          .tag("handler", handler)
+          .register(meterRegistry);
+      allocated = !allocationSupported ? null : DistributionSummary.builder("app.handler.allocated")
+          .description("Bytes allocated by the request thread inside controller handler methods")
+          .baseUnit(BaseUnits.BYTES)
+          .tag("handler", handler)
+          .publishPercentiles(0.5, 0.95, 0.99)
+          .register(meterRegistry);
+      statements = DistributionSummary.builder("app.handler.statements")
+          .description("SQL statements issued inside controller handler methods")
+          .tag("handler", handler)
+          .publishPercentiles(0.5, 0.95, 0.99)
+          .register(meterRegistry);
+    }
+
+    Timer duration(String exception) {
+      return durations.computeIfAbsent(exception, e -> Timer.builder("app.handler.duration")
+          .description("Time spent in controller handler methods")
+          .tag("handler", handler)
+          .tag("exception", e)
+          .publishPercentiles(0.5, 0.95, 0.99)
+          .register(meterRegistry));
+    }
+
+    Counter errors(String exception) {
+      return errors.computeIfAbsent(exception, e -> Counter.builder("app.handler.errors")
+          .tag("handler", handler)
+          .tag("exception", e)
+          .register(meterRegistry));
+    }
+  }
+
+  private final ConcurrentMap<String, HandlerMeters> meters = new ConcurrentHashMap<>();
+
+  private static final ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+  private static final boolean allocationSupported = threads.isThreadAllocatedMemorySupported()
+      && threads.isThreadAllocatedMemoryEnabled();
+
+  @Around(pointcut)
+  public Object logControllers(ProceedingJoinPoint joinPoint) throws Throwable {
+    String declaringTypeName = joinPoint.getSignature().getDeclaringTypeName();
+    if (stoplist.contains(declaringTypeName)) {
+      return joinPoint.proceed();
+    }
+    String handler = joinPoint.getSignature().getDeclaringType().getSimpleName() + "." + joinPoint.getSignature().getName();
+    if (log.isInfoEnabled() && requestLogSampling.sample(handler)) {
+      getCurrentHttpRequest().ifPresent(
+          request -> log.info("request method={} uri={} handler={}", request.getMethod(), request.getRequestURI(), handler));
+    }
+
+    HandlerMeters handlerMeters = meters.computeIfAbsent(handler, HandlerMeters::new);
+    handlerMeters.inFlight.incrementAndGet();
+    Timer.Sample sample = Timer.start(meterRegistry);
+    ControllerInvocationEvent event = new ControllerInvocationEvent();
+    event.begin();
+    StatementBudget budget = ((MethodSignature) joinPoint.getSignature()).getMethod().getAnnotation(StatementBudget.class);
+    long allocatedBefore = allocatedBytes();
+    int[] statements = SqlStatementCounter.start();
+    String exception = "none";
+    Object result = null;
+    Throwable thrown = null;
+    boolean streamed = false;
+    try {
+      result = joinPoint.proceed();
+      StreamingResponseBody body = streamingBody(result);
+      if (body != null) {
+        long allocated = allocatedBefore < 0 ? -1 : allocatedBytes() - allocatedBefore;
+        result = withBody(result, measured(body, handler, handlerMeters, budget, allocated, statements[0]));
+        streamed = true;
+      } else {
+        checkStatementBudget(budget, handler, statements[0]);
+      }
+      return result;
+    } catch (Throwable t) {
+      thrown = t;
+      exception = t.getClass().getSimpleName();
+      handlerMeters.errors(exception).increment();
+      throw t;
+    } finally {
+      SqlStatementCounter.stop();
+      handlerMeters.inFlight.decrementAndGet();
+      sample.stop(handlerMeters.duration(exception));
+      long allocated = allocatedBefore < 0 ? -1 : allocatedBytes() - allocatedBefore;
+      if (!streamed) {
+        record(handlerMeters, allocated, statements[0]);
+      }
+      event.end();
+      if (event.shouldCommit()) {
+        event.allocated = allocated;
+        event.statements = statements[0];
+        commit(event, handler, result, thrown);
+      }
+    }
+  }
+
+  private static void record(HandlerMeters handlerMeters, long allocated, int statements) {
+    if (allocated >= 0) {
+      handlerMeters.allocated.record(allocated);
+    }
+    handlerMeters.statements.record(statements);
+  }
+
+  // The body a handler left to be written on a streaming thread, if any
+  private static StreamingResponseBody streamingBody(Object result) {
+    if (result instanceof StreamingResponseBody body) {
+      return body;
+    } else if (result instanceof ResponseEntity<?> entity && entity.getBody() instanceof StreamingResponseBody body) {
+      return body;
+    }
+    return null;
+  }
+
+  private static Object withBody(Object result, StreamingResponseBody body) {
+    if (result instanceof ResponseEntity<?> entity) {
+      return new ResponseEntity<>(body, entity.getHeaders(), entity.getStatusCode());
+    }
+    return body;
+  }
+
+  // body, counting what it allocates and the statements it issues on the
+  // thread that writes it, on top of what the handler itself did
+  private StreamingResponseBody measured(StreamingResponseBody body, String handler, HandlerMeters handlerMeters,
+      StatementBudget budget, long handlerAllocated, int handlerStatements) {
+    return out -> {
+      long allocatedBefore = handlerAllocated < 0 ? -1 : allocatedBytes();
+      int[] statements = SqlStatementCounter.start();
+      try {
+        body.writeTo(out);
+      } finally {
+        SqlStatementCounter.stop();
+        long allocated = allocatedBefore < 0 ? -1 : handlerAllocated + allocatedBytes() - allocatedBefore;
+        record(handlerMeters, allocated, handlerStatements + statements[0]);
+      }
+      checkStatementBudget(budget, handler, handlerStatements + statements[0]);
+    };
+  }
+
+  private void checkStatementBudget(StatementBudget budget, String handler, int statements) {
+    if (budget == null || statements <= budget.value()) {
+      return;
+    }
+    if (failOnStatementBudget) {
+      throw new StatementBudgetExceededException(handler, budget.value(), statements);
+    }
+    log.warn("statement budget exceeded handler={} statements={} budget={}", handler, statements, budget.value());
+  }
+
+  private static void commit(ControllerInvocationEvent event, String handler, Object result, Throwable thrown) {
+    event.handler = handler;
+    getCurrentHttpRequest().ifPresent(request -> {
+      event.method = request.getMethod();
+      event.uri = request.getRequestURI();
+    });
+    event.status = status(result, thrown);
+    event.exception = thrown == null ? null : thrown.getClass().getSimpleName();
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    if (authentication != null && !(authentication instanceof AnonymousAuthenticationToken)) {
+      event.user = authentication.getName();
+    }
+    event.commit();
+  }
+
+  // The status the response will carry, as far as it is known when the handler returns
+  private static int status(Object result, Throwable thrown) {
+    if (thrown instanceof ResponseStatusException e) {
+      return e.getRawStatusCode();
+    } else if (thrown instanceof EntityNotFoundException) {
+      return HttpStatus.NOT_FOUND.value();
+    } else if (thrown instanceof AccessDeniedException) {
+      return HttpStatus.FORBIDDEN.value();
+    } else if (thrown != null) {
+      ResponseStatus annotated = AnnotatedElementUtils.findMergedAnnotation(thrown.getClass(), ResponseStatus.class);
+      return annotated != null ? annotated.code().value() : HttpStatus.INTERNAL_SERVER_ERROR.value();
+    } else if (result instanceof ResponseEntity<?> entity) {
+      return entity.getStatusCodeValue();
+    }
+    return getCurrentHttpResponse().map(HttpServletResponse::getStatus).orElse(HttpStatus.OK.value());
+  }
+
+  // Bytes allocated so far by the current thread, or -1 when the JVM does not track them
+  private static long allocatedBytes() {
+    return allocationSupported ? threads.getCurrentThreadAllocatedBytes() : -1;
   }
 
   private static Optional<HttpServletRequest> getCurrentHttpRequest() {
@@ -50,4 +290,11 @@ public class LoggingAspect {
         .map(ServletRequestAttributes.class::cast)
         .map(ServletRequestAttributes::getRequest);
   }
+
+  private static Optional<HttpServletResponse> getCurrentHttpResponse() {
+    return Optional.ofNullable(RequestContextHolder.getRequestAttributes())
+        .filter(ServletRequestAttributes.class::isInstance)
+        .map(ServletRequestAttributes.class::cast)
+        .map(ServletRequestAttributes::getResponse);
+  }
 }
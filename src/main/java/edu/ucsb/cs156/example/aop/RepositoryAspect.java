@@ -0,0 +1,101 @@
+package edu.ucsb.cs156.example.aop;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.BaseStream;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.core.support.AbstractRepositoryMetadata;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+// Emits a RepositoryCallEvent (JDK Flight Recorder) for every call to one
+// of our Spring Data repositories, with the entity, the method, and how
+// many rows came back (or, for an @Modifying query, how many it changed).
+// A Stream is read after the call returns, so its rows are not known here.
+// When the event is not enabled in a recording this costs one
+// shouldCommit() check per call.
+
+@Aspect
+@Component
+public class RepositoryAspect {
+
+  private final ConcurrentMap<Class<?>, String[]> names = new ConcurrentHashMap<>();
+
+  @Around("execution(* org.springframework.data.repository.Repository+.*(..))")
+  public Object recordRepositoryCall(ProceedingJoinPoint joinPoint) throws Throwable {
+    RepositoryCallEvent event = new RepositoryCallEvent();
+    if (!event.isEnabled()) {
+      return joinPoint.proceed();
+    }
+    event.begin();
+    Object result = null;
+    try {
+      result = joinPoint.proceed();
+      return result;
+    } catch (Throwable t) {
+      event.exception = t.getClass().getSimpleName();
+      throw t;
+    } finally {
+      event.end();
+      if (event.shouldCommit()) {
+        String[] repository = names(joinPoint.getTarget());
+        event.entity = repository[0];
+        event.method = repository[1] + "." + joinPoint.getSignature().getName();
+        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+        boolean returnsRows = event.exception == null && signature.getReturnType() != void.class;
+        boolean modifying = AnnotatedElementUtils.hasAnnotation(signature.getMethod(), Modifying.class);
+        event.rows = returnsRows ? rows(result, modifying) : -1;
+        event.commit();
+      }
+    }
+  }
+
+  // { entity simple name, repository interface simple name }
+  private String[] names(Object target) {
+    return names.computeIfAbsent(target.getClass(), type -> {
+      for (Class<?> i : ClassUtils.getAllInterfacesForClass(type)) {
+        if (Repository.class.isAssignableFrom(i) && !i.getName().startsWith("org.springframework.")) {
+          return new String[] {
+              AbstractRepositoryMetadata.getMetadata(i).getDomainType().getSimpleName(),
+              i.getSimpleName() };
+        }
+      }
+      return new String[] { "unknown", type.getSimpleName() };
+    });
+  }
+
+  static long rows(Object result, boolean modifying) {
+    if (result == null) {
+      return 0;
+    } else if (result instanceof BaseStream<?, ?>) {
+      return -1;
+    } else if (modifying && (result instanceof Integer || result instanceof Long)) {
+      return ((Number) result).longValue();
+    } else if (result instanceof Collection<?> c) {
+      return c.size();
+    } else if (result instanceof Slice<?> s) {
+      return s.getNumberOfElements();
+    } else if (result instanceof Optional<?> o) {
+      return o.isPresent() ? 1 : 0;
+    } else if (result instanceof Iterable<?> it) {
+      long n = 0;
+      for (Object ignored : it) {
+        n++;
+      }
+      return n;
+    } else if (result instanceof Number || result instanceof Boolean) {
+      return -1;
+    }
+    return 1;
+  }
+}
@@ -0,0 +1,33 @@
+package edu.ucsb.cs156.example.aop;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// Flight Recorder event for one call to a Spring Data repository method,
+// committed by RepositoryAspect.
+
+@Name("edu.ucsb.cs156.example.RepositoryCall")
+@Label("Repository Call")
+@Category({ "UCSB CS156", "Repositories" })
+@Description("A call to a Spring Data repository method")
+@StackTrace(false)
+public class RepositoryCallEvent extends Event {
+
+  @Label("Entity")
+  String entity;
+
+  @Label("Method")
+  @Description("Repository.method")
+  String method;
+
+  @Label("Rows")
+  @Description("Rows returned, or changed by an @Modifying query; -1 when not known (streams, counts, void, exceptions)")
+  long rows;
+
+  @Label("Exception")
+  String exception;
+}
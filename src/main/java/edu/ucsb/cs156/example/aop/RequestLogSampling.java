@@ -0,0 +1,27 @@
+package edu.ucsb.cs156.example.aop;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+// Fraction of controller calls that LoggingAspect logs, per handler
+// (Controller.method).  Handlers not listed in app.logging.sample.rates use
+// app.logging.sample.defaultRate; a rate of 0 turns a handler's line off.
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.logging.sample")
+public class RequestLogSampling {
+  private double defaultRate = 1.0;
+  private Map<String, Double> rates = new HashMap<>();
+
+  public boolean sample(String handler) {
+    double rate = rates.getOrDefault(handler, defaultRate);
+    return rate >= 1.0 || (rate > 0.0 && ThreadLocalRandom.current().nextDouble() < rate);
+  }
+}
@@ -0,0 +1,110 @@
+package edu.ucsb.cs156.example.aop;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+
+// Per-request breakdown of where the time went, sent to the client as a
+// Server-Timing header by ServerTimingFilter.  ServerTimingAspect and
+// TimedJackson2HttpMessageConverter bracket work with enter()/exit(); the
+// phases are exclusive, so a repository call made while resolving the
+// current user counts as db time, not auth time.  "app" is whatever is
+// left of the total.  Calls on threads with no timing (no request, or an
+// async thread) are ignored.
+
+public class ServerTiming {
+
+  public enum Phase {
+    DB("db", "Database"),
+    AUTH("auth", "Current user and authorities"),
+    SERIALIZATION("ser", "Serialization");
+
+    private final String metric;
+    private final String description;
+
+    Phase(String metric, String description) {
+      this.metric = metric;
+      this.description = description;
+    }
+  }
+
+  private static final ThreadLocal<ServerTiming> current = new ThreadLocal<>();
+
+  private final long startNanos;
+  private final long[] nanos = new long[Phase.values().length];
+  private final Deque<Phase> open = new ArrayDeque<>();
+  private long openedAt;
+
+  ServerTiming(long startNanos) {
+    this.startNanos = startNanos;
+  }
+
+  public static ServerTiming start() {
+    ServerTiming timing = new ServerTiming(System.nanoTime());
+    current.set(timing);
+    return timing;
+  }
+
+  public static void clear() {
+    current.remove();
+  }
+
+  public static void enter(Phase phase) {
+    ServerTiming timing = current.get();
+    if (timing != null) {
+      timing.push(phase, System.nanoTime());
+    }
+  }
+
+  public static void exit() {
+    ServerTiming timing = current.get();
+    if (timing != null) {
+      timing.pop(System.nanoTime());
+    }
+  }
+
+  synchronized void push(Phase phase, long now) {
+    if (!open.isEmpty()) {
+      nanos[open.peek().ordinal()] += now - openedAt;
+    }
+    open.push(phase);
+    openedAt = now;
+  }
+
+  synchronized void pop(long now) {
+    if (!open.isEmpty()) {
+      nanos[open.pop().ordinal()] += now - openedAt;
+      openedAt = now;
+    }
+  }
+
+  public String header() {
+    return header(System.nanoTime());
+  }
+
+  synchronized String header(long now) {
+    StringBuilder header = new StringBuilder();
+    long accounted = 0;
+    for (Phase phase : Phase.values()) {
+      long phaseNanos = nanos[phase.ordinal()];
+      if (phase == open.peek()) {
+        phaseNanos += now - openedAt;
+      }
+      accounted += phaseNanos;
+      append(header, phase.metric, phaseNanos, phase.description);
+    }
+    append(header, "app", now - startNanos - accounted, "Everything else");
+    append(header, "total", now - startNanos, null);
+    return header.toString();
+  }
+
+  private static void append(StringBuilder header, String metric, long nanos, String description) {
+    if (header.length() > 0) {
+      header.append(", ");
+    }
+    header.append(metric).append(";dur=").append(String.format(Locale.ROOT, "%.1f", nanos / 1e6));
+    if (description != null) {
+      header.append(";desc=\"").append(description).append('"');
+    }
+  }
+}
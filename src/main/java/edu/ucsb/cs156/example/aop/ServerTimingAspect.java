@@ -0,0 +1,36 @@
+package edu.ucsb.cs156.example.aop;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+import edu.ucsb.cs156.example.aop.ServerTiming.Phase;
+
+// Charges repository calls to the "db" phase and current user / authority
+// resolution to the "auth" phase of the request's ServerTiming.
+
+@Aspect
+@Component
+public class ServerTimingAspect {
+
+  @Around("execution(* org.springframework.data.repository.Repository+.*(..))")
+  public Object timeRepositoryCall(ProceedingJoinPoint joinPoint) throws Throwable {
+    return timed(Phase.DB, joinPoint);
+  }
+
+  @Around("execution(* edu.ucsb.cs156.example.services.CurrentUserService+.*(..)) || "
+      + "execution(* edu.ucsb.cs156.example.services.GrantedAuthoritiesService.*(..))")
+  public Object timeCurrentUser(ProceedingJoinPoint joinPoint) throws Throwable {
+    return timed(Phase.AUTH, joinPoint);
+  }
+
+  private static Object timed(Phase phase, ProceedingJoinPoint joinPoint) throws Throwable {
+    ServerTiming.enter(phase);
+    try {
+      return joinPoint.proceed();
+    } finally {
+      ServerTiming.exit();
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package edu.ucsb.cs156.example.aop;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// Runs at most one call per key at a time.  The first caller for a key
+// runs it; callers that arrive with the same key while it is running wait
+// and get the same result (or the same exception) instead of running it
+// again.  Nothing is kept once the call finishes, so this only merges
+// calls that overlap; it is not a cache.
+
+public class SingleFlight<K> {
+
+  @FunctionalInterface
+  public interface Call<V> {
+    V call() throws Throwable;
+  }
+
+  private final ConcurrentMap<K, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+  // whenShared runs on callers that joined someone else's call
+  @SuppressWarnings("unchecked")
+  public <V> V run(K key, Call<V> call, Runnable whenShared) throws Throwable {
+    CompletableFuture<Object> mine = new CompletableFuture<>();
+    CompletableFuture<Object> running = inFlight.putIfAbsent(key, mine);
+    if (running != null) {
+      whenShared.run();
+      try {
+        return (V) running.join();
+      } catch (CompletionException e) {
+        throw e.getCause();
+      }
+    }
+    try {
+      V value = call.call();
+      mine.complete(value);
+      return value;
+    } catch (Throwable t) {
+      mine.completeExceptionally(t);
+      throw t;
+    } finally {
+      inFlight.remove(key, mine);
+    }
+  }
+
+  public int inFlight() {
+    return inFlight.size();
+  }
+}
@@ -0,0 +1,34 @@
+package edu.ucsb.cs156.example.aop;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+// Counts the SQL statements Hibernate prepares on the current thread while
+// a count is running (LoggingAspect runs one per controller call).
+// Registered with hibernate.session_factory.statement_inspector.  A JDBC
+// batch is prepared once, so it counts as one statement: the count is
+// closer to round trips than to rows.
+
+public class SqlStatementCounter implements StatementInspector {
+
+  private static final ThreadLocal<int[]> counts = new ThreadLocal<>();
+
+  @Override
+  public String inspect(String sql) {
+    int[] count = counts.get();
+    if (count != null) {
+      count[0]++;
+    }
+    return sql;
+  }
+
+  // Starts counting on this thread; the count so far is element 0 of the result
+  public static int[] start() {
+    int[] count = new int[1];
+    counts.set(count);
+    return count;
+  }
+
+  public static void stop() {
+    counts.remove();
+  }
+}
@@ -0,0 +1,20 @@
+package edu.ucsb.cs156.example.aop;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// The most SQL statements a controller handler should issue per call,
+// counting those its StreamingResponseBody issues while it is written.
+// LoggingAspect logs a warning when a call goes over, or throws
+// StatementBudgetExceededException when app.sql.budget.failOnExceed=true
+// (meant for tests).
+
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface StatementBudget {
+  int value();
+}
@@ -0,0 +1,45 @@
+package edu.ucsb.cs156.example.config;
+
+import javax.persistence.CacheStoreMode;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import edu.ucsb.cs156.example.services.TableVersionService;
+
+// Boot's JpaTransactionManager, plus two things done as a transaction starts:
+//  - a read-write transaction is announced to TableVersionService, so that
+//    a write request's table version is bumped as the transaction commits;
+//  - a read-only transaction that ReplicaRoutingDataSource will send to the
+//    replica gets CacheStoreMode.BYPASS, so that rows read from a replica
+//    that is behind never go into the second-level or query cache, where
+//    primary reads would find them.
+
+public class AppTransactionManager extends JpaTransactionManager {
+
+  private final TableVersionService tableVersions;
+  private final boolean replicaConfigured;
+
+  public AppTransactionManager(TableVersionService tableVersions, boolean replicaConfigured) {
+    this.tableVersions = tableVersions;
+    this.replicaConfigured = replicaConfigured;
+  }
+
+  @Override
+  protected void prepareSynchronization(DefaultTransactionStatus status, TransactionDefinition definition) {
+    super.prepareSynchronization(status, definition);
+    if (status.isNewSynchronization() && !definition.isReadOnly()) {
+      tableVersions.transactionStarted();
+    }
+    if (status.isNewTransaction() && definition.isReadOnly() && replicaConfigured
+        && !ReplicaRoutingDataSource.readsFromPrimary()) {
+      EntityManagerHolder holder = (EntityManagerHolder) TransactionSynchronizationManager
+          .getResource(obtainEntityManagerFactory());
+      holder.getEntityManager().setProperty(AvailableSettings.JPA_SHARED_CACHE_STORE_MODE, CacheStoreMode.BYPASS);
+    }
+  }
+}
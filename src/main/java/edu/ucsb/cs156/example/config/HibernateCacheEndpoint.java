@@ -0,0 +1,73 @@
+package edu.ucsb.cs156.example.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+// GET /actuator/hibernatecache: second-level and query cache statistics.
+// Hits, misses and puts are Hibernate's own counts, only kept while
+// hibernate.generate_statistics is on (statisticsEnabled says whether it is);
+// size and evictions come from the Caffeine cache behind each region.
+
+@Endpoint(id = "hibernatecache")
+public class HibernateCacheEndpoint {
+
+  private final EntityManagerFactory entityManagerFactory;
+  private final CacheManager cacheManager;
+
+  public HibernateCacheEndpoint(EntityManagerFactory entityManagerFactory, CacheManager cacheManager) {
+    this.entityManagerFactory = entityManagerFactory;
+    this.cacheManager = cacheManager;
+  }
+
+  @ReadOperation
+  public Map<String, Object> statistics() {
+    Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    Map<String, Object> regions = new LinkedHashMap<>();
+    for (String region : SecondLevelCacheConfig.ENTITY_REGIONS) {
+      regions.put(region, region(region, statistics.getDomainDataRegionStatistics(region)));
+    }
+    regions.put(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME,
+        region(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME,
+            statistics.getQueryRegionStatistics(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME)));
+
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("statisticsEnabled", statistics.isStatisticsEnabled());
+    result.put("secondLevelCacheHitCount", statistics.getSecondLevelCacheHitCount());
+    result.put("secondLevelCacheMissCount", statistics.getSecondLevelCacheMissCount());
+    result.put("queryCacheHitCount", statistics.getQueryCacheHitCount());
+    result.put("queryCacheMissCount", statistics.getQueryCacheMissCount());
+    result.put("regions", regions);
+    return result;
+  }
+
+  private Map<String, Object> region(String name, CacheRegionStatistics statistics) {
+    Map<String, Object> region = new LinkedHashMap<>();
+    if (statistics != null) {
+      region.put("hitCount", statistics.getHitCount());
+      region.put("missCount", statistics.getMissCount());
+      region.put("putCount", statistics.getPutCount());
+    }
+    Cache<Object, Object> cache = cacheManager.getCache(name);
+    if (cache != null) {
+      @SuppressWarnings("unchecked")
+      com.github.benmanes.caffeine.cache.Cache<Object, Object> caffeine = cache.unwrap(com.github.benmanes.caffeine.cache.Cache.class);
+      CacheStats stats = caffeine.stats();
+      region.put("size", caffeine.estimatedSize());
+      region.put("evictionCount", stats.evictionCount());
+    }
+    return region;
+  }
+}
@@ -0,0 +1,76 @@
+package edu.ucsb.cs156.example.config;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+// Only when app.datasource.replica.url is set: two connection pools, the
+// primary from spring.datasource.* and a read-only one for the replica, with
+// the DataSource everything else uses routing between them
+// (see ReplicaRoutingDataSource and ReplicaLagMonitor).
+// The replica user and password default to the primary's.
+
+@Configuration
+@ConditionalOnProperty("app.datasource.replica.url")
+public class ReplicaDataSourceConfig {
+
+  @Value("${app.datasource.replica.url}")
+  private String url;
+
+  @Value("${app.datasource.replica.username:${spring.datasource.username:}}")
+  private String username;
+
+  @Value("${app.datasource.replica.password:${spring.datasource.password:}}")
+  private String password;
+
+  @Value("${app.datasource.replica.maxStalenessMillis:5000}")
+  private long maxStalenessMillis;
+
+  @Value("${app.datasource.replica.checkIntervalMillis:1000}")
+  private long checkIntervalMillis;
+
+  @Bean
+  @ConfigurationProperties("spring.datasource.hikari")
+  public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+    HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    primary.setPoolName("primary");
+    return primary;
+  }
+
+  @Bean
+  public HikariDataSource replicaDataSource() {
+    HikariDataSource replica = DataSourceBuilder.create().type(HikariDataSource.class)
+        .url(url).username(username).password(password).build();
+    replica.setPoolName("replica");
+    replica.setReadOnly(true);
+    return replica;
+  }
+
+  @Bean(initMethod = "start", destroyMethod = "stop")
+  public ReplicaLagMonitor replicaLagMonitor(@Qualifier("replicaDataSource") DataSource replica) {
+    return new ReplicaLagMonitor(replica, maxStalenessMillis, checkIntervalMillis);
+  }
+
+  @Bean
+  public ReplicaRoutingDataSource replicaRoutingDataSource(@Qualifier("primaryDataSource") DataSource primary,
+      @Qualifier("replicaDataSource") DataSource replica, ReplicaLagMonitor replicaLagMonitor) {
+    return new ReplicaRoutingDataSource(primary, replica, replicaLagMonitor);
+  }
+
+  @Bean
+  @Primary
+  public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+    return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+  }
+}
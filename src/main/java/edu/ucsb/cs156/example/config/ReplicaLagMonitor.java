@@ -0,0 +1,117 @@
+package edu.ucsb.cs156.example.config;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import javax.sql.DataSource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+
+// Decides whether ReplicaRoutingDataSource may send reads to the replica.
+// Every checkIntervalMillis a background thread connects to the replica
+// and, on Postgres, asks how far its WAL replay is behind; the replica is
+// usable while it answers and is at most maxStalenessMillis behind.
+// Other databases (H2 in tests and development) only get the connection check.
+// A replica that has replayed everything it received counts as 0 behind,
+// however long ago the last write on the primary was.
+
+@Slf4j
+public class ReplicaLagMonitor implements BooleanSupplier, MeterBinder {
+
+  static final String POSTGRES_LAG = """
+      SELECT CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                  ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0) END
+      """;
+
+  private final DataSource replica;
+  private final long maxStalenessMillis;
+  private final long checkIntervalMillis;
+
+  private volatile boolean usable;
+  private volatile long lagMillis = -1;
+  private ScheduledExecutorService checker;
+
+  public ReplicaLagMonitor(DataSource replica, long maxStalenessMillis, long checkIntervalMillis) {
+    this.replica = replica;
+    this.maxStalenessMillis = maxStalenessMillis;
+    this.checkIntervalMillis = checkIntervalMillis;
+  }
+
+  public void start() {
+    check();
+    if (!usable) {
+      log.warn("replica is unusable at startup, reading from the primary");
+    }
+    checker = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "replica-lag-monitor");
+      t.setDaemon(true);
+      return t;
+    });
+    checker.scheduleWithFixedDelay(this::check, checkIntervalMillis, checkIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  public void stop() {
+    if (checker != null) {
+      checker.shutdownNow();
+    }
+  }
+
+  public void check() {
+    try (Connection connection = replica.getConnection()) {
+      long lag = 0;
+      if ("PostgreSQL".equals(connection.getMetaData().getDatabaseProductName())) {
+        try (Statement statement = connection.createStatement();
+            ResultSet rs = statement.executeQuery(POSTGRES_LAG)) {
+          rs.next();
+          lag = Math.round(rs.getDouble(1));
+        }
+      } else if (!connection.isValid(1)) {
+        throw new SQLException("replica connection is not valid");
+      }
+      lagMillis = lag;
+      update(lag <= maxStalenessMillis, "lag %d ms, max %d ms".formatted(lag, maxStalenessMillis));
+    } catch (SQLException | RuntimeException e) {
+      lagMillis = -1;
+      update(false, e.getMessage());
+    }
+  }
+
+  private void update(boolean nowUsable, String reason) {
+    if (nowUsable && !usable) {
+      log.info("replica is usable ({})", reason);
+    } else if (!nowUsable && usable) {
+      log.warn("replica is unusable, reading from the primary ({})", reason);
+    }
+    usable = nowUsable;
+  }
+
+  @Override
+  public boolean getAsBoolean() {
+    return usable;
+  }
+
+  // replay lag at the last check, or -1 if the replica could not be reached
+  public long lagMillis() {
+    return lagMillis;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("datasource.replica.lag", this, ReplicaLagMonitor::lagMillis)
+        .description("Replica replay lag at the last check, -1 if unreachable")
+        .baseUnit("milliseconds")
+        .register(registry);
+    Gauge.builder("datasource.replica.usable", this, m -> m.getAsBoolean() ? 1 : 0)
+        .description("1 while read-only transactions are sent to the replica")
+        .register(registry);
+  }
+}
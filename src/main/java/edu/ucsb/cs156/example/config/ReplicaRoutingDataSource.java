@@ -0,0 +1,94 @@
+package edu.ucsb.cs156.example.config;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+// Hands out replica connections to read-only transactions, such as the
+// @Transactional(readOnly = true) GET handlers and Spring Data's own reads,
+// and primary connections to everything else (read-write transactions and
+// work outside a transaction).  Read-only work falls back to the primary
+// while replicaUsable says the replica is down or too far behind, and
+// always while the thread reads for a response tagged with a table version
+// (see readFromPrimary): that version counts writes committed on the
+// primary, and a replica that has not replayed them yet would have the
+// response tagged as newer than its body.
+// A transaction manager takes its connection before the transaction is
+// marked read-only, so this must sit behind a LazyConnectionDataSourceProxy,
+// which only picks the target when the first statement runs.
+
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements MeterBinder {
+
+  public enum Route {
+    PRIMARY, REPLICA
+  }
+
+  private static final ThreadLocal<Boolean> primaryReads = new ThreadLocal<>();
+
+  private final BooleanSupplier replicaUsable;
+  private final AtomicLong replicaConnections = new AtomicLong();
+  private final AtomicLong fallbacks = new AtomicLong();
+
+  public ReplicaRoutingDataSource(DataSource primary, DataSource replica, BooleanSupplier replicaUsable) {
+    this.replicaUsable = replicaUsable;
+    setTargetDataSources(Map.of(Route.PRIMARY, primary, Route.REPLICA, replica));
+    setDefaultTargetDataSource(primary);
+    afterPropertiesSet();
+  }
+
+  @Override
+  protected Route determineCurrentLookupKey() {
+    if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly() || readsFromPrimary()) {
+      return Route.PRIMARY;
+    }
+    if (replicaUsable.getAsBoolean()) {
+      replicaConnections.incrementAndGet();
+      return Route.REPLICA;
+    }
+    fallbacks.incrementAndGet();
+    return Route.PRIMARY;
+  }
+
+  // Sends this thread's reads to the primary until it is called with false
+  // (ConditionalGetInterceptor, and the streaming executor for the bodies
+  // of such requests)
+  public static void readFromPrimary(boolean primary) {
+    if (primary) {
+      primaryReads.set(Boolean.TRUE);
+    } else {
+      primaryReads.remove();
+    }
+  }
+
+  public static boolean readsFromPrimary() {
+    return primaryReads.get() != null;
+  }
+
+  public long replicaConnectionCount() {
+    return replicaConnections.get();
+  }
+
+  // read-only connections that went to the primary because the replica was unusable
+  public long fallbackCount() {
+    return fallbacks.get();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder("datasource.replica.connections", replicaConnections, AtomicLong::get)
+        .description("Connections of read-only transactions served by the replica")
+        .register(registry);
+    FunctionCounter.builder("datasource.replica.fallbacks", fallbacks, AtomicLong::get)
+        .description("Connections of read-only transactions sent to the primary because the replica was unusable")
+        .register(registry);
+  }
+}
@@ -0,0 +1,81 @@
+package edu.ucsb.cs156.example.config;
+
+import java.net.URI;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+
+// Hibernate second-level cache and query cache for the small, rarely written
+// reference tables (UCSBDiningCommons, UCSBOrganization), held in Caffeine
+// through JCache.  The entity regions and the query results region are
+// bounded by app.referenceCache.maximumSize and expire after
+// app.referenceCache.expireAfterWriteMinutes; the update timestamps region,
+// which tells Hibernate when a cached query result is stale, never expires.
+// Hit/miss/put/eviction counts are at /actuator/hibernatecache
+
+@Configuration
+public class SecondLevelCacheConfig {
+
+  public static final String DINING_COMMONS_REGION = "ucsbdiningcommons";
+  public static final String ORGANIZATION_REGION = "ucsborganization";
+  public static final List<String> ENTITY_REGIONS = List.of(DINING_COMMONS_REGION, ORGANIZATION_REGION);
+
+  @Value("${app.referenceCache.maximumSize:1000}")
+  private long maximumSize;
+
+  @Value("${app.referenceCache.expireAfterWriteMinutes:60}")
+  private long expireAfterWriteMinutes;
+
+  @Bean(destroyMethod = "close")
+  public CacheManager hibernateCacheManager() {
+    // a manager of our own, so that each application context gets fresh caches
+    CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+        .getCacheManager(URI.create("hibernate-" + System.identityHashCode(this)), getClass().getClassLoader());
+    for (String region : ENTITY_REGIONS) {
+      cacheManager.createCache(region, bounded());
+    }
+    cacheManager.createCache(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME, bounded());
+    cacheManager.createCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME, unbounded());
+    return cacheManager;
+  }
+
+  @Bean
+  public HibernatePropertiesCustomizer hibernateCacheManagerCustomizer(CacheManager hibernateCacheManager) {
+    return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+  }
+
+  @Bean
+  @ConditionalOnAvailableEndpoint
+  public HibernateCacheEndpoint hibernateCacheEndpoint(EntityManagerFactory entityManagerFactory,
+      CacheManager hibernateCacheManager) {
+    return new HibernateCacheEndpoint(entityManagerFactory, hibernateCacheManager);
+  }
+
+  private CaffeineConfiguration<Object, Object> bounded() {
+    CaffeineConfiguration<Object, Object> configuration = unbounded();
+    configuration.setMaximumSize(OptionalLong.of(maximumSize));
+    configuration.setExpireAfterWrite(OptionalLong.of(TimeUnit.MINUTES.toNanos(expireAfterWriteMinutes)));
+    return configuration;
+  }
+
+  private CaffeineConfiguration<Object, Object> unbounded() {
+    CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+    configuration.setNativeStatisticsEnabled(true);
+    return configuration;
+  }
+}
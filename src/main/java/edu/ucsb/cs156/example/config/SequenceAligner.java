@@ -0,0 +1,65 @@
+package edu.ucsb.cs156.example.config;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.jdbc.spi.JdbcServices;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+// Entity ids come from sequences with allocationSize 50 and the pooled-lo
+// optimizer, so that Hibernate can batch inserts.  Tables that used to have
+// IDENTITY ids already hold rows, while a sequence freshly created by
+// ddl-auto starts at 1.  Once the EntityManagerFactory (and so the schema)
+// is ready, and before the application takes requests, this moves every
+// entity sequence that is behind its table past max(id).
+// With pooled-lo the value returned by nextval is the first id of a block,
+// so restarting at max(id) + 1 is enough.
+
+@Slf4j
+@Component
+public class SequenceAligner {
+
+  @Autowired
+  EntityManagerFactory entityManagerFactory;
+
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
+  @PostConstruct
+  public void alignAll() {
+    SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+    JdbcServices jdbc = sessionFactory.getJdbcServices();
+    Dialect dialect = jdbc.getDialect();
+    for (EntityPersister persister : sessionFactory.getMetamodel().entityPersisters().values()) {
+      if (persister.getIdentifierGenerator() instanceof SequenceStyleGenerator generator
+          && generator.getDatabaseStructure().isPhysicalSequence()
+          && persister instanceof AbstractEntityPersister entity) {
+        String sequence = sessionFactory.getSqlStringGenerationContext()
+            .format(generator.getDatabaseStructure().getPhysicalName());
+        align(dialect, sequence, entity.getTableName(),
+            entity.getIdentifierColumnNames()[0]);
+      }
+    }
+  }
+
+  private void align(Dialect dialect, String sequence, String table, String idColumn) {
+    Long max = jdbcTemplate.queryForObject("SELECT MAX(%s) FROM %s".formatted(idColumn, table), Long.class);
+    if (max == null) {
+      return;
+    }
+    long next = jdbcTemplate.queryForObject(dialect.getSequenceNextValString(sequence), Long.class);
+    if (next <= max) {
+      log.info("sequence {} is at {} but max({}) in {} is {}; restarting at {}", sequence, next, idColumn, table, max, max + 1);
+      jdbcTemplate.execute("ALTER SEQUENCE %s RESTART WITH %d".formatted(sequence, max + 1));
+    }
+  }
+}
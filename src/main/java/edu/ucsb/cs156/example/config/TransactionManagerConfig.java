@@ -0,0 +1,30 @@
+package edu.ucsb.cs156.example.config;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizers;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import edu.ucsb.cs156.example.services.TableVersionService;
+
+// Replaces the transaction manager Spring Boot would create with one that
+// bumps table versions on commit and keeps replica reads out of the
+// second-level cache (see AppTransactionManager), configured the same way.
+
+@Configuration
+public class TransactionManagerConfig {
+
+  @Bean
+  public PlatformTransactionManager transactionManager(EntityManagerFactory entityManagerFactory,
+      TableVersionService tableVersions, ObjectProvider<ReplicaRoutingDataSource> replicaRouting,
+      ObjectProvider<TransactionManagerCustomizers> customizers) {
+    AppTransactionManager transactionManager = new AppTransactionManager(tableVersions,
+        replicaRouting.getIfAvailable() != null);
+    transactionManager.setEntityManagerFactory(entityManagerFactory);
+    customizers.ifAvailable(c -> c.customize(transactionManager));
+    return transactionManager;
+  }
+}
@@ -0,0 +1,107 @@
+package edu.ucsb.cs156.example.config;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+// The login upsert (UserRepositoryCustomImpl) depends on a unique constraint
+// on users.email.  The schema comes from ddl-auto=update, which quietly gives
+// up on adding that constraint to a table that already holds duplicate
+// emails; every login would then fail.  Once the schema is ready, and before
+// the application takes requests, this adds the constraint if it is still
+// missing.  Duplicate rows are never removed on an ordinary start: startup
+// fails with a list of them instead.  Starting once with
+// app.users.mergeDuplicateEmails=true merges each duplicated email into its
+// oldest row (admin if any of the rows was) before adding the constraint.
+
+@Slf4j
+@Component
+@DependsOn("entityManagerFactory")
+public class UniqueEmailEnforcer {
+
+  static final String CONSTRAINT = "users_email_unique";
+
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
+  @Value("${app.users.mergeDuplicateEmails:false}")
+  boolean mergeDuplicateEmails;
+
+  @PostConstruct
+  public void enforce() {
+    if (hasUniqueEmailIndex()) {
+      return;
+    }
+    List<Map<String, Object>> duplicates = duplicates();
+    if (!duplicates.isEmpty()) {
+      if (!mergeDuplicateEmails) {
+        throw new IllegalStateException("""
+            cannot add unique constraint %s: users has rows sharing an email (email=[ids]) %s. \
+            Start once with app.users.mergeDuplicateEmails=true to merge each into its oldest row, \
+            or fix the rows by hand.""".formatted(CONSTRAINT, describe(duplicates)));
+      }
+      merge(duplicates);
+    }
+    log.info("adding unique constraint {} on users.email", CONSTRAINT);
+    jdbcTemplate.execute("ALTER TABLE users ADD CONSTRAINT %s UNIQUE (email)".formatted(CONSTRAINT));
+  }
+
+  // one row per duplicated email, ids in ascending order so the first is the
+  // row a merge keeps
+  List<Map<String, Object>> duplicates() {
+    return jdbcTemplate.queryForList("""
+        SELECT email, MIN(id) AS keep, MAX(CASE WHEN admin THEN 1 ELSE 0 END) AS admin
+          FROM users WHERE email IS NOT NULL GROUP BY email HAVING COUNT(*) > 1 ORDER BY email
+        """);
+  }
+
+  private String describe(List<Map<String, Object>> duplicates) {
+    StringBuilder description = new StringBuilder();
+    for (Map<String, Object> duplicate : duplicates) {
+      List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM users WHERE email = ? ORDER BY id", Long.class,
+          duplicate.get("email"));
+      description.append(description.length() == 0 ? "" : ", ").append(duplicate.get("email")).append("=").append(ids);
+    }
+    return description.toString();
+  }
+
+  private void merge(List<Map<String, Object>> duplicates) {
+    for (Map<String, Object> duplicate : duplicates) {
+      Object email = duplicate.get("email");
+      long keep = ((Number) duplicate.get("keep")).longValue();
+      boolean admin = ((Number) duplicate.get("admin")).intValue() == 1;
+      if (admin) {
+        jdbcTemplate.update("UPDATE users SET admin = TRUE WHERE id = ?", keep);
+      }
+      int deleted = jdbcTemplate.update("DELETE FROM users WHERE email = ? AND id <> ?", email, keep);
+      log.warn("merged {} users rows with email {} into row {} (admin={})", deleted, email, keep, admin);
+    }
+  }
+
+  boolean hasUniqueEmailIndex() {
+    return jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+      DatabaseMetaData metaData = connection.getMetaData();
+      String table = metaData.storesUpperCaseIdentifiers() ? "USERS" : "users";
+      try (ResultSet indexes = metaData.getIndexInfo(null, null, table, true, false)) {
+        while (indexes.next()) {
+          if ("email".equalsIgnoreCase(indexes.getString("COLUMN_NAME"))) {
+            return true;
+          }
+        }
+      }
+      return false;
+    });
+  }
+}
@@ -0,0 +1,106 @@
+package edu.ucsb.cs156.example.config;
+
+import java.time.Duration;
+import java.util.List;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import edu.ucsb.cs156.example.interceptors.ConditionalGetInterceptor;
+import edu.ucsb.cs156.example.interceptors.TimedBinaryJackson2HttpMessageConverter;
+import edu.ucsb.cs156.example.interceptors.TimedJackson2HttpMessageConverter;
+import edu.ucsb.cs156.example.services.ResponseFormats;
+
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+
+  @Autowired
+  ConditionalGetInterceptor conditionalGetInterceptor;
+
+  @Autowired
+  ResponseFormats formats;
+
+  @Value("${spring.mvc.async.request-timeout:60s}")
+  Duration asyncRequestTimeout;
+
+  @Value("${app.streaming.threads:8}")
+  int streamingThreads;
+
+  @Value("${app.streaming.queueCapacity:100}")
+  int streamingQueueCapacity;
+
+  // not a bean, so that Spring Boot still creates its applicationTaskExecutor
+  private ThreadPoolTaskExecutor streamingExecutor;
+
+  // StreamingResponseBody bodies (the /all and /summary listings) are written
+  // on a pool of app.streaming.threads threads with a queue of
+  // app.streaming.queueCapacity; a request that finds both full gets 503
+  // (see ApiController).  A body still being written after
+  // spring.mvc.async.request-timeout is cut off.  The body reads from the
+  // primary if the request did (see ReplicaRoutingDataSource).
+  @Override
+  public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+    streamingExecutor = new ThreadPoolTaskExecutor();
+    streamingExecutor.setCorePoolSize(streamingThreads);
+    streamingExecutor.setMaxPoolSize(streamingThreads);
+    streamingExecutor.setQueueCapacity(streamingQueueCapacity);
+    streamingExecutor.setThreadNamePrefix("streaming-");
+    streamingExecutor.setTaskDecorator(task -> {
+      boolean primary = ReplicaRoutingDataSource.readsFromPrimary();
+      return () -> {
+        ReplicaRoutingDataSource.readFromPrimary(primary);
+        try {
+          task.run();
+        } finally {
+          ReplicaRoutingDataSource.readFromPrimary(false);
+        }
+      };
+    });
+    streamingExecutor.initialize();
+    configurer.setTaskExecutor(streamingExecutor);
+    configurer.setDefaultTimeout(asyncRequestTimeout.toMillis());
+  }
+
+  @PreDestroy
+  public void shutdownStreamingExecutor() {
+    if (streamingExecutor != null) {
+      streamingExecutor.shutdown();
+    }
+  }
+
+  @Override
+  public void addInterceptors(InterceptorRegistry registry) {
+    registry.addInterceptor(conditionalGetInterceptor).addPathPatterns("/api/**");
+  }
+
+  // CBOR and Smile go right after JSON, so that JSON stays the default
+  // for clients that accept anything; Spring's own binary converters, if
+  // it added any, are dropped as they do not use Boot's Jackson settings
+  @Override
+  public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+    converters.replaceAll(converter -> converter.getClass() == MappingJackson2HttpMessageConverter.class
+        ? new TimedJackson2HttpMessageConverter(((MappingJackson2HttpMessageConverter) converter).getObjectMapper())
+        : converter);
+    converters.removeIf(converter -> converter instanceof MappingJackson2CborHttpMessageConverter
+        || converter instanceof MappingJackson2SmileHttpMessageConverter);
+    int json = 0;
+    while (json < converters.size() && !(converters.get(json) instanceof TimedJackson2HttpMessageConverter)) {
+      json++;
+    }
+    converters.addAll(Math.min(json + 1, converters.size()), List.of(
+        new TimedBinaryJackson2HttpMessageConverter(formats.mapper(MediaType.APPLICATION_CBOR), MediaType.APPLICATION_CBOR),
+        new TimedBinaryJackson2HttpMessageConverter(formats.mapper(ResponseFormats.SMILE), ResponseFormats.SMILE)));
+  }
+}
@@ -1,23 +1,56 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.entities.Versioned;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.UnknownFieldException;
+import edu.ucsb.cs156.example.errors.VersionConflictException;
 import net.bytebuddy.implementation.bytecode.Throw;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import edu.ucsb.cs156.example.models.BulkResult;
 import edu.ucsb.cs156.example.models.CurrentUser;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.services.CurrentUserService;
+import edu.ucsb.cs156.example.services.PrimaryTransactions;
+import edu.ucsb.cs156.example.services.ResponseFormats;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
+import javax.validation.ConstraintViolationException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Slf4j
 public abstract class ApiController {
+  public static final int DEFAULT_PAGE_LIMIT = 100;
+  public static final int MAX_PAGE_LIMIT = 1000;
+
   @Autowired
   private CurrentUserService currentUserService;
 
+  @Autowired
+  private PrimaryTransactions primaryTransactions;
+
+  @Autowired
+  private ResponseFormats formats;
+
   protected CurrentUser getCurrentUser() {
     return currentUserService.getCurrentUser();
   }
@@ -26,6 +59,154 @@ public abstract class ApiController {
     return Map.of("message", message);
   }
 
+  // for keyset pagination: the first page of at most limit rows,
+  // with limit defaulting to DEFAULT_PAGE_LIMIT and capped at MAX_PAGE_LIMIT
+  protected Pageable keysetLimit(Integer limit) {
+    int size = limit == null ? DEFAULT_PAGE_LIMIT : Math.max(1, Math.min(limit, MAX_PAGE_LIMIT));
+    return PageRequest.of(0, size);
+  }
+
+  // wraps rows read with keysetLimit; if the page is full, the key of its
+  // last row is the cursor for the next page
+  protected <T> KeysetPage<T> keysetPage(List<T> items, Pageable pageable, Function<T, ?> key) {
+    Object next = items.size() < pageable.getPageSize() ? null : key.apply(items.get(items.size() - 1));
+    return new KeysetPage<>(items, next);
+  }
+
+  // a single row, with its @Version and the negotiated format as the ETag,
+  // e.g. "3-json" (the same row is different bytes in CBOR or Smile); Spring
+  // answers a GET whose If-None-Match still matches with 304 Not Modified
+  protected <T extends Versioned> ResponseEntity<T> versioned(T entity) {
+    MediaType format = formats.negotiate();
+    return ResponseEntity.ok()
+        .eTag(entity.getVersion() + "-" + format.getSubtype())
+        .varyBy(HttpHeaders.ACCEPT)
+        .body(entity);
+  }
+
+  // the version a PUT expects from its If-Match header: null when there is no
+  // precondition (no header, or *), -1 when the tag is not one of ours and so
+  // cannot match any row.  The format part of the tag does not matter: the
+  // row is at the same version whatever it was read as.
+  protected Long ifMatchVersion(String ifMatch) {
+    if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+      return null;
+    }
+    String tag = ifMatch.trim();
+    if (tag.startsWith("W/")) {
+      tag = tag.substring(2);
+    }
+    tag = tag.replace("\"", "");
+    int format = tag.indexOf('-');
+    try {
+      return Long.parseLong(format < 0 ? tag : tag.substring(0, format));
+    } catch (NumberFormatException e) {
+      return -1L;
+    }
+  }
+
+  // for a PUT whose single-statement update changed no row: 412 if the row is
+  // there at another version, 404 otherwise.  Only this path pays for the
+  // extra existence check.
+  protected <ID> RuntimeException notUpdated(CrudRepository<?, ID> repository, Class<?> type, ID id, Long expected) {
+    // asked of the primary: the replica may not have the row yet
+    if (expected != null && primaryTransactions.call(() -> repository.existsById(id))) {
+      return new VersionConflictException(type, id, expected);
+    }
+    return new EntityNotFoundException(type, id);
+  }
+
+  // the response to a successful PUT, with the version the row was stored at.
+  // When the request said which version it replaced that is the next one;
+  // otherwise the stored row is read back (from the primary, which has the
+  // update), rather than echoing whatever version the request body held.
+  protected <T extends Versioned, ID> ResponseEntity<T> updated(CrudRepository<T, ID> repository, ID id, T incoming,
+      Long expected) {
+    if (expected != null) {
+      incoming.setVersion(expected + 1);
+      return versioned(incoming);
+    }
+    T stored = primaryTransactions.call(() -> repository.findById(id))
+        .orElseThrow(() -> new EntityNotFoundException(incoming.getClass(), id));
+    return versioned(stored);
+  }
+
+  // for /bulk endpoints, which should be @Transactional so that the whole
+  // request is one commit and Hibernate can batch the statements
+  protected <T, ID> List<BulkResult> bulkCreate(CrudRepository<T, ID> repository, List<T> items, Function<T, ID> key) {
+    List<BulkResult> results = new ArrayList<>(items.size());
+    for (T saved : repository.saveAll(items)) {
+      results.add(new BulkResult(results.size(), key.apply(saved), "created", null));
+    }
+    return results;
+  }
+
+  // for entities whose key is part of the item (a commons code, an org code):
+  // saveAll would merge an item whose key is already stored over that row, so
+  // such items, and repeats of a key within the request, are reported as
+  // duplicate and only the rest are saved
+  protected <T, ID> List<BulkResult> bulkCreate(CrudRepository<T, ID> repository, List<T> items, Function<T, ID> key, Class<T> type) {
+    List<ID> ids = items.stream().map(key).filter(Objects::nonNull).distinct().collect(Collectors.toList());
+    Set<ID> taken = new HashSet<>(findAllById(repository, ids, key).keySet());
+    List<BulkResult> results = new ArrayList<>(items.size());
+    List<T> fresh = new ArrayList<>(items.size());
+    for (T item : items) {
+      ID id = key.apply(item);
+      if (taken.add(id)) {
+        fresh.add(item);
+        results.add(new BulkResult(results.size(), id, "created", null));
+      } else {
+        results.add(new BulkResult(results.size(), id, "duplicate",
+            "%s with id %s already exists".formatted(type.getSimpleName(), id)));
+      }
+    }
+    repository.saveAll(fresh);
+    return results;
+  }
+
+  // items that exist are saved over the stored rows; the rest are reported as notFound.
+  // Bulk updates have no per-item If-Match, so each item takes the stored
+  // version and the last writer wins, as before versioning
+  protected <T extends Versioned, ID> List<BulkResult> bulkUpdate(CrudRepository<T, ID> repository, List<T> items, Function<T, ID> key, Class<T> type) {
+    Map<ID, T> stored = findAllById(repository, items.stream().map(key).collect(Collectors.toList()), key);
+    List<BulkResult> results = new ArrayList<>(items.size());
+    List<T> found = new ArrayList<>(stored.size());
+    for (T item : items) {
+      ID id = key.apply(item);
+      if (stored.containsKey(id)) {
+        item.setVersion(stored.get(id).getVersion());
+        found.add(item);
+        results.add(new BulkResult(results.size(), id, "updated", null));
+      } else {
+        results.add(notFound(results.size(), type, id));
+      }
+    }
+    repository.saveAll(found);
+    return results;
+  }
+
+  protected <T, ID> List<BulkResult> bulkDelete(CrudRepository<T, ID> repository, List<ID> ids, Function<T, ID> key, Class<T> type) {
+    Map<ID, T> stored = findAllById(repository, ids, key);
+    List<BulkResult> results = new ArrayList<>(ids.size());
+    for (ID id : ids) {
+      results.add(stored.containsKey(id)
+          ? new BulkResult(results.size(), id, "deleted", null)
+          : notFound(results.size(), type, id));
+    }
+    repository.deleteAll(new ArrayList<>(stored.values()));
+    return results;
+  }
+
+  private <T, ID> Map<ID, T> findAllById(CrudRepository<T, ID> repository, List<ID> ids, Function<T, ID> key) {
+    Map<ID, T> stored = new HashMap<>();
+    repository.findAllById(ids).forEach(t -> stored.put(key.apply(t), t));
+    return stored;
+  }
+
+  private BulkResult notFound(int index, Class<?> type, Object id) {
+    return new BulkResult(index, id, "notFound", new EntityNotFoundException(type, id).getMessage());
+  }
+
   @ExceptionHandler({ EntityNotFoundException.class })
   @ResponseStatus(HttpStatus.NOT_FOUND)
   public Object handleGenericException(Throwable e) {
@@ -34,4 +215,43 @@ public abstract class ApiController {
       "message", e.getMessage()
     );
   }
+
+  @ExceptionHandler({ VersionConflictException.class })
+  @ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+  public Object handleVersionConflict(Throwable e) {
+    return Map.of(
+      "type", e.getClass().getSimpleName(),
+      "message", e.getMessage()
+    );
+  }
+
+  @ExceptionHandler({ UnknownFieldException.class })
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  public Object handleUnknownField(Throwable e) {
+    return Map.of(
+      "type", e.getClass().getSimpleName(),
+      "message", e.getMessage()
+    );
+  }
+
+  @ExceptionHandler({ ConstraintViolationException.class })
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  public Object handleConstraintViolation(ConstraintViolationException e) {
+    return Map.of(
+      "type", e.getClass().getSimpleName(),
+      "message", e.getConstraintViolations().stream()
+          .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+          .sorted()
+          .collect(Collectors.joining(", "))
+    );
+  }
+
+  @ExceptionHandler({ TaskRejectedException.class })
+  @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+  public Object handleTaskRejected(Throwable e) {
+    return Map.of(
+      "type", e.getClass().getSimpleName(),
+      "message", "too many responses are being streamed, try again later"
+    );
+  }
 }
@@ -1,8 +1,15 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.aop.StatementBudget;
 import edu.ucsb.cs156.example.entities.Article;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.interceptors.ConditionalGet;
+import edu.ucsb.cs156.example.interceptors.VersionedTable;
+import edu.ucsb.cs156.example.models.BulkResult;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.repositories.ArticleRepository;
+import edu.ucsb.cs156.example.services.FieldSelectionService;
+import edu.ucsb.cs156.example.services.JsonStreamingService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
@@ -11,52 +18,107 @@ import lombok.extern.slf4j.Slf4j;
 import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 
+import java.util.List;
+
 import java.time.LocalDate;
 
 @Api(description = "Article")
 @RequestMapping("/api/Article")
 @RestController
+@Validated
+@VersionedTable("article")
 @Slf4j
 public class ArticleController extends ApiController {
 
     @Autowired
     ArticleRepository articleRepository;
 
+    @Autowired
+    JsonStreamingService jsonStreaming;
+
+    @Autowired
+    FieldSelectionService fieldSelection;
+
     @ApiOperation(value = "List all articles")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @ConditionalGet
+    @StatementBudget(1)
     @GetMapping("/all")
-    public Iterable<Article> allArticles() {
-        Iterable <Article> articles = articleRepository.findAll();
-        return articles;
+    public ResponseEntity<StreamingResponseBody> allArticles(
+            @ApiParam("comma separated fields to return, e.g. id,title; all of them if omitted") @RequestParam(required = false) String fields) {
+        MediaType format = jsonStreaming.negotiate();
+        StreamingResponseBody body;
+        if (fields == null) {
+            body = out -> jsonStreaming.writeArray(() -> articleRepository.streamAllByOrderByIdAsc(), out, format);
+        } else {
+            List<String> selected = fieldSelection.fields(Article.class, fields);
+            body = out -> jsonStreaming.writeArray(() -> fieldSelection.stream(Article.class, selected), out, format);
+        }
+        return ResponseEntity.ok().contentType(format).body(body);
+    }
+
+    @ApiOperation(value = "List all articles for list views, with the explanation shortened")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @ConditionalGet
+    @StatementBudget(1)
+    @GetMapping("/summary")
+    public ResponseEntity<StreamingResponseBody> articleSummaries() {
+        MediaType format = jsonStreaming.negotiate();
+        StreamingResponseBody body = out -> jsonStreaming.writeArray(() -> articleRepository.streamSummaries(), out, format);
+        return ResponseEntity.ok().contentType(format).body(body);
+    }
+
+    @ApiOperation(value = "List articles one page at a time, ordered by id")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @ConditionalGet
+    @StatementBudget(1)
+    @GetMapping("/page")
+    @Transactional(readOnly = true)
+    public KeysetPage<Article> pageArticle(
+            @ApiParam("return only rows with id greater than this (the next value of the previous page)") @RequestParam(required = false) Long after,
+            @ApiParam("maximum number of rows to return (default 100, at most 1000)") @RequestParam(required = false) Integer limit) {
+        Pageable pageable = keysetLimit(limit);
+        List<Article> rows = articleRepository.findByIdGreaterThanOrderByIdAsc(after == null ? 0 : after, pageable);
+        return keysetPage(rows, pageable, Article::getId);
     }
 
     @ApiOperation(value = "Get a single article")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @StatementBudget(1)
     @GetMapping("")
-    public Article getById(
+    @Transactional(readOnly = true)
+    public ResponseEntity<Article> getById(
             @ApiParam("id") @RequestParam Long id) {
         Article article = articleRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(Article.class, id));
             
-        return article;
+        return versioned(article);
     }
     
 
     @ApiOperation(value = "Create a new article")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @StatementBudget(2)
     @PostMapping("/post")
     public Article postArticle(
             @ApiParam("title") @RequestParam String title,
@@ -82,34 +144,54 @@ public class ArticleController extends ApiController {
 
         @ApiOperation(value = "Delete an article")
         @PreAuthorize("hasRole('ROLE_ADMIN')")
+        @StatementBudget(1)
         @DeleteMapping("")
         public Object deleteArticle(
                 @ApiParam("id") @RequestParam Long id){
-            Article article = articleRepository.findById(id)
-                    .orElseThrow(() -> new EntityNotFoundException(Article.class, id));
-                
-            articleRepository.delete(article);
+            if (articleRepository.removeById(id) == 0) {
+                throw new EntityNotFoundException(Article.class, id);
+            }
             return genericMessage("Article with id %s deleted".formatted(id));
         }
 
         @ApiOperation(value = "Update a single article")
         @PreAuthorize("hasRole('ROLE_ADMIN')")
+        @StatementBudget(2)
         @PutMapping("")
-        public Article updateArticle(
-                @ApiParam("id") @RequestParam Long id, 
+        public ResponseEntity<Article> updateArticle(
+                @ApiParam("id") @RequestParam Long id,
+                @ApiParam("ETag of the version being replaced; 412 if it has changed since") @RequestHeader(value = "If-Match", required = false) String ifMatch,
                 @RequestBody @Valid Article incoming){
-            
-            Article article = articleRepository.findById(id)
-                    .orElseThrow(() -> new EntityNotFoundException(Article.class, id));
-            
-            article.setTitle(incoming.getTitle());
-            article.setUrl(incoming.getUrl());
-            article.setExplanation(incoming.getExplanation());
-            article.setEmail(incoming.getEmail());
-            article.setDateAdded(incoming.getDateAdded());
+            Long expected = ifMatchVersion(ifMatch);
+            if (articleRepository.updateById(id, expected, incoming) == 0) {
+                throw notUpdated(articleRepository, Article.class, id, expected);
+            }
+            incoming.setId(id);
+            return updated(articleRepository, id, incoming, expected);
+        }
 
-            articleRepository.save(article);
+    @ApiOperation(value = "Create many articles in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/bulk")
+    @Transactional
+    public List<BulkResult> postBulk(@RequestBody @Valid List<Article> incoming) {
+        incoming.forEach(d -> d.setId(0)); // ids are generated
+        return bulkCreate(articleRepository, incoming, Article::getId);
+    }
 
-            return article;
-        }
+    @ApiOperation(value = "Update many articles in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PutMapping("/bulk")
+    @Transactional
+    public List<BulkResult> updateBulk(@RequestBody @Valid List<Article> incoming) {
+        return bulkUpdate(articleRepository, incoming, Article::getId, Article.class);
+    }
+
+    @ApiOperation(value = "Delete many articles in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @DeleteMapping("/bulk")
+    @Transactional
+    public List<BulkResult> deleteBulk(@RequestBody List<Long> ids) {
+        return bulkDelete(articleRepository, ids, Article::getId, Article.class);
+    }
 }
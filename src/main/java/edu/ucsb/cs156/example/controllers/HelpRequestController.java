@@ -1,8 +1,15 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.aop.StatementBudget;
 import edu.ucsb.cs156.example.entities.HelpRequest;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.interceptors.ConditionalGet;
+import edu.ucsb.cs156.example.interceptors.VersionedTable;
+import edu.ucsb.cs156.example.models.BulkResult;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import edu.ucsb.cs156.example.services.FieldSelectionService;
+import edu.ucsb.cs156.example.services.JsonStreamingService;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -10,51 +17,105 @@ import io.swagger.annotations.ApiParam;
 import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import java.time.LocalDateTime;
 
 
 import javax.validation.Valid;
 
+import java.util.List;
+
 @Api(description = "HelpRequest")
 @RequestMapping("/api/helprequest")
 @RestController
+@Validated
+@VersionedTable("helprequest")
 @Slf4j
 public class HelpRequestController extends ApiController {
 
     @Autowired
     HelpRequestRepository helpRequestRepository; 
 
+    @Autowired
+    JsonStreamingService jsonStreaming;
+
+    @Autowired
+    FieldSelectionService fieldSelection;
+
     @ApiOperation(value = "List all help requests")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @ConditionalGet
+    @StatementBudget(1)
     @GetMapping("/all")
-    public Iterable<HelpRequest> allRequests(){
-        Iterable<HelpRequest> requests = helpRequestRepository.findAll();
-        return requests; 
+    public ResponseEntity<StreamingResponseBody> allRequests(
+            @ApiParam("comma separated fields to return, e.g. id,teamId; all of them if omitted") @RequestParam(required = false) String fields) {
+        MediaType format = jsonStreaming.negotiate();
+        StreamingResponseBody body;
+        if (fields == null) {
+            body = out -> jsonStreaming.writeArray(() -> helpRequestRepository.streamAllByOrderByIdAsc(), out, format);
+        } else {
+            List<String> selected = fieldSelection.fields(HelpRequest.class, fields);
+            body = out -> jsonStreaming.writeArray(() -> fieldSelection.stream(HelpRequest.class, selected), out, format);
+        }
+        return ResponseEntity.ok().contentType(format).body(body);
+    }
+
+    @ApiOperation(value = "List all help requests for list views, with the explanation shortened")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @ConditionalGet
+    @StatementBudget(1)
+    @GetMapping("/summary")
+    public ResponseEntity<StreamingResponseBody> helpRequestSummaries() {
+        MediaType format = jsonStreaming.negotiate();
+        StreamingResponseBody body = out -> jsonStreaming.writeArray(() -> helpRequestRepository.streamSummaries(), out, format);
+        return ResponseEntity.ok().contentType(format).body(body);
+    }
 
+    @ApiOperation(value = "List help requests one page at a time, ordered by id")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @ConditionalGet
+    @StatementBudget(1)
+    @GetMapping("/page")
+    @Transactional(readOnly = true)
+    public KeysetPage<HelpRequest> pageHelpRequest(
+            @ApiParam("return only rows with id greater than this (the next value of the previous page)") @RequestParam(required = false) Long after,
+            @ApiParam("maximum number of rows to return (default 100, at most 1000)") @RequestParam(required = false) Integer limit) {
+        Pageable pageable = keysetLimit(limit);
+        List<HelpRequest> rows = helpRequestRepository.findByIdGreaterThanOrderByIdAsc(after == null ? 0 : after, pageable);
+        return keysetPage(rows, pageable, HelpRequest::getId);
     }
 
     @ApiOperation(value = "Get a single request")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @StatementBudget(1)
     @GetMapping("")
-    public HelpRequest getById(
+    @Transactional(readOnly = true)
+    public ResponseEntity<HelpRequest> getById(
         @ApiParam("id") @RequestParam Long id){
             HelpRequest helpRequest = helpRequestRepository.findById(id)
             .orElseThrow(() -> new EntityNotFoundException(HelpRequest.class, id)); 
         
-        return helpRequest; 
+        return versioned(helpRequest);
         }
     
     @ApiOperation(value = "Create a new help request")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @StatementBudget(2)
     @PostMapping("/post")
     public HelpRequest postHelpRequest(
         @ApiParam("requesterEmail") @RequestParam String requesterEmail,
@@ -79,35 +140,54 @@ public class HelpRequestController extends ApiController {
     
     @ApiOperation(value = "Delete a Help Request")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @StatementBudget(1)
     @DeleteMapping("")
     public Object deleteHelp(
         @ApiParam("id") @RequestParam Long id){
-            HelpRequest helpRequest = helpRequestRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(HelpRequest.class, id));
-            
-                helpRequestRepository.delete(helpRequest); 
-                return genericMessage("HelpRequest with id %s deleted".formatted(id)); 
+        if (helpRequestRepository.removeById(id) == 0) {
+            throw new EntityNotFoundException(HelpRequest.class, id);
         }
+        return genericMessage("HelpRequest with id %s deleted".formatted(id));
+    }
 
     @ApiOperation(value = "Update a single request")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @StatementBudget(2)
     @PutMapping("")
-    public HelpRequest updateRequest(
-        @ApiParam("id") @RequestParam Long id, 
+    public ResponseEntity<HelpRequest> updateRequest(
+        @ApiParam("id") @RequestParam Long id,
+        @ApiParam("ETag of the version being replaced; 412 if it has changed since") @RequestHeader(value = "If-Match", required = false) String ifMatch,
         @RequestBody @Valid HelpRequest incoming){
-            
-            HelpRequest request = helpRequestRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(HelpRequest.class,id)); 
-            
-            request.setRequesterEmail(incoming.getRequesterEmail());
-            request.setTeamId(incoming.getTeamId());
-            request.setTableOrBreakoutRoom(incoming.getTableOrBreakoutRoom());
-            request.setRequestTime(incoming.getRequestTime());
-            request.setExplanation(incoming.getExplanation());
-            request.setSolved(incoming.getSolved()); 
-
-            helpRequestRepository.save(request); 
-            return request; 
-
+        Long expected = ifMatchVersion(ifMatch);
+        if (helpRequestRepository.updateById(id, expected, incoming) == 0) {
+            throw notUpdated(helpRequestRepository, HelpRequest.class, id, expected);
         }
+        incoming.setId(id);
+        return updated(helpRequestRepository, id, incoming, expected);
+    }
+
+    @ApiOperation(value = "Create many help requests in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/bulk")
+    @Transactional
+    public List<BulkResult> postBulk(@RequestBody @Valid List<HelpRequest> incoming) {
+        incoming.forEach(d -> d.setId(0)); // ids are generated
+        return bulkCreate(helpRequestRepository, incoming, HelpRequest::getId);
+    }
+
+    @ApiOperation(value = "Update many help requests in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PutMapping("/bulk")
+    @Transactional
+    public List<BulkResult> updateBulk(@RequestBody @Valid List<HelpRequest> incoming) {
+        return bulkUpdate(helpRequestRepository, incoming, HelpRequest::getId, HelpRequest.class);
+    }
+
+    @ApiOperation(value = "Delete many help requests in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @DeleteMapping("/bulk")
+    @Transactional
+    public List<BulkResult> deleteBulk(@RequestBody List<Long> ids) {
+        return bulkDelete(helpRequestRepository, ids, HelpRequest::getId, HelpRequest.class);
+    }
 }
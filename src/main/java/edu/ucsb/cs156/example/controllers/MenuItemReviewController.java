@@ -1,27 +1,43 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.aop.StatementBudget;
 import edu.ucsb.cs156.example.entities.MenuItemReview;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.interceptors.ConditionalGet;
+import edu.ucsb.cs156.example.interceptors.VersionedTable;
+import edu.ucsb.cs156.example.models.BulkResult;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
+import edu.ucsb.cs156.example.services.FieldSelectionService;
+import edu.ucsb.cs156.example.services.JsonStreamingService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 
+import java.util.List;
+
 import com.fasterxml.jackson.core.JsonProcessingException;
 
 import java.time.LocalDateTime;
@@ -30,33 +46,79 @@ import java.time.LocalDateTime;
 @Api(description = "MenuItemReview")
 @RequestMapping("/api/MenuItemReview")
 @RestController
+@Validated
+@VersionedTable("menuitemreview")
 @Slf4j
 public class MenuItemReviewController extends ApiController {
 
     @Autowired
     MenuItemReviewRepository menuItemReviewRepository;
 
+    @Autowired
+    JsonStreamingService jsonStreaming;
+
+    @Autowired
+    FieldSelectionService fieldSelection;
+
     @ApiOperation(value = "List all reviews")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @ConditionalGet
+    @StatementBudget(1)
     @GetMapping("/all")
-    public Iterable<MenuItemReview> allReviews() {
-        Iterable<MenuItemReview> reviews = menuItemReviewRepository.findAll();
-        return reviews;
+    public ResponseEntity<StreamingResponseBody> allReviews(
+            @ApiParam("comma separated fields to return, e.g. id,stars; all of them if omitted") @RequestParam(required = false) String fields) {
+        MediaType format = jsonStreaming.negotiate();
+        StreamingResponseBody body;
+        if (fields == null) {
+            body = out -> jsonStreaming.writeArray(() -> menuItemReviewRepository.streamAllByOrderByIdAsc(), out, format);
+        } else {
+            List<String> selected = fieldSelection.fields(MenuItemReview.class, fields);
+            body = out -> jsonStreaming.writeArray(() -> fieldSelection.stream(MenuItemReview.class, selected), out, format);
+        }
+        return ResponseEntity.ok().contentType(format).body(body);
+    }
+
+    @ApiOperation(value = "List all menu item reviews for list views, with the comments shortened")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @ConditionalGet
+    @StatementBudget(1)
+    @GetMapping("/summary")
+    public ResponseEntity<StreamingResponseBody> menuItemReviewSummaries() {
+        MediaType format = jsonStreaming.negotiate();
+        StreamingResponseBody body = out -> jsonStreaming.writeArray(() -> menuItemReviewRepository.streamSummaries(), out, format);
+        return ResponseEntity.ok().contentType(format).body(body);
+    }
+
+    @ApiOperation(value = "List reviews one page at a time, ordered by id")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @ConditionalGet
+    @StatementBudget(1)
+    @GetMapping("/page")
+    @Transactional(readOnly = true)
+    public KeysetPage<MenuItemReview> pageMenuItemReview(
+            @ApiParam("return only rows with id greater than this (the next value of the previous page)") @RequestParam(required = false) Long after,
+            @ApiParam("maximum number of rows to return (default 100, at most 1000)") @RequestParam(required = false) Integer limit) {
+        Pageable pageable = keysetLimit(limit);
+        List<MenuItemReview> rows = menuItemReviewRepository.findByIdGreaterThanOrderByIdAsc(after == null ? 0 : after, pageable);
+        return keysetPage(rows, pageable, MenuItemReview::getId);
     }
 
     @ApiOperation(value = "Get a single review")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @StatementBudget(1)
     @GetMapping("")
-    public MenuItemReview getById(
+    @Transactional(readOnly = true)
+    public ResponseEntity<MenuItemReview> getById(
             @ApiParam("id") @RequestParam Long id) {
                 MenuItemReview reviews = menuItemReviewRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(MenuItemReview.class, id));
 
-        return reviews;
+        return versioned(reviews);
     }
 
     @ApiOperation(value = "Create a new review")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @StatementBudget(2)
     @PostMapping("/post")
     public MenuItemReview postMenuItemReview(
             @ApiParam("itemId") @RequestParam Long itemId,
@@ -85,35 +147,54 @@ public class MenuItemReviewController extends ApiController {
 
     @ApiOperation(value = "Delete a review")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @StatementBudget(1)
     @DeleteMapping("")
     public Object deleteReviews(
             @ApiParam("id") @RequestParam Long id) {
-                MenuItemReview reviews = menuItemReviewRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(MenuItemReview.class, id));
-
-        menuItemReviewRepository.delete(reviews);
+        if (menuItemReviewRepository.removeById(id) == 0) {
+            throw new EntityNotFoundException(MenuItemReview.class, id);
+        }
         return genericMessage("MenuItemReview with id %s deleted".formatted(id));
     }
 
     @ApiOperation(value = "Update a single review")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @StatementBudget(2)
     @PutMapping("")
-    public MenuItemReview updateReviews(
+    public ResponseEntity<MenuItemReview> updateReviews(
             @ApiParam("id") @RequestParam Long id,
+            @ApiParam("ETag of the version being replaced; 412 if it has changed since") @RequestHeader(value = "If-Match", required = false) String ifMatch,
             @RequestBody @Valid MenuItemReview incoming) {
+        Long expected = ifMatchVersion(ifMatch);
+        if (menuItemReviewRepository.updateById(id, expected, incoming) == 0) {
+            throw notUpdated(menuItemReviewRepository, MenuItemReview.class, id, expected);
+        }
+        incoming.setId(id);
+        return updated(menuItemReviewRepository, id, incoming, expected);
+    }
 
-                MenuItemReview reviews = menuItemReviewRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(MenuItemReview.class, id));
-
-
-        reviews.setItemId(incoming.getItemId());  
-        reviews.setReviewerEmail(incoming.getReviewerEmail());
-        reviews.setStars(incoming.getStars());
-        reviews.setDateReviewed(incoming.getDateReviewed());
-        reviews.setComments(incoming.getComments());
+    @ApiOperation(value = "Create many reviews in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/bulk")
+    @Transactional
+    public List<BulkResult> postBulk(@RequestBody @Valid List<MenuItemReview> incoming) {
+        incoming.forEach(d -> d.setId(null)); // ids are generated
+        return bulkCreate(menuItemReviewRepository, incoming, MenuItemReview::getId);
+    }
 
-        menuItemReviewRepository.save(reviews);
+    @ApiOperation(value = "Update many reviews in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PutMapping("/bulk")
+    @Transactional
+    public List<BulkResult> updateBulk(@RequestBody @Valid List<MenuItemReview> incoming) {
+        return bulkUpdate(menuItemReviewRepository, incoming, MenuItemReview::getId, MenuItemReview.class);
+    }
 
-        return reviews;
+    @ApiOperation(value = "Delete many reviews in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @DeleteMapping("/bulk")
+    @Transactional
+    public List<BulkResult> deleteBulk(@RequestBody List<Long> ids) {
+        return bulkDelete(menuItemReviewRepository, ids, MenuItemReview::getId, MenuItemReview.class);
     }
-}
\ No newline at end of file
+}
@@ -1,62 +1,124 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.aop.StatementBudget;
 import edu.ucsb.cs156.example.entities.Recommendation;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.interceptors.ConditionalGet;
+import edu.ucsb.cs156.example.interceptors.VersionedTable;
+import edu.ucsb.cs156.example.models.BulkResult;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.repositories.RecommendationRepository;
+import edu.ucsb.cs156.example.services.FieldSelectionService;
+import edu.ucsb.cs156.example.services.JsonStreamingService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
 
 import javax.validation.Valid;
 
+import java.util.List;
+
 import com.fasterxml.jackson.core.JsonProcessingException;
 
 
 @Api(description = "Recommendation")
 @RequestMapping("/api/Recommendation")
 @RestController
+@Validated
+@VersionedTable("recommendation")
 @Slf4j
 public class RecommendationController extends ApiController {
 
     @Autowired
     RecommendationRepository recommendationRepository;
 
+    @Autowired
+    JsonStreamingService jsonStreaming;
+
+    @Autowired
+    FieldSelectionService fieldSelection;
+
     @ApiOperation(value = "List all recommendation requests")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @ConditionalGet
+    @StatementBudget(1)
     @GetMapping("/all")
-    public Iterable<Recommendation> allRecommendations() {
-        Iterable<Recommendation> recs = recommendationRepository.findAll();
-        return recs;
+    public ResponseEntity<StreamingResponseBody> allRecommendations(
+            @ApiParam("comma separated fields to return, e.g. id,professorEmail; all of them if omitted") @RequestParam(required = false) String fields) {
+        MediaType format = jsonStreaming.negotiate();
+        StreamingResponseBody body;
+        if (fields == null) {
+            body = out -> jsonStreaming.writeArray(() -> recommendationRepository.streamAllByOrderByIdAsc(), out, format);
+        } else {
+            List<String> selected = fieldSelection.fields(Recommendation.class, fields);
+            body = out -> jsonStreaming.writeArray(() -> fieldSelection.stream(Recommendation.class, selected), out, format);
+        }
+        return ResponseEntity.ok().contentType(format).body(body);
+    }
+
+    @ApiOperation(value = "List all recommendations for list views, with the explanation shortened")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @ConditionalGet
+    @StatementBudget(1)
+    @GetMapping("/summary")
+    public ResponseEntity<StreamingResponseBody> recommendationSummaries() {
+        MediaType format = jsonStreaming.negotiate();
+        StreamingResponseBody body = out -> jsonStreaming.writeArray(() -> recommendationRepository.streamSummaries(), out, format);
+        return ResponseEntity.ok().contentType(format).body(body);
+    }
+
+    @ApiOperation(value = "List recommendation requests one page at a time, ordered by id")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @ConditionalGet
+    @StatementBudget(1)
+    @GetMapping("/page")
+    @Transactional(readOnly = true)
+    public KeysetPage<Recommendation> pageRecommendation(
+            @ApiParam("return only rows with id greater than this (the next value of the previous page)") @RequestParam(required = false) Long after,
+            @ApiParam("maximum number of rows to return (default 100, at most 1000)") @RequestParam(required = false) Integer limit) {
+        Pageable pageable = keysetLimit(limit);
+        List<Recommendation> rows = recommendationRepository.findByIdGreaterThanOrderByIdAsc(after == null ? 0 : after, pageable);
+        return keysetPage(rows, pageable, Recommendation::getId);
     }
 
     @ApiOperation(value = "Get a single recommendation request")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @StatementBudget(1)
     @GetMapping("")
-    public Recommendation getById(
+    @Transactional(readOnly = true)
+    public ResponseEntity<Recommendation> getById(
             @ApiParam("id") @RequestParam Long id) {
         Recommendation rec = recommendationRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(Recommendation.class, id));
 
-        return rec;
+        return versioned(rec);
     }
 
     @ApiOperation(value = "Create a new recommendation request")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @StatementBudget(2)
     @PostMapping("/post")
     public Recommendation postRecommendation(
         @ApiParam("requesterEmail") @RequestParam String requesterEmail,
@@ -83,36 +145,54 @@ public class RecommendationController extends ApiController {
 
     @ApiOperation(value = "Delete a Recommendation Request")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @StatementBudget(1)
     @DeleteMapping("")
     public Object deleteRecommendation(
         @ApiParam("id") @RequestParam Long id) {
-        Recommendation rec = recommendationRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(Recommendation.class, id));
-
-        recommendationRepository.delete(rec);
+        if (recommendationRepository.removeById(id) == 0) {
+            throw new EntityNotFoundException(Recommendation.class, id);
+        }
         return genericMessage("Recommendation with id %s deleted".formatted(id));
     }
 
     @ApiOperation(value = "Update a single recommendation")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @StatementBudget(2)
     @PutMapping("")
-    public Recommendation updateRecommendations(
+    public ResponseEntity<Recommendation> updateRecommendations(
             @ApiParam("id") @RequestParam Long id,
+            @ApiParam("ETag of the version being replaced; 412 if it has changed since") @RequestHeader(value = "If-Match", required = false) String ifMatch,
             @RequestBody @Valid Recommendation incoming) {
+        Long expected = ifMatchVersion(ifMatch);
+        if (recommendationRepository.updateById(id, expected, incoming) == 0) {
+            throw notUpdated(recommendationRepository, Recommendation.class, id, expected);
+        }
+        incoming.setId(id);
+        return updated(recommendationRepository, id, incoming, expected);
+    }
 
-        Recommendation rec = recommendationRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(Recommendation.class, id));
-
-
-        rec.setRequesterEmail(incoming.getRequesterEmail());  
-        rec.setProfessorEmail(incoming.getProfessorEmail());
-        rec.setExplanation(incoming.getExplanation());
-        rec.setDateRequested(incoming.getDateRequested());
-        rec.setDateNeeded(incoming.getDateNeeded());
-        rec.setDone(incoming.getDone());
+    @ApiOperation(value = "Create many recommendation requests in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/bulk")
+    @Transactional
+    public List<BulkResult> postBulk(@RequestBody @Valid List<Recommendation> incoming) {
+        incoming.forEach(d -> d.setId(0)); // ids are generated
+        return bulkCreate(recommendationRepository, incoming, Recommendation::getId);
+    }
 
-        recommendationRepository.save(rec);
+    @ApiOperation(value = "Update many recommendation requests in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PutMapping("/bulk")
+    @Transactional
+    public List<BulkResult> updateBulk(@RequestBody @Valid List<Recommendation> incoming) {
+        return bulkUpdate(recommendationRepository, incoming, Recommendation::getId, Recommendation.class);
+    }
 
-        return rec;
+    @ApiOperation(value = "Delete many recommendation requests in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @DeleteMapping("/bulk")
+    @Transactional
+    public List<BulkResult> deleteBulk(@RequestBody List<Long> ids) {
+        return bulkDelete(recommendationRepository, ids, Recommendation::getId, Recommendation.class);
     }
-}
\ No newline at end of file
+}
@@ -1,8 +1,16 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.aop.CoalesceRequests;
+import edu.ucsb.cs156.example.aop.StatementBudget;
 import edu.ucsb.cs156.example.entities.UCSBDate;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.interceptors.ConditionalGet;
+import edu.ucsb.cs156.example.interceptors.VersionedTable;
+import edu.ucsb.cs156.example.models.BulkResult;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.services.JsonStreamingService;
+import edu.ucsb.cs156.example.services.ResponseBodyCache;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
@@ -11,51 +19,87 @@ import lombok.extern.slf4j.Slf4j;
 import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.validation.Valid;
 
+import java.util.List;
+
 import java.time.LocalDateTime;
 
 @Api(description = "UCSBDates")
 @RequestMapping("/api/ucsbdates")
 @RestController
+@Validated
+@VersionedTable("ucsbdates")
 @Slf4j
 public class UCSBDatesController extends ApiController {
 
     @Autowired
     UCSBDateRepository ucsbDateRepository;
 
+    @Autowired
+    JsonStreamingService jsonStreaming;
+
+    @Autowired
+    ResponseBodyCache responseBodyCache;
+
     @ApiOperation(value = "List all ucsb dates")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @ConditionalGet
+    @CoalesceRequests
+    @StatementBudget(1)
     @GetMapping("/all")
-    public Iterable<UCSBDate> allUCSBDates() {
-        Iterable<UCSBDate> dates = ucsbDateRepository.findAll();
-        return dates;
+    public ResponseEntity<byte[]> allUCSBDates(
+            @RequestHeader(value = "Accept-Encoding", required = false) String acceptEncoding) {
+        return responseBodyCache.respond("ucsbdates", acceptEncoding,
+                (out, format) -> jsonStreaming.writeArray(() -> ucsbDateRepository.streamAllByOrderByIdAsc(), out, format));
+    }
+
+    @ApiOperation(value = "List ucsb dates one page at a time, ordered by id")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @ConditionalGet
+    @StatementBudget(1)
+    @GetMapping("/page")
+    @Transactional(readOnly = true)
+    public KeysetPage<UCSBDate> pageUCSBDate(
+            @ApiParam("return only rows with id greater than this (the next value of the previous page)") @RequestParam(required = false) Long after,
+            @ApiParam("maximum number of rows to return (default 100, at most 1000)") @RequestParam(required = false) Integer limit) {
+        Pageable pageable = keysetLimit(limit);
+        List<UCSBDate> rows = ucsbDateRepository.findByIdGreaterThanOrderByIdAsc(after == null ? 0 : after, pageable);
+        return keysetPage(rows, pageable, UCSBDate::getId);
     }
 
     @ApiOperation(value = "Get a single date")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @StatementBudget(1)
     @GetMapping("")
-    public UCSBDate getById(
+    @Transactional(readOnly = true)
+    public ResponseEntity<UCSBDate> getById(
             @ApiParam("id") @RequestParam Long id) {
         UCSBDate ucsbDate = ucsbDateRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
 
-        return ucsbDate;
+        return versioned(ucsbDate);
     }
 
     @ApiOperation(value = "Create a new date")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @StatementBudget(2)
     @PostMapping("/post")
     public UCSBDate postUCSBDate(
             @ApiParam("quarterYYYYQ") @RequestParam String quarterYYYYQ,
@@ -80,32 +124,54 @@ public class UCSBDatesController extends ApiController {
 
     @ApiOperation(value = "Delete a UCSBDate")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @StatementBudget(1)
     @DeleteMapping("")
     public Object deleteUCSBDate(
             @ApiParam("id") @RequestParam Long id) {
-        UCSBDate ucsbDate = ucsbDateRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
-
-        ucsbDateRepository.delete(ucsbDate);
+        if (ucsbDateRepository.removeById(id) == 0) {
+            throw new EntityNotFoundException(UCSBDate.class, id);
+        }
         return genericMessage("UCSBDate with id %s deleted".formatted(id));
     }
 
     @ApiOperation(value = "Update a single date")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @StatementBudget(2)
     @PutMapping("")
-    public UCSBDate updateUCSBDate(
+    public ResponseEntity<UCSBDate> updateUCSBDate(
             @ApiParam("id") @RequestParam Long id,
+            @ApiParam("ETag of the version being replaced; 412 if it has changed since") @RequestHeader(value = "If-Match", required = false) String ifMatch,
             @RequestBody @Valid UCSBDate incoming) {
+        Long expected = ifMatchVersion(ifMatch);
+        if (ucsbDateRepository.updateById(id, expected, incoming) == 0) {
+            throw notUpdated(ucsbDateRepository, UCSBDate.class, id, expected);
+        }
+        incoming.setId(id);
+        return updated(ucsbDateRepository, id, incoming, expected);
+    }
 
-        UCSBDate ucsbDate = ucsbDateRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
-
-        ucsbDate.setQuarterYYYYQ(incoming.getQuarterYYYYQ());
-        ucsbDate.setName(incoming.getName());
-        ucsbDate.setLocalDateTime(incoming.getLocalDateTime());
+    @ApiOperation(value = "Create many dates in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/bulk")
+    @Transactional
+    public List<BulkResult> postBulk(@RequestBody @Valid List<UCSBDate> incoming) {
+        incoming.forEach(d -> d.setId(0)); // ids are generated
+        return bulkCreate(ucsbDateRepository, incoming, UCSBDate::getId);
+    }
 
-        ucsbDateRepository.save(ucsbDate);
+    @ApiOperation(value = "Update many dates in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PutMapping("/bulk")
+    @Transactional
+    public List<BulkResult> updateBulk(@RequestBody @Valid List<UCSBDate> incoming) {
+        return bulkUpdate(ucsbDateRepository, incoming, UCSBDate::getId, UCSBDate.class);
+    }
 
-        return ucsbDate;
+    @ApiOperation(value = "Delete many dates in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @DeleteMapping("/bulk")
+    @Transactional
+    public List<BulkResult> deleteBulk(@RequestBody List<Long> ids) {
+        return bulkDelete(ucsbDateRepository, ids, UCSBDate::getId, UCSBDate.class);
     }
 }
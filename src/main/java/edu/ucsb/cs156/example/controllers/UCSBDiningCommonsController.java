@@ -1,57 +1,94 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.aop.StatementBudget;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.interceptors.ConditionalGet;
+import edu.ucsb.cs156.example.interceptors.VersionedTable;
+import edu.ucsb.cs156.example.models.BulkResult;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import edu.ucsb.cs156.example.services.ResponseBodyCache;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.validation.Valid;
 
+import java.util.List;
+
 
 @Api(description = "UCSBDiningCommons")
 @RequestMapping("/api/ucsbdiningcommons")
 @RestController
+@Validated
+@VersionedTable("ucsbdiningcommons")
 @Slf4j
 public class UCSBDiningCommonsController extends ApiController {
 
     @Autowired
     UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
 
+    @Autowired
+    ResponseBodyCache responseBodyCache;
+
     @ApiOperation(value = "List all ucsb dining commons")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @ConditionalGet
+    @StatementBudget(1)
     @GetMapping("/all")
-    public Iterable<UCSBDiningCommons> allCommonss() {
-        Iterable<UCSBDiningCommons> commons = ucsbDiningCommonsRepository.findAll();
-        return commons;
+    public ResponseEntity<byte[]> allCommonss(
+            @RequestHeader(value = "Accept-Encoding", required = false) String acceptEncoding) {
+        return responseBodyCache.respond("ucsbdiningcommons", acceptEncoding, () -> ucsbDiningCommonsRepository.findAll());
+    }
+
+    @ApiOperation(value = "List ucsb dining commons one page at a time, ordered by code")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @ConditionalGet
+    @StatementBudget(1)
+    @GetMapping("/page")
+    @Transactional(readOnly = true)
+    public KeysetPage<UCSBDiningCommons> pageUCSBDiningCommons(
+            @ApiParam("return only rows with code greater than this (the next value of the previous page)") @RequestParam(required = false) String after,
+            @ApiParam("maximum number of rows to return (default 100, at most 1000)") @RequestParam(required = false) Integer limit) {
+        Pageable pageable = keysetLimit(limit);
+        List<UCSBDiningCommons> rows = ucsbDiningCommonsRepository.findByCodeGreaterThanOrderByCodeAsc(after == null ? "" : after, pageable);
+        return keysetPage(rows, pageable, UCSBDiningCommons::getCode);
     }
 
     @ApiOperation(value = "Get a single commons")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @StatementBudget(1)
     @GetMapping("")
-    public UCSBDiningCommons getById(
+    @Transactional(readOnly = true)
+    public ResponseEntity<UCSBDiningCommons> getById(
             @ApiParam("code") @RequestParam String code) {
         UCSBDiningCommons commons = ucsbDiningCommonsRepository.findById(code)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
 
-        return commons;
+        return versioned(commons);
     }
 
     @ApiOperation(value = "Create a new commons")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @StatementBudget(2)
     @PostMapping("/post")
     public UCSBDiningCommons postCommons(
         @ApiParam("code") @RequestParam String code,
@@ -80,36 +117,53 @@ public class UCSBDiningCommonsController extends ApiController {
 
     @ApiOperation(value = "Delete a UCSBDiningCommons")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @StatementBudget(1)
     @DeleteMapping("")
     public Object deleteCommons(
             @ApiParam("code") @RequestParam String code) {
-        UCSBDiningCommons commons = ucsbDiningCommonsRepository.findById(code)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
-
-        ucsbDiningCommonsRepository.delete(commons);
+        if (ucsbDiningCommonsRepository.removeById(code) == 0) {
+            throw new EntityNotFoundException(UCSBDiningCommons.class, code);
+        }
         return genericMessage("UCSBDiningCommons with id %s deleted".formatted(code));
     }
 
     @ApiOperation(value = "Update a single commons")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @StatementBudget(2)
     @PutMapping("")
-    public UCSBDiningCommons updateCommons(
+    public ResponseEntity<UCSBDiningCommons> updateCommons(
             @ApiParam("code") @RequestParam String code,
+            @ApiParam("ETag of the version being replaced; 412 if it has changed since") @RequestHeader(value = "If-Match", required = false) String ifMatch,
             @RequestBody @Valid UCSBDiningCommons incoming) {
+        Long expected = ifMatchVersion(ifMatch);
+        if (ucsbDiningCommonsRepository.updateById(code, expected, incoming) == 0) {
+            throw notUpdated(ucsbDiningCommonsRepository, UCSBDiningCommons.class, code, expected);
+        }
+        incoming.setCode(code);
+        return updated(ucsbDiningCommonsRepository, code, incoming, expected);
+    }
 
-        UCSBDiningCommons commons = ucsbDiningCommonsRepository.findById(code)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
-
-
-        commons.setName(incoming.getName());  
-        commons.setHasSackMeal(incoming.getHasSackMeal());
-        commons.setHasTakeOutMeal(incoming.getHasTakeOutMeal());
-        commons.setHasDiningCam(incoming.getHasDiningCam());
-        commons.setLatitude(incoming.getLatitude());
-        commons.setLongitude(incoming.getLongitude());
+    @ApiOperation(value = "Create many commons in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/bulk")
+    @Transactional
+    public List<BulkResult> postBulk(@RequestBody @Valid List<UCSBDiningCommons> incoming) {
+        return bulkCreate(ucsbDiningCommonsRepository, incoming, UCSBDiningCommons::getCode, UCSBDiningCommons.class);
+    }
 
-        ucsbDiningCommonsRepository.save(commons);
+    @ApiOperation(value = "Update many commons in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PutMapping("/bulk")
+    @Transactional
+    public List<BulkResult> updateBulk(@RequestBody @Valid List<UCSBDiningCommons> incoming) {
+        return bulkUpdate(ucsbDiningCommonsRepository, incoming, UCSBDiningCommons::getCode, UCSBDiningCommons.class);
+    }
 
-        return commons;
+    @ApiOperation(value = "Delete many commons in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @DeleteMapping("/bulk")
+    @Transactional
+    public List<BulkResult> deleteBulk(@RequestBody List<String> codes) {
+        return bulkDelete(ucsbDiningCommonsRepository, codes, UCSBDiningCommons::getCode, UCSBDiningCommons.class);
     }
 }
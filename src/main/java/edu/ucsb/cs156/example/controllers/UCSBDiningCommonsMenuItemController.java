@@ -1,57 +1,97 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.aop.StatementBudget;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.interceptors.ConditionalGet;
+import edu.ucsb.cs156.example.interceptors.VersionedTable;
+import edu.ucsb.cs156.example.models.BulkResult;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+import edu.ucsb.cs156.example.services.JsonStreamingService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 
+import java.util.List;
+
 
 @Api(description = "UCSBDiningCommonsMenuItem")
 @RequestMapping("/api/ucsbdiningcommonsmenuitem")
 @RestController
+@Validated
+@VersionedTable("ucsbdiningcommonsmenuitem")
 @Slf4j
 public class UCSBDiningCommonsMenuItemController extends ApiController {
 
     @Autowired
     UCSBDiningCommonsMenuItemRepository ucsbDiningCommonsMenuItemRepository;
+
+    @Autowired
+    JsonStreamingService jsonStreaming;
  
     @ApiOperation(value = "List all UCSB dining commons menu item")
     @PreAuthorize("hasRole('ROLE_USER')") 
+    @ConditionalGet
+    @StatementBudget(1)
     @GetMapping("/all")
-    public Iterable<UCSBDiningCommonsMenuItem> allMenuItems() {
-        Iterable<UCSBDiningCommonsMenuItem> menuItems = ucsbDiningCommonsMenuItemRepository.findAll();
-        return menuItems;
+    public ResponseEntity<StreamingResponseBody> allMenuItems() {
+        MediaType format = jsonStreaming.negotiate();
+        StreamingResponseBody body = out -> jsonStreaming.writeArray(() -> ucsbDiningCommonsMenuItemRepository.streamAllByOrderByIdAsc(), out, format);
+        return ResponseEntity.ok().contentType(format).body(body);
+    }
+
+    @ApiOperation(value = "List UCSB dining commons menu items one page at a time, ordered by id")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @ConditionalGet
+    @StatementBudget(1)
+    @GetMapping("/page")
+    @Transactional(readOnly = true)
+    public KeysetPage<UCSBDiningCommonsMenuItem> pageUCSBDiningCommonsMenuItem(
+            @ApiParam("return only rows with id greater than this (the next value of the previous page)") @RequestParam(required = false) Long after,
+            @ApiParam("maximum number of rows to return (default 100, at most 1000)") @RequestParam(required = false) Integer limit) {
+        Pageable pageable = keysetLimit(limit);
+        List<UCSBDiningCommonsMenuItem> rows = ucsbDiningCommonsMenuItemRepository.findByIdGreaterThanOrderByIdAsc(after == null ? 0 : after, pageable);
+        return keysetPage(rows, pageable, UCSBDiningCommonsMenuItem::getId);
     }
  
     @ApiOperation(value = "Get a single menu item")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @StatementBudget(1)
     @GetMapping("")
-    public UCSBDiningCommonsMenuItem getById(
+    @Transactional(readOnly = true)
+    public ResponseEntity<UCSBDiningCommonsMenuItem> getById(
             @ApiParam("id, e.g. '1") @RequestParam Long id) {
         UCSBDiningCommonsMenuItem ucsbDiningCommonsMenuItem = ucsbDiningCommonsMenuItemRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommonsMenuItem.class, id));
 
-        return ucsbDiningCommonsMenuItem;
+        return versioned(ucsbDiningCommonsMenuItem);
     }
 
     @ApiOperation(value = "Create a new dining commons menu item")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @StatementBudget(2)
     @PostMapping("/post")
     public UCSBDiningCommonsMenuItem postCommons(
         @ApiParam("Dining Commons Code, e.g. 'ortega'") @RequestParam String diningCommonsCode,
@@ -72,32 +112,54 @@ public class UCSBDiningCommonsMenuItemController extends ApiController {
 
     @ApiOperation(value = "Delete a UCSBDiningCommonsMenuItem")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @StatementBudget(1)
     @DeleteMapping("")
     public Object deleteUCSBDiningCommonMenutem(
             @ApiParam("id, e.g. '1'") @RequestParam Long id) {
-        UCSBDiningCommonsMenuItem ucsbDiningCommonsMenuItem = ucsbDiningCommonsMenuItemRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommonsMenuItem.class, id));
-
-        ucsbDiningCommonsMenuItemRepository.delete(ucsbDiningCommonsMenuItem);
+        if (ucsbDiningCommonsMenuItemRepository.removeById(id) == 0) {
+            throw new EntityNotFoundException(UCSBDiningCommonsMenuItem.class, id);
+        }
         return genericMessage("UCSBDiningCommonsMenuItem with id %s deleted".formatted(id));
     }
 
     @ApiOperation(value = "Update a single menu item")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @StatementBudget(2)
     @PutMapping("")
-    public UCSBDiningCommonsMenuItem updateUCSBDiningCommonMenuItem(
+    public ResponseEntity<UCSBDiningCommonsMenuItem> updateUCSBDiningCommonMenuItem(
             @ApiParam("id, e.g. '1'") @RequestParam Long id,
+            @ApiParam("ETag of the version being replaced; 412 if it has changed since") @RequestHeader(value = "If-Match", required = false) String ifMatch,
             @RequestBody @Valid UCSBDiningCommonsMenuItem incoming) {
+        Long expected = ifMatchVersion(ifMatch);
+        if (ucsbDiningCommonsMenuItemRepository.updateById(id, expected, incoming) == 0) {
+            throw notUpdated(ucsbDiningCommonsMenuItemRepository, UCSBDiningCommonsMenuItem.class, id, expected);
+        }
+        incoming.setId(id);
+        return updated(ucsbDiningCommonsMenuItemRepository, id, incoming, expected);
+    }
 
-                UCSBDiningCommonsMenuItem ucsbDiningCommonsMenuItem = ucsbDiningCommonsMenuItemRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommonsMenuItem.class, id));
-
-        ucsbDiningCommonsMenuItem.setDiningCommonsCode(incoming.getDiningCommonsCode());
-        ucsbDiningCommonsMenuItem.setName(incoming.getName());
-        ucsbDiningCommonsMenuItem.setStation(incoming.getStation());
+    @ApiOperation(value = "Create many menu items in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/bulk")
+    @Transactional
+    public List<BulkResult> postBulk(@RequestBody @Valid List<UCSBDiningCommonsMenuItem> incoming) {
+        incoming.forEach(d -> d.setId(0)); // ids are generated
+        return bulkCreate(ucsbDiningCommonsMenuItemRepository, incoming, UCSBDiningCommonsMenuItem::getId);
+    }
 
-        ucsbDiningCommonsMenuItemRepository.save(ucsbDiningCommonsMenuItem);
+    @ApiOperation(value = "Update many menu items in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PutMapping("/bulk")
+    @Transactional
+    public List<BulkResult> updateBulk(@RequestBody @Valid List<UCSBDiningCommonsMenuItem> incoming) {
+        return bulkUpdate(ucsbDiningCommonsMenuItemRepository, incoming, UCSBDiningCommonsMenuItem::getId, UCSBDiningCommonsMenuItem.class);
+    }
 
-        return ucsbDiningCommonsMenuItem;
+    @ApiOperation(value = "Delete many menu items in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @DeleteMapping("/bulk")
+    @Transactional
+    public List<BulkResult> deleteBulk(@RequestBody List<Long> ids) {
+        return bulkDelete(ucsbDiningCommonsMenuItemRepository, ids, UCSBDiningCommonsMenuItem::getId, UCSBDiningCommonsMenuItem.class);
     }
-}
\ No newline at end of file
+}
@@ -1,57 +1,94 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.aop.StatementBudget;
 import edu.ucsb.cs156.example.entities.UCSBOrganization;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.interceptors.ConditionalGet;
+import edu.ucsb.cs156.example.interceptors.VersionedTable;
+import edu.ucsb.cs156.example.models.BulkResult;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
+import edu.ucsb.cs156.example.services.ResponseBodyCache;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.validation.Valid;
 
+import java.util.List;
+
 
 @Api(description = "UCSBOrganization")
 @RequestMapping("/api/ucsborganization")
 @RestController
+@Validated
+@VersionedTable("ucsborganization")
 @Slf4j
 public class UCSBOrganizationController extends ApiController {
 
     @Autowired
     UCSBOrganizationRepository ucsbOrganizationRepository;
 
+    @Autowired
+    ResponseBodyCache responseBodyCache;
+
     @ApiOperation(value = "List all ucsb organizations")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @ConditionalGet
+    @StatementBudget(1)
     @GetMapping("/all")
-    public Iterable<UCSBOrganization> allOrganizations() {
-        Iterable<UCSBOrganization> orgs = ucsbOrganizationRepository.findAll();
-        return orgs;
+    public ResponseEntity<byte[]> allOrganizations(
+            @RequestHeader(value = "Accept-Encoding", required = false) String acceptEncoding) {
+        return responseBodyCache.respond("ucsborganization", acceptEncoding, () -> ucsbOrganizationRepository.findAll());
+    }
+
+    @ApiOperation(value = "List ucsb organizations one page at a time, ordered by orgCode")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @ConditionalGet
+    @StatementBudget(1)
+    @GetMapping("/page")
+    @Transactional(readOnly = true)
+    public KeysetPage<UCSBOrganization> pageUCSBOrganization(
+            @ApiParam("return only rows with orgCode greater than this (the next value of the previous page)") @RequestParam(required = false) String after,
+            @ApiParam("maximum number of rows to return (default 100, at most 1000)") @RequestParam(required = false) Integer limit) {
+        Pageable pageable = keysetLimit(limit);
+        List<UCSBOrganization> rows = ucsbOrganizationRepository.findByOrgCodeGreaterThanOrderByOrgCodeAsc(after == null ? "" : after, pageable);
+        return keysetPage(rows, pageable, UCSBOrganization::getOrgCode);
     }
 
     @ApiOperation(value = "Get a single org")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @StatementBudget(1)
     @GetMapping("")
-    public UCSBOrganization getById(
+    @Transactional(readOnly = true)
+    public ResponseEntity<UCSBOrganization> getById(
             @ApiParam("orgCode") @RequestParam String orgCode) {
         UCSBOrganization orgs = ucsbOrganizationRepository.findById(orgCode)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBOrganization.class, orgCode));
 
-        return orgs;
+        return versioned(orgs);
     }
 
     @ApiOperation(value = "Create a new organization")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @StatementBudget(2)
     @PostMapping("/post")
     public UCSBOrganization postOrganization(
         @ApiParam("orgCode") @RequestParam String orgCode,
@@ -74,32 +111,53 @@ public class UCSBOrganizationController extends ApiController {
 
     @ApiOperation(value = "Delete a UCSBOrganizations")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @StatementBudget(1)
     @DeleteMapping("")
     public Object deleteCommons(
             @ApiParam("orgCode") @RequestParam String orgCode) {
-        UCSBOrganization org = ucsbOrganizationRepository.findById(orgCode)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBOrganization.class, orgCode));
-
-        ucsbOrganizationRepository.delete(org);
+        if (ucsbOrganizationRepository.removeById(orgCode) == 0) {
+            throw new EntityNotFoundException(UCSBOrganization.class, orgCode);
+        }
         return genericMessage("UCSBOrganization with id %s deleted".formatted(orgCode));
     }
 
     @ApiOperation(value = "Update a single org")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @StatementBudget(2)
     @PutMapping("")
-    public UCSBOrganization updateOrg(
+    public ResponseEntity<UCSBOrganization> updateOrg(
             @ApiParam("orgCode") @RequestParam String orgCode,
+            @ApiParam("ETag of the version being replaced; 412 if it has changed since") @RequestHeader(value = "If-Match", required = false) String ifMatch,
             @RequestBody @Valid UCSBOrganization incoming) {
+        Long expected = ifMatchVersion(ifMatch);
+        if (ucsbOrganizationRepository.updateById(orgCode, expected, incoming) == 0) {
+            throw notUpdated(ucsbOrganizationRepository, UCSBOrganization.class, orgCode, expected);
+        }
+        incoming.setOrgCode(orgCode);
+        return updated(ucsbOrganizationRepository, orgCode, incoming, expected);
+    }
 
-        UCSBOrganization org = ucsbOrganizationRepository.findById(orgCode)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBOrganization.class, orgCode));
- 
-        org.setOrgTranslation(incoming.getOrgTranslation());
-        org.setOrgTranslationShort(incoming.getOrgTranslationShort());
-        org.setInactive(incoming.getInactive());
+    @ApiOperation(value = "Create many organizations in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/bulk")
+    @Transactional
+    public List<BulkResult> postBulk(@RequestBody @Valid List<UCSBOrganization> incoming) {
+        return bulkCreate(ucsbOrganizationRepository, incoming, UCSBOrganization::getOrgCode, UCSBOrganization.class);
+    }
 
-        ucsbOrganizationRepository.save(org);
+    @ApiOperation(value = "Update many organizations in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PutMapping("/bulk")
+    @Transactional
+    public List<BulkResult> updateBulk(@RequestBody @Valid List<UCSBOrganization> incoming) {
+        return bulkUpdate(ucsbOrganizationRepository, incoming, UCSBOrganization::getOrgCode, UCSBOrganization.class);
+    }
 
-        return org;
+    @ApiOperation(value = "Delete many organizations in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @DeleteMapping("/bulk")
+    @Transactional
+    public List<BulkResult> deleteBulk(@RequestBody List<String> orgCodes) {
+        return bulkDelete(ucsbOrganizationRepository, orgCodes, UCSBOrganization::getOrgCode, UCSBOrganization.class);
     }
 }
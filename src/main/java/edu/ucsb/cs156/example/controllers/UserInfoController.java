@@ -1,5 +1,6 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.aop.CoalesceRequests;
 import edu.ucsb.cs156.example.entities.User;
 import edu.ucsb.cs156.example.models.CurrentUser;
 import edu.ucsb.cs156.example.services.CurrentUserService;
@@ -18,6 +19,7 @@ public class UserInfoController extends ApiController {
  
   @ApiOperation(value = "Get information about current user")
   @PreAuthorize("hasRole('ROLE_USER')")
+  @CoalesceRequests(perUser = true)
   @GetMapping("")
   public CurrentUser getCurrentUser() {
     return super.getCurrentUser();
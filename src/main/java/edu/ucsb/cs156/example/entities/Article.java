@@ -6,6 +6,10 @@ import javax.persistence.Entity;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.GeneratedValue;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Version;
+
+import org.hibernate.annotations.ColumnDefault;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -17,9 +21,10 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "Article")
-public class Article {
+public class Article implements Versioned {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "article_seq")
+  @SequenceGenerator(name = "article_seq", sequenceName = "article_seq", allocationSize = 50)
   private long id;
 
   private String title;
@@ -27,4 +32,8 @@ public class Article {
   private String explanation;
   private String email;
   private LocalDate dateAdded;
-}
\ No newline at end of file
+
+  @Version
+  @ColumnDefault("0")
+  private long version;
+}
@@ -4,8 +4,12 @@ import javax.persistence.Entity;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.GeneratedValue;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Version;
 import java.time.LocalDateTime;
 
+import org.hibernate.annotations.ColumnDefault;
+
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
@@ -17,9 +21,10 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "helprequest")
-public class HelpRequest {
+public class HelpRequest implements Versioned {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "helprequest_seq")
+    @SequenceGenerator(name = "helprequest_seq", sequenceName = "helprequest_seq", allocationSize = 50)
 
     private long id;
     private String requesterEmail;
@@ -27,6 +32,9 @@ public class HelpRequest {
     private String tableOrBreakoutRoom; 
     private LocalDateTime requestTime;
     private String explanation; 
-    private boolean solved; 
+    private boolean solved;
 
+    @Version
+    @ColumnDefault("0")
+    private long version;
 }
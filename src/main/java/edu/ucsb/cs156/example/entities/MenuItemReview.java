@@ -5,6 +5,10 @@ import javax.persistence.Id;
 import java.time.LocalDateTime;
 import javax.persistence.GenerationType;
 import javax.persistence.GeneratedValue;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Version;
+
+import org.hibernate.annotations.ColumnDefault;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -16,13 +20,18 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "menuitemreview")
-public class MenuItemReview {
+public class MenuItemReview implements Versioned {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "menuitemreview_seq")
+    @SequenceGenerator(name = "menuitemreview_seq", sequenceName = "menuitemreview_seq", allocationSize = 50)
     private Long id;
     private Long itemId;
     private String reviewerEmail;
     private int stars;
     private LocalDateTime dateReviewed;
     private String comments;
+
+    @Version
+    @ColumnDefault("0")
+    private long version;
 }
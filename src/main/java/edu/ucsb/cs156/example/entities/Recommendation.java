@@ -6,6 +6,10 @@ import javax.persistence.Entity;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.GeneratedValue;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Version;
+
+import org.hibernate.annotations.ColumnDefault;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -17,9 +21,10 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "recommendation")
-public class Recommendation {
+public class Recommendation implements Versioned {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY) 
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "recommendation_seq")
+  @SequenceGenerator(name = "recommendation_seq", sequenceName = "recommendation_seq", allocationSize = 50)
   private long id;
   private String requesterEmail;
   private String professorEmail;
@@ -28,4 +33,7 @@ public class Recommendation {
   private LocalDateTime dateNeeded;
   private boolean done;
 
+  @Version
+  @ColumnDefault("0")
+  private long version;
 }
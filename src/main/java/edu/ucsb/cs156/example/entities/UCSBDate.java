@@ -6,6 +6,11 @@ import javax.persistence.Entity;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.GeneratedValue;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Version;
+import javax.validation.constraints.Pattern;
+
+import org.hibernate.annotations.ColumnDefault;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -17,11 +22,17 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "ucsbdates")
-public class UCSBDate {
+public class UCSBDate implements Versioned {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ucsbdates_seq")
+  @SequenceGenerator(name = "ucsbdates_seq", sequenceName = "ucsbdates_seq", allocationSize = 50)
   private long id;
+  @Pattern(regexp = "(19|20)\\d{2}[1-4]", message = "must be in the format YYYYQ, e.g. 20224 for Fall 2022")
   private String quarterYYYYQ;
   private String name;  
   private LocalDateTime localDateTime;
-}
\ No newline at end of file
+
+  @Version
+  @ColumnDefault("0")
+  private long version;
+}
@@ -2,10 +2,16 @@ package edu.ucsb.cs156.example.entities;
 
 import java.time.LocalDateTime;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.GeneratedValue;
+import javax.persistence.Version;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -17,10 +23,16 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "ucsborganization")
-public class UCSBOrganization {
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "ucsborganization")
+public class UCSBOrganization implements Versioned {
   @Id
   private String orgCode;
   private String orgTranslationShort;  
   private String orgTranslation;  
-  private Boolean inactive;  
-}
\ No newline at end of file
+  private Boolean inactive;
+
+  @Version
+  @ColumnDefault("0")
+  private long version;
+}
@@ -6,18 +6,28 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.AccessLevel;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
 import javax.persistence.GeneratedValue;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.GenerationType;
+import javax.persistence.Version;
+
+import org.hibernate.annotations.ColumnDefault;
 
 @Data
 @AllArgsConstructor
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
-@Builder
+@Builder(toBuilder = true)
 @Entity(name = "users")
-public class User {
+@EntityListeners(UserEntityListener.class)
+@Table(uniqueConstraints = @UniqueConstraint(name = "users_email_unique", columnNames = "email"))
+public class User implements Versioned {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+  @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
   private long id;
   private String email;
   private String googleSub;
@@ -29,4 +39,8 @@ public class User {
   private String locale;
   private String hostedDomain;
   private boolean admin;
+
+  @Version
+  @ColumnDefault("0")
+  private long version;
 }
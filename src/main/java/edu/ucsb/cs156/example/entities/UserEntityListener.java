@@ -0,0 +1,27 @@
+package edu.ucsb.cs156.example.entities;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+
+import edu.ucsb.cs156.example.models.UserChangedEvent;
+
+// Hibernate creates this listener through Spring, so it can be autowired.
+// Any change to a stored User (including the admin flag) is announced with
+// a UserChangedEvent so that cached copies are dropped.
+
+public class UserEntityListener {
+
+  @Autowired
+  ApplicationEventPublisher applicationEventPublisher;
+
+  @PostPersist
+  @PostUpdate
+  @PostRemove
+  public void userChanged(User user) {
+    applicationEventPublisher.publishEvent(new UserChangedEvent(user.getEmail()));
+  }
+}
@@ -0,0 +1,11 @@
+package edu.ucsb.cs156.example.entities;
+
+// Entities with a JPA @Version column.  The version starts at 0, goes up by
+// one on every update, and is what the API hands out as the ETag of a
+// single row (see ApiController.versioned and ifMatchVersion).
+
+public interface Versioned {
+  long getVersion();
+
+  void setVersion(long version);
+}
@@ -0,0 +1,8 @@
+package edu.ucsb.cs156.example.errors;
+
+public class StatementBudgetExceededException extends RuntimeException {
+  public StatementBudgetExceededException(String handler, int budget, int statements) {
+    super("%s issued %d SQL statements, over its budget of %d"
+      .formatted(handler, statements, budget));
+  }
+}
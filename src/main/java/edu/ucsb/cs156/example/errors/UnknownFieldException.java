@@ -0,0 +1,14 @@
+package edu.ucsb.cs156.example.errors;
+
+import java.util.Collection;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class UnknownFieldException extends RuntimeException {
+  public UnknownFieldException(Class<?> entityType, String field, Collection<String> known) {
+    super("%s has no field %s; known fields are %s"
+      .formatted(entityType.getSimpleName(), field, String.join(", ", known)));
+  }
+}
@@ -0,0 +1,12 @@
+package edu.ucsb.cs156.example.errors;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+public class VersionConflictException extends RuntimeException {
+  public VersionConflictException(Class<?> entityType, Object id, long expected) {
+    super("%s with id %s is no longer at version %d"
+      .formatted(entityType.getSimpleName(), id.toString(), expected));
+  }
+}
@@ -0,0 +1,15 @@
+package edu.ucsb.cs156.example.interceptors;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// GET handler whose response depends only on the controller's @VersionedTable:
+// it gets an ETag from the table version, and If-None-Match with that tag
+// is answered 304 without calling the handler.
+
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ConditionalGet {
+}
@@ -0,0 +1,127 @@
+package edu.ucsb.cs156.example.interceptors;
+
+import java.util.Collection;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.access.ConfigAttribute;
+import org.springframework.security.access.intercept.aopalliance.MethodSecurityInterceptor;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.util.SimpleMethodInvocation;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import edu.ucsb.cs156.example.config.ReplicaRoutingDataSource;
+import edu.ucsb.cs156.example.services.ResponseFormats;
+import edu.ucsb.cs156.example.services.TableVersionService;
+
+// ETag / If-None-Match for controllers annotated with @VersionedTable.
+// Write requests are announced to TableVersionService, which bumps the
+// version when the request's transaction commits: never before the data is
+// visible, so a tag is never handed out for data that is not there yet, and
+// never after the response has gone out.  The tag names the negotiated
+// response format and the response varies on Accept, so a cache never
+// answers a CBOR client with JSON it stored for another.  The handler's
+// reads go to the primary, which has every write the version counts.
+// This runs before the handler's @PreAuthorize, so a caller the handler
+// would turn away is never answered 304 (which would tell it whether the
+// table has changed): the handler runs and refuses it.
+
+@Component
+public class ConditionalGetInterceptor implements AsyncHandlerInterceptor {
+
+  @Autowired
+  TableVersionService tableVersions;
+
+  @Autowired
+  ResponseFormats formats;
+
+  // the method security that guards the handlers (see SecurityConfig)
+  @Autowired
+  @Qualifier("methodSecurityInterceptor")
+  MethodInterceptor methodSecurity;
+
+  @Override
+  public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+    String table = table(handler);
+    if (table == null) {
+      return true;
+    }
+    if (!isRead(request)) {
+      tableVersions.startWrite(table);
+      return true;
+    }
+    HandlerMethod method = (HandlerMethod) handler;
+    if (!method.hasMethodAnnotation(ConditionalGet.class) || !permitted(method)) {
+      return true;
+    }
+    response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+    // sets the ETag header, and the 304 status if it matches If-None-Match
+    String etag = tableVersions.etag(table, formats.negotiate(request.getHeader(HttpHeaders.ACCEPT)));
+    if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+      return false;
+    }
+    ReplicaRoutingDataSource.readFromPrimary(true);
+    return true;
+  }
+
+  // a streamed body is written on another thread (see WebMvcConfig)
+  @Override
+  public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+    ReplicaRoutingDataSource.readFromPrimary(false);
+  }
+
+  @Override
+  public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+    ReplicaRoutingDataSource.readFromPrimary(false);
+    String table = table(handler);
+    if (table != null && !isRead(request)) {
+      tableVersions.endWrite();
+    }
+  }
+
+  // true if method security would let the current caller call the handler
+  private boolean permitted(HandlerMethod handler) {
+    MethodSecurityInterceptor security = (MethodSecurityInterceptor) methodSecurity;
+    Collection<ConfigAttribute> attributes = security.getSecurityMetadataSource()
+        .getAttributes(handler.getMethod(), handler.getBeanType());
+    if (attributes == null || attributes.isEmpty()) {
+      return true;
+    }
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    if (authentication == null) {
+      return false;
+    }
+    try {
+      security.getAccessDecisionManager().decide(authentication,
+          new SimpleMethodInvocation(handler.getBean(), handler.getMethod()), attributes);
+      return true;
+    } catch (AccessDeniedException | AuthenticationException e) {
+      return false;
+    }
+  }
+
+  private static String table(Object handler) {
+    if (handler instanceof HandlerMethod method) {
+      VersionedTable versioned = method.getBeanType().getAnnotation(VersionedTable.class);
+      return versioned == null ? null : versioned.value();
+    }
+    return null;
+  }
+
+  private static boolean isRead(HttpServletRequest request) {
+    HttpMethod method = HttpMethod.resolve(request.getMethod());
+    return method == HttpMethod.GET || method == HttpMethod.HEAD || method == HttpMethod.OPTIONS;
+  }
+}
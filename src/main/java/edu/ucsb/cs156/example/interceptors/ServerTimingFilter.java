@@ -0,0 +1,71 @@
+package edu.ucsb.cs156.example.interceptors;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.web.util.OnCommittedResponseWrapper;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import edu.ucsb.cs156.example.aop.ServerTiming;
+
+// Adds a Server-Timing header (db, auth, ser, app, total) to every /api
+// response.  Headers can only be set until the response is committed, so
+// the header is written at that moment: the durations cover the request up
+// to when the first bytes of the body went out.  Runs ahead of the security
+// filters so that their work is included in the total.
+
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class ServerTimingFilter extends OncePerRequestFilter {
+
+  public static final String HEADER = "Server-Timing";
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    return !request.getRequestURI().startsWith(request.getContextPath() + "/api/");
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws ServletException, IOException {
+    ServerTiming timing = ServerTiming.start();
+    TimingResponse timed = new TimingResponse(response, timing);
+    try {
+      chain.doFilter(request, timed);
+    } finally {
+      ServerTiming.clear();
+      if (!response.isCommitted()) {
+        timed.addTimingHeader();
+      }
+    }
+  }
+
+  private static class TimingResponse extends OnCommittedResponseWrapper {
+    private final ServerTiming timing;
+    private boolean written;
+
+    TimingResponse(HttpServletResponse response, ServerTiming timing) {
+      super(response);
+      this.timing = timing;
+    }
+
+    @Override
+    protected void onResponseCommitted() {
+      addTimingHeader();
+    }
+
+    synchronized void addTimingHeader() {
+      if (!written) {
+        written = true;
+        addHeader(HEADER, timing.header());
+      }
+    }
+  }
+}
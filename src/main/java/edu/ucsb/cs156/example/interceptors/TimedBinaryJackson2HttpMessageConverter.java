@@ -0,0 +1,36 @@
+package edu.ucsb.cs156.example.interceptors;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.aop.ServerTiming;
+import edu.ucsb.cs156.example.aop.ServerTiming.Phase;
+
+// A CBOR or Smile message converter, with writing charged to the "ser"
+// phase like TimedJackson2HttpMessageConverter.  Registered by WebMvcConfig
+// with the mappers from ResponseFormats.
+
+public class TimedBinaryJackson2HttpMessageConverter extends AbstractJackson2HttpMessageConverter {
+
+  public TimedBinaryJackson2HttpMessageConverter(ObjectMapper objectMapper, MediaType format) {
+    super(objectMapper, format);
+  }
+
+  @Override
+  protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+      throws IOException, HttpMessageNotWritableException {
+    ServerTiming.enter(Phase.SERIALIZATION);
+    try {
+      super.writeInternal(object, type, outputMessage);
+    } finally {
+      ServerTiming.exit();
+    }
+  }
+}
@@ -0,0 +1,35 @@
+package edu.ucsb.cs156.example.interceptors;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.aop.ServerTiming;
+import edu.ucsb.cs156.example.aop.ServerTiming.Phase;
+
+// The JSON message converter, with writing charged to the "ser" phase of
+// the request's ServerTiming.  Registered in place of the default one by
+// WebMvcConfig.
+
+public class TimedJackson2HttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+  public TimedJackson2HttpMessageConverter(ObjectMapper objectMapper) {
+    super(objectMapper);
+  }
+
+  @Override
+  protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+      throws IOException, HttpMessageNotWritableException {
+    ServerTiming.enter(Phase.SERIALIZATION);
+    try {
+      super.writeInternal(object, type, outputMessage);
+    } finally {
+      ServerTiming.exit();
+    }
+  }
+}
@@ -0,0 +1,16 @@
+package edu.ucsb.cs156.example.interceptors;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Names the table a controller reads and writes.  Every non-GET request to
+// the controller bumps the table's version; GET handlers marked
+// @ConditionalGet are answered from that version.
+
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface VersionedTable {
+  String value();
+}
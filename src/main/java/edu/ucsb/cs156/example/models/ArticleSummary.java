@@ -0,0 +1,23 @@
+package edu.ucsb.cs156.example.models;
+
+import java.time.LocalDate;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// An Article for list views, with explanation cut to TEXT_LENGTH characters.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ArticleSummary implements Summary {
+  private long id;
+  private String title;
+  private String url;
+  private String explanation;
+  private String email;
+  private LocalDate dateAdded;
+}
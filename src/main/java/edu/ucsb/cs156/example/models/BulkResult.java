@@ -0,0 +1,22 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Outcome of one item of a /bulk request.
+// index is the position of the item in the request body,
+// status is one of created, updated, deleted, notFound or duplicate,
+// and message explains a notFound or a duplicate.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BulkResult {
+  private int index;
+  private Object id;
+  private String status;
+  private String message;
+}
@@ -0,0 +1,24 @@
+package edu.ucsb.cs156.example.models;
+
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// A HelpRequest for list views, with explanation cut to TEXT_LENGTH characters.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class HelpRequestSummary implements Summary {
+  private long id;
+  private String requesterEmail;
+  private String teamId;
+  private String tableOrBreakoutRoom;
+  private LocalDateTime requestTime;
+  private String explanation;
+  private boolean solved;
+}
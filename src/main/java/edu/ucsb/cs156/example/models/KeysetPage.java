@@ -0,0 +1,21 @@
+package edu.ucsb.cs156.example.models;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One page of a listing ordered by primary key.
+// next is the key to pass as ?after= to get the following page,
+// or null when this is the last page.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class KeysetPage<T> {
+  private List<T> items;
+  private Object next;
+}
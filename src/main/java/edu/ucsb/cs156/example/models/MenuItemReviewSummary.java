@@ -0,0 +1,23 @@
+package edu.ucsb.cs156.example.models;
+
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// A MenuItemReview for list views, with comments cut to TEXT_LENGTH characters.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class MenuItemReviewSummary implements Summary {
+  private Long id;
+  private Long itemId;
+  private String reviewerEmail;
+  private int stars;
+  private LocalDateTime dateReviewed;
+  private String comments;
+}
@@ -0,0 +1,9 @@
+package edu.ucsb.cs156.example.models;
+
+// List-view projections of entities (ArticleSummary and friends), read
+// with a constructor expression so that only their columns are selected.
+// Free-text fields are cut to TEXT_LENGTH characters by the database.
+
+public interface Summary {
+  int TEXT_LENGTH = 100;
+}
@@ -0,0 +1,13 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// Published whenever a row in the users table is written, so that caches
+// keyed by email (CurrentUserCache, AdminService) can drop their entry
+
+@Data
+@AllArgsConstructor
+public class UserChangedEvent {
+  private String email;
+}
@@ -1,13 +1,50 @@
 package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.models.HelpRequestSummary;
+import edu.ucsb.cs156.example.models.Summary;
 
 import org.springframework.beans.propertyeditors.StringArrayPropertyEditor;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface HelpRequestRepository extends CrudRepository<HelpRequest, Long>{
+    List<HelpRequest> findByIdGreaterThanOrderByIdAsc(long id, Pageable pageable);
+    Stream<HelpRequest> streamAllByOrderByIdAsc();
+
+    // the list view: only the summary's columns, with explanation cut to
+    // Summary.TEXT_LENGTH characters by the database
+    @Query("select new edu.ucsb.cs156.example.models.HelpRequestSummary("
+          + "e.id, e.requesterEmail, e.teamId, e.tableOrBreakoutRoom, e.requestTime, "
+          + "substring(e.explanation, 1, " + Summary.TEXT_LENGTH + "), e.solved) "
+          + "from helprequest e order by e.id")
+    Stream<HelpRequestSummary> streamSummaries();
     Iterable<HelpRequest> findAll();
-    
+
+    // Single-statement writes; they return the number of rows changed (0 when
+    // there is no such row).  updateById bumps the version, and with a
+    // non-null version only changes the row if it is still at that version
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update helprequest e set e.requesterEmail = :#{#incoming.requesterEmail}, "
+          + "e.teamId = :#{#incoming.teamId}, "
+          + "e.tableOrBreakoutRoom = :#{#incoming.tableOrBreakoutRoom}, "
+          + "e.requestTime = :#{#incoming.requestTime}, e.explanation = :#{#incoming.explanation}, "
+          + "e.solved = :#{#incoming.solved}, e.version = e.version + 1 "
+          + "where e.id = :id and (:version is null or e.version = :version)")
+    int updateById(@Param("id") long id, @Param("version") Long version, @Param("incoming") HelpRequest incoming);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("delete from helprequest e where e.id = :id")
+    int removeById(@Param("id") long id);
 }
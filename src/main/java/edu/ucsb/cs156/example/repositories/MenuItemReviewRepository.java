@@ -1,11 +1,46 @@
 package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.models.MenuItemReviewSummary;
+import edu.ucsb.cs156.example.models.Summary;
 
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface MenuItemReviewRepository extends CrudRepository<MenuItemReview, Long> {
-}
+    List<MenuItemReview> findByIdGreaterThanOrderByIdAsc(long id, Pageable pageable);
+    Stream<MenuItemReview> streamAllByOrderByIdAsc();
+
+    // the list view: only the summary's columns, with comments cut to
+    // Summary.TEXT_LENGTH characters by the database
+    @Query("select new edu.ucsb.cs156.example.models.MenuItemReviewSummary("
+          + "e.id, e.itemId, e.reviewerEmail, e.stars, e.dateReviewed, "
+          + "substring(e.comments, 1, " + Summary.TEXT_LENGTH + ")) "
+          + "from menuitemreview e order by e.id")
+    Stream<MenuItemReviewSummary> streamSummaries();
 
+    // Single-statement writes; they return the number of rows changed (0 when
+    // there is no such row).  updateById bumps the version, and with a
+    // non-null version only changes the row if it is still at that version
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update menuitemreview e set e.itemId = :#{#incoming.itemId}, "
+          + "e.reviewerEmail = :#{#incoming.reviewerEmail}, e.stars = :#{#incoming.stars}, "
+          + "e.dateReviewed = :#{#incoming.dateReviewed}, e.comments = :#{#incoming.comments}, e.version = e.version + 1 "
+          + "where e.id = :id and (:version is null or e.version = :version)")
+    int updateById(@Param("id") long id, @Param("version") Long version, @Param("incoming") MenuItemReview incoming);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("delete from menuitemreview e where e.id = :id")
+    int removeById(@Param("id") long id);
+}
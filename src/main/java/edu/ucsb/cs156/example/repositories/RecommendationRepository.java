@@ -1,11 +1,47 @@
 package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.Recommendation;
+import edu.ucsb.cs156.example.models.RecommendationSummary;
+import edu.ucsb.cs156.example.models.Summary;
 
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface RecommendationRepository extends CrudRepository<Recommendation, Long>{
-    
+    List<Recommendation> findByIdGreaterThanOrderByIdAsc(long id, Pageable pageable);
+    Stream<Recommendation> streamAllByOrderByIdAsc();
+
+    // the list view: only the summary's columns, with explanation cut to
+    // Summary.TEXT_LENGTH characters by the database
+    @Query("select new edu.ucsb.cs156.example.models.RecommendationSummary("
+          + "e.id, e.requesterEmail, e.professorEmail, "
+          + "substring(e.explanation, 1, " + Summary.TEXT_LENGTH + "), e.dateRequested, e.dateNeeded, e.done) "
+          + "from recommendation e order by e.id")
+    Stream<RecommendationSummary> streamSummaries();
+
+    // Single-statement writes; they return the number of rows changed (0 when
+    // there is no such row).  updateById bumps the version, and with a
+    // non-null version only changes the row if it is still at that version
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update recommendation e set e.requesterEmail = :#{#incoming.requesterEmail}, "
+          + "e.professorEmail = :#{#incoming.professorEmail}, "
+          + "e.explanation = :#{#incoming.explanation}, e.dateRequested = :#{#incoming.dateRequested}, "
+          + "e.dateNeeded = :#{#incoming.dateNeeded}, e.done = :#{#incoming.done}, e.version = e.version + 1 "
+          + "where e.id = :id and (:version is null or e.version = :version)")
+    int updateById(@Param("id") long id, @Param("version") Long version, @Param("incoming") Recommendation incoming);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("delete from recommendation e where e.id = :id")
+    int removeById(@Param("id") long id);
 }
@@ -2,11 +2,36 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.UCSBDate;
 
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.stereotype.Repository;
 
 
 @Repository
 public interface UCSBDateRepository extends CrudRepository<UCSBDate, Long> {
+  List<UCSBDate> findByIdGreaterThanOrderByIdAsc(long id, Pageable pageable);
+  Stream<UCSBDate> streamAllByOrderByIdAsc();
   Iterable<UCSBDate> findAllByQuarterYYYYQ(String quarterYYYYQ);
-}
\ No newline at end of file
+
+  // Single-statement writes; they return the number of rows changed (0 when
+  // there is no such row).  updateById bumps the version, and with a
+  // non-null version only changes the row if it is still at that version
+  @Transactional
+  @Modifying(clearAutomatically = true)
+  @Query("update ucsbdates e set e.quarterYYYYQ = :#{#incoming.quarterYYYYQ}, "
+        + "e.name = :#{#incoming.name}, e.localDateTime = :#{#incoming.localDateTime}, e.version = e.version + 1 "
+        + "where e.id = :id and (:version is null or e.version = :version)")
+  int updateById(@Param("id") long id, @Param("version") Long version, @Param("incoming") UCSBDate incoming);
+
+  @Transactional
+  @Modifying(clearAutomatically = true)
+  @Query("delete from ucsbdates e where e.id = :id")
+  int removeById(@Param("id") long id);
+}
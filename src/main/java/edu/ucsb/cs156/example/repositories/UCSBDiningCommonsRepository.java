@@ -3,11 +3,46 @@ package edu.ucsb.cs156.example.repositories;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
 
 import org.springframework.beans.propertyeditors.StringArrayPropertyEditor;
+import java.util.List;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.stereotype.Repository;
 
 
 @Repository
 public interface UCSBDiningCommonsRepository extends CrudRepository<UCSBDiningCommons, String> {
- 
-}
\ No newline at end of file
+    // results go to the query cache, rows to the second-level cache
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    Iterable<UCSBDiningCommons> findAll();
+
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    List<UCSBDiningCommons> findByCodeGreaterThanOrderByCodeAsc(String code, Pageable pageable);
+
+    // Single-statement writes; they return the number of rows changed (0 when
+    // there is no such row).  updateById bumps the version, and with a
+    // non-null version only changes the row if it is still at that version
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update ucsbdiningcommons e set e.name = :#{#incoming.name}, "
+          + "e.hasSackMeal = :#{#incoming.hasSackMeal}, "
+          + "e.hasTakeOutMeal = :#{#incoming.hasTakeOutMeal}, "
+          + "e.hasDiningCam = :#{#incoming.hasDiningCam}, e.latitude = :#{#incoming.latitude}, "
+          + "e.longitude = :#{#incoming.longitude}, e.version = e.version + 1 "
+          + "where e.code = :code and (:version is null or e.version = :version)")
+    int updateById(@Param("code") String code, @Param("version") Long version, @Param("incoming") UCSBDiningCommons incoming);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("delete from ucsbdiningcommons e where e.code = :code")
+    int removeById(@Param("code") String code);
+}
@@ -1,11 +1,43 @@
 package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UCSBOrganizationRepository extends CrudRepository<UCSBOrganization, String> {
+    // results go to the query cache, rows to the second-level cache
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    Iterable<UCSBOrganization> findAll();
+
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    List<UCSBOrganization> findByOrgCodeGreaterThanOrderByOrgCodeAsc(String orgCode, Pageable pageable);
+
+    // Single-statement writes; they return the number of rows changed (0 when
+    // there is no such row).  updateById bumps the version, and with a
+    // non-null version only changes the row if it is still at that version
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update ucsborganization e set e.orgTranslationShort = :#{#incoming.orgTranslationShort}, "
+          + "e.orgTranslation = :#{#incoming.orgTranslation}, e.inactive = :#{#incoming.inactive}, e.version = e.version + 1 "
+          + "where e.orgCode = :orgCode and (:version is null or e.version = :version)")
+    int updateById(@Param("orgCode") String orgCode, @Param("version") Long version, @Param("incoming") UCSBOrganization incoming);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("delete from ucsborganization e where e.orgCode = :orgCode")
+    int removeById(@Param("orgCode") String orgCode);
 }
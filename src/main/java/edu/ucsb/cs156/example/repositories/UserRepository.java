@@ -1,12 +1,19 @@
 package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface UserRepository extends CrudRepository<User, Long> {
+public interface UserRepository extends CrudRepository<User, Long>, UserRepositoryCustom {
   Optional<User> findByEmail(String email);
+
+  Stream<User> streamAllByOrderByIdAsc();
+
+  List<User> findByIdGreaterThanOrderByIdAsc(long afterId, Pageable pageable);
 }
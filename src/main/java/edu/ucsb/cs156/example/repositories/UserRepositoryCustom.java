@@ -0,0 +1,14 @@
+package edu.ucsb.cs156.example.repositories;
+
+import java.util.List;
+
+import org.springframework.transaction.annotation.Transactional;
+
+import edu.ucsb.cs156.example.entities.User;
+
+public interface UserRepositoryCustom {
+  int upsertOnLogin(User user);
+
+  @Transactional
+  int[] upsertAllOnLogin(List<User> users);
+}
@@ -0,0 +1,127 @@
+package edu.ucsb.cs156.example.repositories;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.models.UserChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+
+// Provisions a user on login with a single statement that relies on the
+// unique constraint on users.email:
+//   - inserts the row if no user with that email exists yet
+//   - otherwise refreshes the profile fields and promotes the existing row to
+//     admin if the new row says admin, but only if something actually changed,
+//     bumping the row's version as Hibernate would
+//   - otherwise does nothing (no write at all)
+// Postgres uses INSERT ... ON CONFLICT, H2 uses MERGE ... USING.
+// New rows take their id straight from users_seq; Hibernate's pooled-lo
+// optimizer only hands out ids from values it fetched itself, so the two
+// never collide (the rest of the block behind this nextval is skipped).
+// Native SQL bypasses UserEntityListener, so a UserChangedEvent is
+// published here for every user written.
+
+@Slf4j
+public class UserRepositoryCustomImpl implements UserRepositoryCustom {
+
+  private static final String POSTGRES_UPSERT = """
+      INSERT INTO users (id, email, google_sub, picture_url, full_name, given_name, family_name,
+                         email_verified, locale, hosted_domain, admin, version)
+      VALUES (nextval('users_seq'), ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0)
+      ON CONFLICT (email) DO UPDATE SET
+        google_sub = EXCLUDED.google_sub, picture_url = EXCLUDED.picture_url, full_name = EXCLUDED.full_name,
+        given_name = EXCLUDED.given_name, family_name = EXCLUDED.family_name,
+        email_verified = EXCLUDED.email_verified, locale = EXCLUDED.locale, hosted_domain = EXCLUDED.hosted_domain,
+        admin = users.admin OR EXCLUDED.admin, version = users.version + 1
+      WHERE (EXCLUDED.admin AND NOT users.admin)
+        OR (users.google_sub, users.picture_url, users.full_name, users.given_name, users.family_name,
+            users.email_verified, users.locale, users.hosted_domain)
+           IS DISTINCT FROM
+           (EXCLUDED.google_sub, EXCLUDED.picture_url, EXCLUDED.full_name, EXCLUDED.given_name, EXCLUDED.family_name,
+            EXCLUDED.email_verified, EXCLUDED.locale, EXCLUDED.hosted_domain)
+      """;
+
+  private static final String H2_UPSERT = """
+      MERGE INTO users u
+      USING (SELECT CAST(? AS VARCHAR) email, CAST(? AS VARCHAR) google_sub, CAST(? AS VARCHAR) picture_url,
+                    CAST(? AS VARCHAR) full_name, CAST(? AS VARCHAR) given_name, CAST(? AS VARCHAR) family_name,
+                    CAST(? AS BOOLEAN) email_verified, CAST(? AS VARCHAR) locale, CAST(? AS VARCHAR) hosted_domain,
+                    CAST(? AS BOOLEAN) admin) s
+      ON (u.email = s.email)
+      WHEN MATCHED AND ((s.admin AND NOT u.admin)
+          OR u.google_sub IS DISTINCT FROM s.google_sub OR u.picture_url IS DISTINCT FROM s.picture_url
+          OR u.full_name IS DISTINCT FROM s.full_name OR u.given_name IS DISTINCT FROM s.given_name
+          OR u.family_name IS DISTINCT FROM s.family_name OR u.email_verified IS DISTINCT FROM s.email_verified
+          OR u.locale IS DISTINCT FROM s.locale OR u.hosted_domain IS DISTINCT FROM s.hosted_domain)
+        THEN UPDATE SET google_sub = s.google_sub, picture_url = s.picture_url, full_name = s.full_name,
+          given_name = s.given_name, family_name = s.family_name, email_verified = s.email_verified,
+          locale = s.locale, hosted_domain = s.hosted_domain, admin = u.admin OR s.admin, version = u.version + 1
+      WHEN NOT MATCHED THEN INSERT (id, email, google_sub, picture_url, full_name, given_name, family_name,
+                                    email_verified, locale, hosted_domain, admin, version)
+        VALUES (NEXT VALUE FOR users_seq, s.email, s.google_sub, s.picture_url, s.full_name, s.given_name, s.family_name,
+                s.email_verified, s.locale, s.hosted_domain, s.admin, 0)
+      """;
+
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  ApplicationEventPublisher applicationEventPublisher;
+
+  private String upsertSql;
+
+  @Override
+  public int upsertOnLogin(User user) {
+    int rows = jdbcTemplate.update(upsertSql(), ps -> bind(ps, user));
+    log.debug("upsertOnLogin email={} rows={}", user.getEmail(), rows);
+    applicationEventPublisher.publishEvent(new UserChangedEvent(user.getEmail()));
+    return rows;
+  }
+
+  @Override
+  public int[] upsertAllOnLogin(List<User> users) {
+    int[] rows = jdbcTemplate.batchUpdate(upsertSql(), new BatchPreparedStatementSetter() {
+      @Override
+      public void setValues(PreparedStatement ps, int i) throws SQLException {
+        bind(ps, users.get(i));
+      }
+
+      @Override
+      public int getBatchSize() {
+        return users.size();
+      }
+    });
+    log.debug("upsertAllOnLogin batch of {}", users.size());
+    users.forEach(u -> applicationEventPublisher.publishEvent(new UserChangedEvent(u.getEmail())));
+    return rows;
+  }
+
+  private void bind(PreparedStatement ps, User user) throws SQLException {
+    ps.setString(1, user.getEmail());
+    ps.setString(2, user.getGoogleSub());
+    ps.setString(3, user.getPictureUrl());
+    ps.setString(4, user.getFullName());
+    ps.setString(5, user.getGivenName());
+    ps.setString(6, user.getFamilyName());
+    ps.setBoolean(7, user.getEmailVerified());
+    ps.setString(8, user.getLocale());
+    ps.setString(9, user.getHostedDomain());
+    ps.setBoolean(10, user.getAdmin());
+  }
+
+  private String upsertSql() {
+    if (upsertSql == null) {
+      String product = jdbcTemplate.execute(
+          (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+      upsertSql = "PostgreSQL".equals(product) ? POSTGRES_UPSERT : H2_UPSERT;
+    }
+    return upsertSql;
+  }
+}
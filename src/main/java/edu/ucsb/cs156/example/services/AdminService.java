@@ -0,0 +1,96 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.models.UserChangedEvent;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+// Decides whether an email belongs to an admin, for both SecurityConfig
+// (ROLE_ADMIN on login) and CurrentUserServiceImpl (admin flag on users).
+// Emails from app.admin.emails are checked against a hash set; anyone else
+// is looked up in the users table and the admin flag is cached for a
+// bounded time.  A UserChangedEvent drops the cached flag.
+
+@Slf4j
+@Service("adminService")
+public class AdminService implements MeterBinder {
+
+  @Autowired
+  UserRepository userRepository;
+
+  @Value("${app.admin.emails}")
+  private final List<String> adminEmails = new ArrayList<String>();
+
+  @Value("${app.admin.cache.maximumSize:10000}")
+  private long maximumSize;
+
+  @Value("${app.admin.cache.expireAfterWriteMinutes:5}")
+  private long expireAfterWriteMinutes;
+
+  private Set<String> configuredAdmins;
+  private Cache<String, Boolean> adminFlags;
+
+  @PostConstruct
+  void init() {
+    configuredAdmins = new HashSet<>(adminEmails);
+    adminFlags = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfterWrite(expireAfterWriteMinutes, TimeUnit.MINUTES)
+        .recordStats()
+        .build();
+  }
+
+  public boolean isConfiguredAdmin(String email) {
+    return configuredAdmins.contains(email);
+  }
+
+  public boolean isAdmin(String email) {
+    if (isConfiguredAdmin(email)) {
+      return true;
+    }
+    return adminFlags.get(email, e -> userRepository.findByEmail(e).map(User::getAdmin).orElse(false));
+  }
+
+  public void invalidate(String email) {
+    if (email != null) {
+      adminFlags.invalidate(email);
+    }
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onUserChanged(UserChangedEvent event) {
+    invalidate(event.getEmail());
+  }
+
+  public double hitRatio() {
+    return adminFlags.stats().hitRate();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    CaffeineCacheMetrics.monitor(registry, adminFlags, "adminFlags");
+    Gauge.builder("admin.cache.hitRatio", this, AdminService::hitRatio)
+        .description("Fraction of admin lookups answered without the users table")
+        .register(registry);
+  }
+}
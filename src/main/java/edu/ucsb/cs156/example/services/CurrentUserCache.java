@@ -0,0 +1,80 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.models.UserChangedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+// Caches the User row resolved for a logged in user, keyed by email, so that
+// getCurrentUser() does not hit the users table on every request.
+// Entries expire after the same idle time as an HTTP session, and are
+// invalidated by a UserChangedEvent whenever the stored user changes.
+// Hit/miss counts are published as the "cache.*" metrics with cache=currentUser
+
+@Slf4j
+@Component
+public class CurrentUserCache implements MeterBinder {
+
+  @Value("${app.users.cache.maximumSize:10000}")
+  private long maximumSize;
+
+  @Value("${app.users.cache.expireAfterAccessMinutes:30}")
+  private long expireAfterAccessMinutes;
+
+  private Cache<String, User> cache;
+
+  @PostConstruct
+  void init() {
+    cache = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfterAccess(expireAfterAccessMinutes, TimeUnit.MINUTES)
+        .recordStats()
+        .build();
+  }
+
+  public User get(String email) {
+    return cache.getIfPresent(email);
+  }
+
+  public void put(User user) {
+    cache.put(user.getEmail(), user);
+  }
+
+  public void invalidate(String email) {
+    if (email != null) {
+      log.debug("invalidating cached user {}", email);
+      cache.invalidate(email);
+    }
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onUserChanged(UserChangedEvent event) {
+    invalidate(event.getEmail());
+  }
+
+  public long hitCount() {
+    return cache.stats().hitCount();
+  }
+
+  public long missCount() {
+    return cache.stats().missCount();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    CaffeineCacheMetrics.monitor(registry, cache, "currentUser");
+  }
+}
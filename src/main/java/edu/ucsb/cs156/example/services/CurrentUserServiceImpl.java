@@ -5,13 +5,10 @@ import edu.ucsb.cs156.example.models.CurrentUser;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.List;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContext;
@@ -30,15 +27,24 @@ public class CurrentUserServiceImpl extends CurrentUserService {
   @Autowired
   GrantedAuthoritiesService grantedAuthoritiesService;
 
-  @Value("${app.admin.emails}")
-  final private List<String> adminEmails = new ArrayList<String>();
+  @Autowired
+  CurrentUserCache currentUserCache;
+
+  @Autowired
+  UserWriteBehindQueue userWriteBehindQueue;
+
+  @Autowired
+  AdminService adminService;
+
+  @Autowired
+  PrimaryTransactions primaryTransactions;
 
   public CurrentUser getCurrentUser() {
     CurrentUser cu = CurrentUser.builder()
       .user(this.getUser())
       .roles(this.getRoles())
       .build();
-    log.info("getCurrentUser returns {}",cu);
+    log.debug("getCurrentUser returns {}", cu);
     return cu;
   }
 
@@ -55,20 +61,8 @@ public class CurrentUserServiceImpl extends CurrentUserService {
     String locale = oAuthUser.getAttribute("locale");
     String hostedDomain = oAuthUser.getAttribute("hd");
 
-    java.util.Map<java.lang.String,java.lang.Object> attrs = oAuthUser.getAttributes();
-    log.info("attrs={}",attrs);
-
-    Optional<User> ou = userRepository.findByEmail(email);
-    if (ou.isPresent()) {
-      User u = ou.get();
-      if (adminEmails.contains(email) && !u.getAdmin()) {
-        u.setAdmin(true);
-        userRepository.save(u);
-      }
-      return u;
-    }
-
-    User u = User.builder()
+    boolean admin = adminService.isConfiguredAdmin(email);
+    User fresh = User.builder()
         .googleSub(googleSub)
         .email(email)
         .pictureUrl(pictureUrl)
@@ -78,10 +72,56 @@ public class CurrentUserServiceImpl extends CurrentUserService {
         .emailVerified(emailVerified)
         .locale(locale)
         .hostedDomain(hostedDomain)
-        .admin(adminEmails.contains(email))
+        .admin(admin)
         .build();
-    userRepository.save(u);
-    return u;
+
+    User cached = currentUserCache.get(email);
+    if (cached != null && upToDate(cached, fresh)) {
+      return cached;
+    }
+
+    java.util.Map<java.lang.String,java.lang.Object> attrs = oAuthUser.getAttributes();
+    log.debug("attrs={}", attrs);
+
+    Optional<User> ou = userRepository.findByEmail(email);
+    if (ou.isPresent() && upToDate(ou.get(), fresh)) {
+      User u = ou.get();
+      currentUserCache.put(u);
+      return u;
+    }
+
+    // A first login is written straight away, so that the new user is
+    // answered with the id it was stored under rather than 0
+    if (ou.isEmpty()) {
+      User stored = primaryTransactions.call(() -> {
+        userRepository.upsertOnLogin(fresh);
+        return userRepository.findByEmail(email).orElse(fresh);
+      });
+      currentUserCache.put(stored);
+      return stored;
+    }
+
+    // Changed profile, or existing user who must be promoted to admin.
+    // Answer with the in-memory user now; the upsert is written behind.
+    User stored = ou.get();
+    fresh.setId(stored.getId());
+    fresh.setAdmin(stored.getAdmin() || admin);
+    currentUserCache.put(fresh);
+    if (!userWriteBehindQueue.offer(fresh)) {
+      userRepository.upsertOnLogin(fresh);
+    }
+    return fresh;
+  }
+
+  // true if the stored user already has the profile from the OAuth2 login
+  // and is already an admin if the configuration says it should be
+  // (the id and the version are the stored row's own business)
+  private boolean upToDate(User stored, User fresh) {
+    if (fresh.getAdmin() && !stored.getAdmin()) {
+      return false;
+    }
+    User expected = fresh.toBuilder().id(stored.getId()).admin(stored.getAdmin()).version(stored.getVersion()).build();
+    return expected.equals(stored);
   }
 
   public User getUser() {
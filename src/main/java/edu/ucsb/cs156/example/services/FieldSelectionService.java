@@ -0,0 +1,98 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import javax.persistence.metamodel.Attribute.PersistentAttributeType;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.SingularAttribute;
+
+import org.springframework.stereotype.Service;
+
+import edu.ucsb.cs156.example.errors.UnknownFieldException;
+
+// Backs ?fields=a,b,c on the /all endpoints: selects only the named
+// columns, ordered by id, as one JSON object per row with just those keys.
+// The names are checked against the entity's basic attributes in the JPA
+// metamodel before anything is queried, so only mapped columns can end up
+// in the query.  stream() has to run inside a transaction, e.g. from
+// JsonStreamingService.writeArray.
+
+@Service("fieldSelection")
+public class FieldSelectionService {
+
+  @PersistenceContext
+  EntityManager entityManager;
+
+  // the requested fields, in request order and without repeats;
+  // throws UnknownFieldException for a name the entity does not map
+  public List<String> fields(Class<?> entity, String fields) {
+    Set<String> known = knownFields(entity);
+    Set<String> selected = new LinkedHashSet<>();
+    for (String field : fields.split(",")) {
+      String name = field.trim();
+      if (name.isEmpty()) {
+        continue;
+      }
+      if (!known.contains(name)) {
+        throw new UnknownFieldException(entity, name, known);
+      }
+      selected.add(name);
+    }
+    if (selected.isEmpty()) {
+      throw new UnknownFieldException(entity, "\"" + fields + "\"", known);
+    }
+    return new ArrayList<>(selected);
+  }
+
+  public Stream<Map<String, Object>> stream(Class<?> entity, List<String> fields) {
+    CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+    CriteriaQuery<Tuple> query = cb.createTupleQuery();
+    Root<?> root = query.from(entity);
+    List<Selection<?>> columns = new ArrayList<>();
+    for (String field : fields) {
+      columns.add(root.get(field).alias(field));
+    }
+    query.multiselect(columns).orderBy(cb.asc(root.get(idField(entity))));
+    return entityManager.createQuery(query).getResultStream().map(tuple -> {
+      Map<String, Object> row = new LinkedHashMap<>();
+      for (String field : fields) {
+        row.put(field, tuple.get(field));
+      }
+      return row;
+    });
+  }
+
+  Set<String> knownFields(Class<?> entity) {
+    Set<String> known = new TreeSet<>();
+    entityType(entity).getSingularAttributes().stream()
+        .filter(attribute -> attribute.getPersistentAttributeType() == PersistentAttributeType.BASIC)
+        .forEach(attribute -> known.add(attribute.getName()));
+    return known;
+  }
+
+  private String idField(Class<?> entity) {
+    return entityType(entity).getSingularAttributes().stream()
+        .filter(SingularAttribute::isId)
+        .findFirst()
+        .orElseThrow()
+        .getName();
+  }
+
+  private EntityType<?> entityType(Class<?> entity) {
+    return entityManager.getMetamodel().entity(entity);
+  }
+}
@@ -0,0 +1,73 @@
+package edu.ucsb.cs156.example.services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import javax.persistence.Entity;
+import javax.persistence.EntityManager;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import lombok.extern.slf4j.Slf4j;
+
+// Writes query results to a response as an array, one row at a time,
+// so that the full result list is never held on the heap.  The array is
+// written in one of the ResponseFormats, normally the one negotiate()
+// picks from the request's Accept header.
+// The rows are read inside a read-only transaction (needed to keep a JDBC
+// cursor open) and each entity is detached from the persistence context
+// as soon as it has been written; rows that are not entities (projections)
+// are only written.
+
+@Slf4j
+@Service("jsonStreaming")
+public class JsonStreamingService {
+
+  @Autowired
+  ResponseFormats formats;
+
+  @Autowired
+  ObjectProvider<EntityManager> entityManager;
+
+  // call on the request thread, before the body is written
+  public MediaType negotiate() {
+    return formats.negotiate();
+  }
+
+  @Transactional(readOnly = true)
+  public <T> long writeArray(Supplier<Stream<T>> rows, OutputStream out, MediaType format) throws IOException {
+    ObjectMapper mapper = formats.mapper(format);
+    ObjectWriter writer = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    EntityManager em = entityManager.getIfAvailable();
+    long count = 0;
+    try (Stream<T> stream = rows.get();
+        JsonGenerator generator = mapper.createGenerator(out, JsonEncoding.UTF8)) {
+      generator.writeStartArray();
+      Iterator<T> iterator = stream.iterator();
+      while (iterator.hasNext()) {
+        T row = iterator.next();
+        writer.writeValue(generator, row);
+        if (em != null && row.getClass().isAnnotationPresent(Entity.class) && em.contains(row)) {
+          em.detach(row);
+        }
+        count++;
+      }
+      generator.writeEndArray();
+    }
+    log.debug("streamed {} rows as {}", count, format);
+    return count;
+  }
+}
@@ -0,0 +1,21 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+// Runs work in a read-write transaction of its own, which
+// ReplicaRoutingDataSource always sends to the primary.  For reads that
+// must see a write that was just made (the replica may be behind), and for
+// writes made while a read-only transaction is already open.
+
+@Service("primaryTransactions")
+public class PrimaryTransactions {
+
+  @Transactional(propagation = Propagation.REQUIRES_NEW)
+  public <T> T call(Supplier<T> work) {
+    return work.get();
+  }
+}
@@ -0,0 +1,173 @@
+package edu.ucsb.cs156.example.services;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import edu.ucsb.cs156.example.aop.ServerTiming;
+import edu.ucsb.cs156.example.aop.ServerTiming.Phase;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+
+// Already-encoded bodies of read-mostly collection endpoints, one per
+// table and response format (JSON, or CBOR or Smile when the Accept header
+// asks for it), tagged with the TableVersionService version they were
+// built at.
+// A read at the same version gets the stored bytes (gzipped ones if the
+// client accepts gzip and the body is big enough to be worth it); the first
+// read after a write re-runs the query and re-serializes.  The version is
+// taken before the query, so a write that lands while a body is being built
+// leaves it tagged with the old version and the next read builds it again.
+// The query runs on the primary (through PrimaryTransactions): built from a
+// replica that has not caught up yet, a body would be stored under the new
+// version without the write that bumped it.
+// Like the versions themselves this only sees writes made through this
+// instance's controllers.
+
+@Slf4j
+@Service("responseBodyCache")
+public class ResponseBodyCache implements MeterBinder {
+
+  // writes the body in the given format
+  @FunctionalInterface
+  public interface BodyWriter {
+    void writeTo(OutputStream out, MediaType format) throws IOException;
+  }
+
+  record Key(String table, MediaType format) {
+  }
+
+  record Body(long version, byte[] bytes, byte[] gzip) {
+    long size() {
+      return bytes.length + (gzip == null ? 0 : gzip.length);
+    }
+  }
+
+  @Autowired
+  TableVersionService tableVersions;
+
+  @Autowired
+  ResponseFormats formats;
+
+  @Autowired
+  PrimaryTransactions primaryTransactions;
+
+  @Value("${app.responseCache.gzipMinBytes:1024}")
+  int gzipMinBytes = 1024;
+
+  private final ConcurrentMap<Key, Body> bodies = new ConcurrentHashMap<>();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong builds = new AtomicLong();
+
+  public ResponseEntity<byte[]> respond(String table, String acceptEncoding, Supplier<?> value) {
+    return respond(table, acceptEncoding, (out, format) -> formats.mapper(format).writeValue(out, value.get()));
+  }
+
+  public ResponseEntity<byte[]> respond(String table, String acceptEncoding, BodyWriter writer) {
+    MediaType format = formats.negotiate();
+    Body body = body(new Key(table, format), writer);
+    ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+        .contentType(format)
+        .header(HttpHeaders.VARY, HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+    if (body.gzip() != null && acceptsGzip(acceptEncoding)) {
+      return response.header(HttpHeaders.CONTENT_ENCODING, "gzip")
+          .contentLength(body.gzip().length)
+          .body(body.gzip());
+    }
+    return response.contentLength(body.bytes().length).body(body.bytes());
+  }
+
+  public void invalidateAll() {
+    bodies.clear();
+  }
+
+  private Body body(Key key, BodyWriter writer) {
+    long version = tableVersions.version(key.table());
+    Body cached = bodies.get(key);
+    if (cached != null && cached.version() == version) {
+      hits.incrementAndGet();
+      return cached;
+    }
+    Body built = build(version, key.format(), writer);
+    builds.incrementAndGet();
+    log.debug("built {} response body as {} at version {}: {} bytes",
+        key.table(), key.format(), version, built.bytes().length);
+    // two readers may race to rebuild; keep whichever is newer
+    return bodies.merge(key, built, (old, fresh) -> old.version() > fresh.version() ? old : fresh);
+  }
+
+  private Body build(long version, MediaType format, BodyWriter writer) {
+    ServerTiming.enter(Phase.SERIALIZATION);
+    try {
+      byte[] bytes = primaryTransactions.call(() -> {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        try {
+          writer.writeTo(encoded, format);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        return encoded.toByteArray();
+      });
+      return new Body(version, bytes, bytes.length >= gzipMinBytes ? gzip(bytes) : null);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      ServerTiming.exit();
+    }
+  }
+
+  private static byte[] gzip(byte[] bytes) throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4);
+    try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+      out.write(bytes);
+    }
+    return compressed.toByteArray();
+  }
+
+  // "gzip", "gzip;q=0.8", "*" ... but not "gzip;q=0"
+  static boolean acceptsGzip(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+    for (String coding : acceptEncoding.split(",")) {
+      String[] parts = coding.trim().split(";");
+      String name = parts[0].trim();
+      if (!name.equalsIgnoreCase("gzip") && !name.equals("*")) {
+        continue;
+      }
+      boolean refused = parts.length > 1 && parts[1].trim().matches("(?i)q=0(\\.0*)?");
+      return !refused;
+    }
+    return false;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder("response.cache.hits", hits, AtomicLong::get)
+        .description("Collection responses served from already-encoded bytes")
+        .register(registry);
+    FunctionCounter.builder("response.cache.builds", builds, AtomicLong::get)
+        .description("Collection responses queried and serialized because the table changed")
+        .register(registry);
+    Gauge.builder("response.cache.size", bodies, b -> b.values().stream().mapToLong(Body::size).sum())
+        .description("Bytes held by cached response bodies")
+        .baseUnit("bytes")
+        .register(registry);
+  }
+}
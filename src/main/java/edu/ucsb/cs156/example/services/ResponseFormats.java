@@ -0,0 +1,98 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+// The encodings API responses can be written in: JSON, and the binary
+// CBOR and Smile formats for batch clients that would rather not parse
+// text.  The binary mappers are built from Spring Boot's
+// Jackson2ObjectMapperBuilder, like the JSON one, so all three have the
+// same modules and settings and produce the same fields and values.
+// The message converters (WebMvcConfig) cover handlers that return
+// objects; streamed and cached bodies pick their format with negotiate().
+
+@Service("responseFormats")
+public class ResponseFormats {
+
+  public static final MediaType SMILE = new MediaType("application", "x-jackson-smile");
+
+  // in order of preference when the client accepts more than one
+  public static final List<MediaType> SUPPORTED = List.of(MediaType.APPLICATION_JSON, MediaType.APPLICATION_CBOR, SMILE);
+
+  @Autowired
+  ObjectMapper mapper;
+
+  @Autowired
+  Jackson2ObjectMapperBuilder builder;
+
+  private Map<MediaType, ObjectMapper> mappers;
+
+  @PostConstruct
+  public void init() {
+    mappers = Map.of(
+        MediaType.APPLICATION_JSON, mapper,
+        MediaType.APPLICATION_CBOR, builder.factory(new CBORFactory()).build(),
+        SMILE, builder.factory(new SmileFactory()).build());
+  }
+
+  public ObjectMapper mapper(MediaType format) {
+    return mappers.get(format);
+  }
+
+  // the best supported format for an Accept header; JSON when there is
+  // none, or it names nothing supported
+  public MediaType negotiate(String accept) {
+    if (accept == null || accept.isBlank()) {
+      return MediaType.APPLICATION_JSON;
+    }
+    List<MediaType> accepted;
+    try {
+      accepted = MediaType.parseMediaTypes(accept);
+    } catch (InvalidMediaTypeException e) {
+      return MediaType.APPLICATION_JSON;
+    }
+    MediaType.sortBySpecificityAndQuality(accepted);
+    for (MediaType type : accepted) {
+      if (type.getQualityValue() == 0) {
+        continue;
+      }
+      for (MediaType format : SUPPORTED) {
+        if (type.includes(format) && !refused(format, accepted)) {
+          return format;
+        }
+      }
+    }
+    return MediaType.APPLICATION_JSON;
+  }
+
+  // "application/json;q=0, application/*" rules out JSON
+  private static boolean refused(MediaType format, List<MediaType> accepted) {
+    return accepted.stream()
+        .anyMatch(type -> type.getQualityValue() == 0 && type.includes(format));
+  }
+
+  // for the request being handled on this thread
+  public MediaType negotiate() {
+    if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+      HttpServletRequest request = attributes.getRequest();
+      return negotiate(request.getHeader(HttpHeaders.ACCEPT));
+    }
+    return MediaType.APPLICATION_JSON;
+  }
+}
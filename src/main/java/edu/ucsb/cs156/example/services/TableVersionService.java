@@ -0,0 +1,86 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// One version counter per entity table, bumped by every write request to
+// that table (see ConditionalGetInterceptor).  The bump happens when a
+// read-write transaction of the request commits (see
+// AppTransactionManager), so it is visible before the response is
+// written and a client that reads right after its own write is never told
+// 304 for the old version.  A write request that commits no transaction
+// still bumps the version once it completes.
+// Counters start at 0 when the application starts, so the start time goes
+// into every ETag to keep tags from before a restart from matching.  So does
+// the response format, as the same URL answers JSON, CBOR or Smile bytes
+// depending on the Accept header.
+
+@Service("tableVersions")
+public class TableVersionService {
+
+  private static final class Write {
+    final String table;
+    volatile boolean bumped;
+
+    Write(String table) {
+      this.table = table;
+    }
+  }
+
+  private final long startEpoch = System.currentTimeMillis();
+  private final ConcurrentMap<String, AtomicLong> versions = new ConcurrentHashMap<>();
+  private final ThreadLocal<Write> writes = new ThreadLocal<>();
+
+  public long version(String table) {
+    return counter(table).get();
+  }
+
+  public long bump(String table) {
+    return counter(table).incrementAndGet();
+  }
+
+  public String etag(String table, MediaType format) {
+    return "\"%s-%d-%d-%s\"".formatted(table, startEpoch, version(table), format.getSubtype());
+  }
+
+  // a write request to table starts on this thread
+  public void startWrite(String table) {
+    writes.set(new Write(table));
+  }
+
+  // the write request on this thread is done; bumps the version if no
+  // transaction of the request did
+  public void endWrite() {
+    Write write = writes.get();
+    writes.remove();
+    if (write != null && !write.bumped) {
+      bump(write.table);
+    }
+  }
+
+  // a read-write transaction has started on this thread; during a write
+  // request its commit bumps the request's table
+  public void transactionStarted() {
+    Write write = writes.get();
+    if (write == null || !TransactionSynchronizationManager.isSynchronizationActive()) {
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        bump(write.table);
+        write.bumped = true;
+      }
+    });
+  }
+
+  private AtomicLong counter(String table) {
+    return versions.computeIfAbsent(table, t -> new AtomicLong());
+  }
+}
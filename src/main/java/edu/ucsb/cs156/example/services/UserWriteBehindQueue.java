@@ -0,0 +1,131 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+
+// Bounded write-behind queue for user profile upserts and admin promotions.
+// CurrentUserServiceImpl offers the in-memory User here and returns at once;
+// a single background thread drains the queue every flushIntervalMillis and
+// writes up to batchSize users per JDBC batch with upsertAllOnLogin.
+// When the queue is full, offer() returns false and the caller must write
+// synchronously; those rejections are counted as backpressure.
+
+@Slf4j
+@Component
+public class UserWriteBehindQueue implements MeterBinder {
+
+  @Autowired
+  UserRepository userRepository;
+
+  @Autowired
+  CurrentUserCache currentUserCache;
+
+  @Value("${app.users.writeBehind.queueCapacity:1000}")
+  private int queueCapacity;
+
+  @Value("${app.users.writeBehind.batchSize:100}")
+  private int batchSize;
+
+  @Value("${app.users.writeBehind.flushIntervalMillis:200}")
+  private long flushIntervalMillis;
+
+  private BlockingQueue<User> queue;
+  private ScheduledExecutorService flusher;
+
+  private final AtomicLong enqueued = new AtomicLong();
+  private final AtomicLong rejected = new AtomicLong();
+  private final AtomicLong flushed = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+
+  @PostConstruct
+  void start() {
+    queue = new ArrayBlockingQueue<>(queueCapacity);
+    flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "user-write-behind");
+      t.setDaemon(true);
+      return t;
+    });
+    flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  void stop() throws InterruptedException {
+    flusher.shutdown();
+    flusher.awaitTermination(5, TimeUnit.SECONDS);
+    flush();
+  }
+
+  public boolean offer(User user) {
+    if (queue.offer(user)) {
+      enqueued.incrementAndGet();
+      return true;
+    }
+    rejected.incrementAndGet();
+    log.warn("user write-behind queue full ({}), writing {} synchronously", queueCapacity, user.getEmail());
+    return false;
+  }
+
+  public synchronized void flush() {
+    List<User> batch = new ArrayList<>(batchSize);
+    while (queue.drainTo(batch, batchSize) > 0) {
+      write(batch);
+      batch = new ArrayList<>(batchSize);
+    }
+  }
+
+  private void write(List<User> batch) {
+    try {
+      userRepository.upsertAllOnLogin(batch);
+      flushed.addAndGet(batch.size());
+    } catch (RuntimeException e) {
+      failed.addAndGet(batch.size());
+      log.error("failed to write batch of {} users", batch.size(), e);
+    }
+    // the next request re-reads the stored row (with its generated id);
+    // on success the repository has already announced this with UserChangedEvent
+    batch.forEach(u -> currentUserCache.invalidate(u.getEmail()));
+  }
+
+  public int depth() {
+    return queue.size();
+  }
+
+  public long rejectedCount() {
+    return rejected.get();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("users.writeBehind.queue.depth", queue, BlockingQueue::size)
+        .description("User upserts waiting to be written")
+        .register(registry);
+    Gauge.builder("users.writeBehind.queue.capacity", () -> queueCapacity).register(registry);
+    FunctionCounter.builder("users.writeBehind.enqueued", enqueued, AtomicLong::get).register(registry);
+    FunctionCounter.builder("users.writeBehind.rejected", rejected, AtomicLong::get)
+        .description("Upserts written synchronously because the queue was full")
+        .register(registry);
+    FunctionCounter.builder("users.writeBehind.flushed", flushed, AtomicLong::get).register(registry);
+    FunctionCounter.builder("users.writeBehind.failed", failed, AtomicLong::get).register(registry);
+  }
+}
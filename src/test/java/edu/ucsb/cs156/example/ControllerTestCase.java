@@ -3,6 +3,7 @@ package edu.ucsb.cs156.example;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Import;
 import org.springframework.test.context.ActiveProfiles;
@@ -10,6 +11,10 @@ import org.springframework.test.web.servlet.MockMvc;
 
 import edu.ucsb.cs156.example.services.CurrentUserService;
 import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
+import edu.ucsb.cs156.example.services.JsonStreamingService;
+import edu.ucsb.cs156.example.services.ResponseBodyCache;
+import edu.ucsb.cs156.example.services.ResponseFormats;
+import edu.ucsb.cs156.example.services.TableVersionService;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import org.springframework.test.web.servlet.MvcResult;
 
@@ -17,7 +22,8 @@ import java.io.UnsupportedEncodingException;
 import java.util.Map;
 
 @ActiveProfiles("test")
-@Import(TestConfig.class)
+@Import({ TestConfig.class, JsonStreamingService.class, TableVersionService.class,
+    ResponseBodyCache.class, ResponseFormats.class })
 public abstract class ControllerTestCase {
   @Autowired
   public CurrentUserService currentUserService;
@@ -31,6 +37,18 @@ public abstract class ControllerTestCase {
   @Autowired
   public ObjectMapper mapper;
 
+  @Autowired
+  public ResponseBodyCache responseBodyCache;
+
+  // the test context, and with it the cache, outlives each test's mocks
+  // (null in subclasses that run without a Spring context)
+  @BeforeEach
+  public void clearResponseBodyCache() {
+    if (responseBodyCache != null) {
+      responseBodyCache.invalidateAll();
+    }
+  }
+
   protected Map<String, Object> responseToJson(MvcResult result) throws UnsupportedEncodingException, JsonProcessingException {
     String responseString = result.getResponse().getContentAsString();
     return mapper.readValue(responseString, Map.class);
@@ -0,0 +1,142 @@
+package edu.ucsb.cs156.example.aop;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import edu.ucsb.cs156.example.interceptors.VersionedTable;
+import edu.ucsb.cs156.example.services.ResponseFormats;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class CoalescingAspectTests {
+
+  @VersionedTable("ucsbdates")
+  static class DatesController {
+    final AtomicInteger queries = new AtomicInteger();
+    final CountDownLatch release = new CountDownLatch(1);
+    // one permit per call that got as far as running the query
+    final Semaphore entered = new Semaphore(0);
+
+    @CoalesceRequests
+    public Integer all() throws InterruptedException {
+      entered.release();
+      release.await(5, TimeUnit.SECONDS);
+      return queries.incrementAndGet();
+    }
+  }
+
+  DatesController target = new DatesController();
+  CoalescingAspect aspect = new CoalescingAspect();
+  DatesController controller;
+  ExecutorService pool = Executors.newFixedThreadPool(4);
+
+  CoalescingAspectTests() {
+    aspect.meterRegistry = new SimpleMeterRegistry();
+    aspect.tableVersions = new TableVersionService();
+    aspect.formats = new ResponseFormats();
+    AspectJProxyFactory factory = new AspectJProxyFactory(target);
+    factory.setProxyTargetClass(true);
+    factory.addAspect(aspect);
+    controller = factory.getProxy();
+  }
+
+  @AfterEach
+  void shutdown() {
+    pool.shutdownNow();
+  }
+
+  private Future<Integer> call(String... roles) {
+    return callAccepting("application/json", roles);
+  }
+
+  private Future<Integer> callAccepting(String accept, String... roles) {
+    return pool.submit(() -> {
+      MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/ucsbdates/all");
+      request.addHeader("Accept", accept);
+      RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+      SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("user", null, roles));
+      try {
+        return controller.all();
+      } finally {
+        SecurityContextHolder.clearContext();
+        RequestContextHolder.resetRequestAttributes();
+      }
+    });
+  }
+
+  private double coalesced() {
+    return aspect.meterRegistry.counter("app.handler.coalesced", "handler", "DatesController.all").count();
+  }
+
+  private void awaitCoalesced(int expected) throws InterruptedException {
+    for (int i = 0; i < 500 && coalesced() < expected; i++) {
+      Thread.sleep(10);
+    }
+  }
+
+  @Test
+  void test_callers_with_the_same_roles_share_one_call() throws Exception {
+    List<Future<Integer>> calls = List.of(call("ROLE_USER"), call("ROLE_USER"), call("ROLE_USER"));
+    awaitCoalesced(2);
+    target.release.countDown();
+
+    for (Future<Integer> c : calls) {
+      assertEquals(1, c.get(5, TimeUnit.SECONDS));
+    }
+    assertEquals(1, target.queries.get());
+    assertEquals(2.0, coalesced());
+  }
+
+  @Test
+  void test_callers_with_other_roles_or_after_a_write_do_not_share() throws Exception {
+    Future<Integer> user = call("ROLE_USER");
+    Future<Integer> admin = call("ROLE_USER", "ROLE_ADMIN");
+    // both are running their own query, at the version before the write
+    assertTrue(target.entered.tryAcquire(2, 5, TimeUnit.SECONDS));
+    aspect.tableVersions.bump("ucsbdates");
+    Future<Integer> afterWrite = call("ROLE_USER");
+    // had it joined the first call it would never get here
+    assertTrue(target.entered.tryAcquire(1, 5, TimeUnit.SECONDS));
+    target.release.countDown();
+
+    user.get(5, TimeUnit.SECONDS);
+    admin.get(5, TimeUnit.SECONDS);
+    afterWrite.get(5, TimeUnit.SECONDS);
+    assertEquals(3, target.queries.get());
+    assertEquals(0.0, coalesced());
+  }
+
+  @Test
+  void test_callers_negotiating_other_formats_do_not_share() throws Exception {
+    Future<Integer> json = callAccepting("application/json", "ROLE_USER");
+    Future<Integer> cbor = callAccepting("application/cbor", "ROLE_USER");
+    assertTrue(target.entered.tryAcquire(2, 5, TimeUnit.SECONDS));
+    // a different Accept header that still means JSON shares the call
+    Future<Integer> anything = callAccepting("*/*", "ROLE_USER");
+    awaitCoalesced(1);
+    target.release.countDown();
+
+    assertEquals(json.get(5, TimeUnit.SECONDS), anything.get(5, TimeUnit.SECONDS));
+    cbor.get(5, TimeUnit.SECONDS);
+    assertEquals(2, target.queries.get());
+    assertEquals(1.0, coalesced());
+  }
+}
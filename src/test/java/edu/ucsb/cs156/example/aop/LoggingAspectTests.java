@@ -0,0 +1,182 @@
+package edu.ucsb.cs156.example.aop;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.sun.management.ThreadMXBean;
+
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.StatementBudgetExceededException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class LoggingAspectTests {
+
+  static class DatesController {
+    final CountDownLatch entered = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+
+    @GetMapping("/api/ucsbdates/all")
+    public String all() {
+      return "dates";
+    }
+
+    @GetMapping("/api/ucsbdates")
+    public String one() {
+      throw new EntityNotFoundException(String.class, 1L);
+    }
+
+    @GetMapping("/api/ucsbdates/slow")
+    public String slow() throws InterruptedException {
+      entered.countDown();
+      release.await(5, TimeUnit.SECONDS);
+      return "slow";
+    }
+
+    @GetMapping("/api/ucsbdates/big")
+    public int big() {
+      return new byte[1 << 20].length;
+    }
+
+    // like the /all handlers: the queries run when the body is written
+    @StatementBudget(1)
+    @GetMapping("/api/ucsbdates/streamed")
+    public ResponseEntity<StreamingResponseBody> streamed(int queries) {
+      return ResponseEntity.ok().body(out -> {
+        for (int i = 0; i < queries; i++) {
+          new SqlStatementCounter().inspect("select * from ucsbdates");
+        }
+        out.write(new byte[1 << 20]);
+      });
+    }
+  }
+
+  DatesController target = new DatesController();
+  LoggingAspect aspect = new LoggingAspect();
+  SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  DatesController controller;
+  ExecutorService pool = Executors.newSingleThreadExecutor();
+
+  LoggingAspectTests() {
+    aspect.meterRegistry = meterRegistry;
+    aspect.requestLogSampling = new RequestLogSampling();
+    AspectJProxyFactory factory = new AspectJProxyFactory(target);
+    factory.setProxyTargetClass(true);
+    factory.addAspect(aspect);
+    controller = factory.getProxy();
+  }
+
+  @AfterEach
+  void shutdown() {
+    pool.shutdownNow();
+  }
+
+  private Timer duration(String handler, String exception) {
+    return meterRegistry.find("app.handler.duration").tag("handler", handler).tag("exception", exception).timer();
+  }
+
+  @Test
+  void test_each_call_is_timed_on_the_same_meter() {
+    controller.all();
+    Timer timer = duration("DatesController.all", "none");
+    controller.all();
+
+    assertSame(timer, duration("DatesController.all", "none"));
+    assertEquals(2, timer.count());
+    assertEquals(1, meterRegistry.find("app.handler.duration").timers().size());
+  }
+
+  @Test
+  void test_a_call_that_throws_is_counted_and_timed_with_its_exception() {
+    assertThrows(EntityNotFoundException.class, () -> controller.one());
+    assertThrows(EntityNotFoundException.class, () -> controller.one());
+
+    assertEquals(2.0, meterRegistry.counter("app.handler.errors",
+        "handler", "DatesController.one", "exception", "EntityNotFoundException").count());
+    assertEquals(2, duration("DatesController.one", "EntityNotFoundException").count());
+    assertNull(duration("DatesController.one", "none"));
+  }
+
+  @Test
+  void test_inflight_counts_calls_that_are_running() throws Exception {
+    Future<String> slow = pool.submit(() -> controller.slow());
+    assertTrue(target.entered.await(5, TimeUnit.SECONDS));
+
+    Gauge inflight = meterRegistry.find("app.handler.inflight").tag("handler", "DatesController.slow").gauge();
+    assertEquals(1.0, inflight.value());
+
+    target.release.countDown();
+    assertEquals("slow", slow.get(5, TimeUnit.SECONDS));
+    assertEquals(0.0, inflight.value());
+  }
+
+  @Test
+  void test_bytes_allocated_by_the_handler_are_recorded() {
+    ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    boolean supported = threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled();
+
+    controller.big();
+
+    DistributionSummary allocated = meterRegistry.find("app.handler.allocated")
+        .tag("handler", "DatesController.big").summary();
+    if (!supported) {
+      assertNull(allocated);
+      return;
+    }
+    assertEquals(1, allocated.count());
+    assertTrue(allocated.totalAmount() >= 1 << 20, "allocated " + allocated.totalAmount());
+  }
+
+  @Test
+  void test_a_streamed_body_is_measured_on_the_thread_that_writes_it() throws Exception {
+    ResponseEntity<StreamingResponseBody> response = controller.streamed(1);
+    DistributionSummary statements = meterRegistry.find("app.handler.statements")
+        .tag("handler", "DatesController.streamed").summary();
+    assertEquals(0, statements.count());
+
+    pool.submit(() -> {
+      response.getBody().writeTo(new ByteArrayOutputStream());
+      return null;
+    }).get(5, TimeUnit.SECONDS);
+
+    assertEquals(1, statements.count());
+    assertEquals(1.0, statements.totalAmount());
+    DistributionSummary allocated = meterRegistry.find("app.handler.allocated")
+        .tag("handler", "DatesController.streamed").summary();
+    if (allocated != null) {
+      assertEquals(1, allocated.count());
+      assertTrue(allocated.totalAmount() >= 1 << 20, "allocated " + allocated.totalAmount());
+    }
+  }
+
+  @Test
+  void test_a_streamed_body_over_its_statement_budget_fails_when_configured() {
+    aspect.failOnStatementBudget = true;
+    ResponseEntity<StreamingResponseBody> response = controller.streamed(2);
+
+    assertThrows(StatementBudgetExceededException.class,
+        () -> response.getBody().writeTo(new ByteArrayOutputStream()));
+    assertEquals(2.0, meterRegistry.find("app.handler.statements")
+        .tag("handler", "DatesController.streamed").summary().totalAmount());
+  }
+}
@@ -0,0 +1,99 @@
+package edu.ucsb.cs156.example.aop;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageImpl;
+
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+class RepositoryAspectTests {
+
+  @Test
+  void test_rows_counts_what_came_back() {
+    assertEquals(0, RepositoryAspect.rows(null, false));
+    assertEquals(3, RepositoryAspect.rows(List.of(1, 2, 3), false));
+    assertEquals(2, RepositoryAspect.rows(new PageImpl<>(List.of(1, 2)), false));
+    assertEquals(1, RepositoryAspect.rows(Optional.of(1), false));
+    assertEquals(0, RepositoryAspect.rows(Optional.empty(), false));
+    assertEquals(1, RepositoryAspect.rows(new UCSBDate(), false));
+    assertEquals(-1, RepositoryAspect.rows(42L, false));
+  }
+
+  @Test
+  void test_modifying_queries_report_the_rows_they_changed() {
+    assertEquals(1, RepositoryAspect.rows(1, true));
+    assertEquals(0, RepositoryAspect.rows(0, true));
+    assertEquals(5, RepositoryAspect.rows(5L, true));
+  }
+
+  @Test
+  void test_streams_are_not_counted() {
+    assertEquals(-1, RepositoryAspect.rows(Stream.of(1, 2, 3), false));
+  }
+
+  @Test
+  void test_modifying_call_is_recorded_with_the_rows_it_changed() throws Throwable {
+    UCSBDateRepository repository = mock(UCSBDateRepository.class);
+    MethodSignature signature = mock(MethodSignature.class);
+    when(signature.getName()).thenReturn("removeById");
+    when(signature.getReturnType()).thenReturn((Class) int.class);
+    when(signature.getMethod()).thenReturn(UCSBDateRepository.class.getMethod("removeById", long.class));
+    ProceedingJoinPoint joinPoint = mock(ProceedingJoinPoint.class);
+    when(joinPoint.getTarget()).thenReturn(repository);
+    when(joinPoint.getSignature()).thenReturn(signature);
+    when(joinPoint.proceed()).thenReturn(1);
+
+    List<RecordedEvent> events = record(joinPoint);
+    assertEquals(1, events.size());
+    assertEquals("UCSBDateRepository.removeById", events.get(0).getString("method"));
+    assertEquals(1, events.get(0).getLong("rows"));
+  }
+
+  @Test
+  void test_repository_call_is_recorded() throws Throwable {
+    UCSBDateRepository repository = mock(UCSBDateRepository.class);
+    MethodSignature signature = mock(MethodSignature.class);
+    when(signature.getName()).thenReturn("findAll");
+    when(signature.getReturnType()).thenReturn((Class) Iterable.class);
+    when(signature.getMethod()).thenReturn(UCSBDateRepository.class.getMethod("findAll"));
+    ProceedingJoinPoint joinPoint = mock(ProceedingJoinPoint.class);
+    when(joinPoint.getTarget()).thenReturn(repository);
+    when(joinPoint.getSignature()).thenReturn(signature);
+    when(joinPoint.proceed()).thenReturn(List.of(new UCSBDate(), new UCSBDate()));
+
+    List<RecordedEvent> events = record(joinPoint);
+    assertEquals(1, events.size());
+    assertEquals("UCSBDate", events.get(0).getString("entity"));
+    assertEquals("UCSBDateRepository.findAll", events.get(0).getString("method"));
+    assertEquals(2, events.get(0).getLong("rows"));
+  }
+
+  private static List<RecordedEvent> record(ProceedingJoinPoint joinPoint) throws Throwable {
+    Path file = Files.createTempFile("repository-aspect", ".jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable(RepositoryCallEvent.class);
+      recording.start();
+      new RepositoryAspect().recordRepositoryCall(joinPoint);
+      recording.stop();
+      recording.dump(file);
+    }
+    List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+    Files.delete(file);
+    return events;
+  }
+}
@@ -0,0 +1,41 @@
+package edu.ucsb.cs156.example.aop;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class RequestLogSamplingTests {
+
+  @Test
+  void test_default_rate_logs_everything() {
+    RequestLogSampling sampling = new RequestLogSampling();
+
+    assertTrue(sampling.sample("UCSBDatesController.allUCSBDates"));
+  }
+
+  @Test
+  void test_per_handler_rates_override_the_default() {
+    RequestLogSampling sampling = new RequestLogSampling();
+    sampling.setDefaultRate(0.0);
+    sampling.setRates(Map.of("UCSBDatesController.getById", 1.0));
+
+    assertTrue(sampling.sample("UCSBDatesController.getById"));
+    assertFalse(sampling.sample("UCSBDatesController.allUCSBDates"));
+  }
+
+  @Test
+  void test_fractional_rate_logs_some_calls() {
+    RequestLogSampling sampling = new RequestLogSampling();
+    sampling.setDefaultRate(0.5);
+
+    int logged = 0;
+    for (int i = 0; i < 1000; i++) {
+      logged += sampling.sample("UCSBDatesController.allUCSBDates") ? 1 : 0;
+    }
+
+    assertTrue(logged > 350 && logged < 650, "logged " + logged);
+  }
+}
@@ -0,0 +1,48 @@
+package edu.ucsb.cs156.example.aop;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.aop.ServerTiming.Phase;
+
+class ServerTimingTests {
+
+  private static final long MS = 1_000_000;
+
+  @Test
+  void test_nested_phases_are_exclusive() {
+    ServerTiming timing = new ServerTiming(0);
+    timing.push(Phase.AUTH, 1 * MS);
+    timing.push(Phase.DB, 2 * MS);
+    timing.pop(5 * MS);
+    timing.pop(6 * MS);
+    timing.push(Phase.SERIALIZATION, 8 * MS);
+    timing.pop(10 * MS);
+
+    assertEquals("db;dur=3.0;desc=\"Database\", "
+        + "auth;dur=2.0;desc=\"Current user and authorities\", "
+        + "ser;dur=2.0;desc=\"Serialization\", "
+        + "app;dur=5.0;desc=\"Everything else\", "
+        + "total;dur=12.0", timing.header(12 * MS));
+  }
+
+  @Test
+  void test_open_phase_counts_up_to_now() {
+    ServerTiming timing = new ServerTiming(0);
+    timing.push(Phase.SERIALIZATION, 4 * MS);
+
+    assertEquals("db;dur=0.0;desc=\"Database\", "
+        + "auth;dur=0.0;desc=\"Current user and authorities\", "
+        + "ser;dur=1.5;desc=\"Serialization\", "
+        + "app;dur=4.0;desc=\"Everything else\", "
+        + "total;dur=5.5", timing.header(5_500_000));
+  }
+
+  @Test
+  void test_enter_and_exit_without_a_request_are_ignored() {
+    ServerTiming.clear();
+    ServerTiming.enter(Phase.DB);
+    ServerTiming.exit();
+  }
+}
@@ -0,0 +1,95 @@
+package edu.ucsb.cs156.example.aop;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class SingleFlightTests {
+
+  static final int CALLERS = 8;
+
+  SingleFlight<String> flights = new SingleFlight<>();
+  ExecutorService pool = Executors.newFixedThreadPool(CALLERS);
+  AtomicInteger calls = new AtomicInteger();
+  CountDownLatch started = new CountDownLatch(1);
+  CountDownLatch joined = new CountDownLatch(CALLERS - 1);
+  CountDownLatch release = new CountDownLatch(1);
+
+  @AfterEach
+  void shutdown() {
+    pool.shutdownNow();
+  }
+
+  // the first caller blocks until every other caller has joined it
+  private <V> List<Future<V>> concurrently(SingleFlight.Call<V> call) throws InterruptedException {
+    List<Future<V>> results = new ArrayList<>();
+    results.add(pool.submit(() -> run(() -> {
+      started.countDown();
+      release.await();
+      return call.call();
+    })));
+    started.await();
+    for (int i = 1; i < CALLERS; i++) {
+      results.add(pool.submit(() -> run(call)));
+    }
+    joined.await(5, TimeUnit.SECONDS);
+    release.countDown();
+    return results;
+  }
+
+  private <V> V run(SingleFlight.Call<V> call) throws Exception {
+    try {
+      return flights.run("all", () -> {
+        calls.incrementAndGet();
+        return call.call();
+      }, joined::countDown);
+    } catch (Exception | Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new RuntimeException(t);
+    }
+  }
+
+  @Test
+  void test_concurrent_callers_share_one_call() throws Exception {
+    Object result = new Object();
+
+    for (Future<Object> future : concurrently(() -> result)) {
+      assertSame(result, future.get(5, TimeUnit.SECONDS));
+    }
+
+    assertEquals(1, calls.get());
+    assertEquals(0, flights.inFlight());
+  }
+
+  @Test
+  void test_concurrent_callers_share_the_exception() throws Exception {
+    for (Future<Object> future : concurrently(() -> {
+      throw new IllegalStateException("database down");
+    })) {
+      Exception e = assertThrows(Exception.class, () -> future.get(5, TimeUnit.SECONDS));
+      assertEquals("database down", e.getCause().getMessage());
+    }
+
+    assertEquals(1, calls.get());
+    assertEquals(0, flights.inFlight());
+  }
+
+  @Test
+  void test_calls_that_do_not_overlap_each_run() throws Throwable {
+    assertEquals(1, flights.run("all", calls::incrementAndGet, () -> { }));
+    assertEquals(2, flights.run("all", calls::incrementAndGet, () -> { }));
+  }
+}
@@ -0,0 +1,26 @@
+package edu.ucsb.cs156.example.aop;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class SqlStatementCounterTests {
+
+  private final SqlStatementCounter counter = new SqlStatementCounter();
+
+  @Test
+  void test_counts_statements_while_started() {
+    int[] count = SqlStatementCounter.start();
+    assertEquals("select 1", counter.inspect("select 1"));
+    counter.inspect("update ucsbdates set name=? where id=?");
+    SqlStatementCounter.stop();
+    counter.inspect("select 2");
+
+    assertEquals(2, count[0]);
+  }
+
+  @Test
+  void test_statements_outside_a_count_are_passed_through() {
+    assertEquals("select 1", counter.inspect("select 1"));
+  }
+}
@@ -0,0 +1,159 @@
+package edu.ucsb.cs156.example.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import edu.ucsb.cs156.example.entities.Article;
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.entities.Recommendation;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.services.ResponseFormats;
+import lombok.extern.slf4j.Slf4j;
+
+// Encode and decode throughput, and payload size, of an /all body of each
+// entity type in JSON, CBOR and Smile, with mappers configured the way
+// Spring Boot configures the app's (see ResponseFormats).  Sizes are
+// before any gzip.
+//
+// Not part of the normal build:  mvn test -P benchmark
+
+@Slf4j
+@Tag("benchmark")
+class BinaryFormatBenchmark {
+
+  static final int ROWS = 1_000;
+  static final int WARMUP_ROUNDS = 200;
+  static final int ROUNDS = 500;
+
+  record Sample(String name, Class<?> type, IntFunction<Object> row) {
+  }
+
+  record Result(int bytes, double encodesPerSecond, double decodesPerSecond) {
+  }
+
+  @BeforeAll
+  static void quiet() {
+    // outside Spring Boot logback defaults to DEBUG, which would dominate the timings
+    ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.INFO);
+  }
+
+  @Test
+  void encode_decode_and_size_json_vs_cbor_vs_smile() throws Exception {
+    // Boot's default; the plain builder would write dates as arrays
+    Jackson2ObjectMapperBuilder builder = new Jackson2ObjectMapperBuilder()
+        .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    Map<MediaType, ObjectMapper> mappers = Map.of(
+        MediaType.APPLICATION_JSON, builder.build(),
+        MediaType.APPLICATION_CBOR, builder.factory(new CBORFactory()).build(),
+        ResponseFormats.SMILE, builder.factory(new SmileFactory()).build());
+    LocalDateTime time = LocalDateTime.parse("2022-01-03T00:00:00");
+
+    List<Sample> samples = List.of(
+        new Sample("Article", Article.class, i -> Article.builder().id(i)
+            .title("Article number " + i).url("https://example.org/articles/" + i)
+            .explanation("A short explanation of why article " + i + " is worth reading")
+            .email("cgaucho@ucsb.edu").dateAdded(LocalDate.of(2022, 1, 1).plusDays(i % 365)).build()),
+        new Sample("HelpRequest", HelpRequest.class, i -> HelpRequest.builder().id(i)
+            .requesterEmail("student" + i + "@ucsb.edu").teamId("s22-4pm-" + i % 8)
+            .tableOrBreakoutRoom("table-" + i % 12).requestTime(time.plusMinutes(i))
+            .explanation("help with team02 step " + i).solved(i % 3 == 0).build()),
+        new Sample("MenuItemReview", MenuItemReview.class, i -> MenuItemReview.builder().id((long) i)
+            .itemId((long) i % 50).reviewerEmail("student" + i + "@ucsb.edu").stars(i % 5 + 1)
+            .dateReviewed(time.plusHours(i)).comments("review " + i + ": would eat again").build()),
+        new Sample("Recommendation", Recommendation.class, i -> Recommendation.builder().id(i)
+            .requesterEmail("student" + i + "@ucsb.edu").professorEmail("prof" + i % 20 + "@ucsb.edu")
+            .explanation("grad school application " + i).dateRequested(time.plusDays(i % 30))
+            .dateNeeded(time.plusDays(i % 30 + 14)).done(i % 2 == 0).build()),
+        new Sample("UCSBDate", UCSBDate.class, i -> UCSBDate.builder().id(i)
+            .quarterYYYYQ("2022" + (i % 4 + 1)).name("date " + i).localDateTime(time.plusDays(i)).build()),
+        new Sample("UCSBDiningCommons", UCSBDiningCommons.class, i -> UCSBDiningCommons.builder()
+            .code("commons-" + i).name("Dining Commons " + i).hasSackMeal(i % 2 == 0)
+            .hasTakeOutMeal(i % 3 == 0).hasDiningCam(true)
+            .latitude(34.409 + i / 1e4).longitude(-119.845 - i / 1e4).build()),
+        new Sample("UCSBDiningCommonsMenuItem", UCSBDiningCommonsMenuItem.class,
+            i -> UCSBDiningCommonsMenuItem.builder().id(i).diningCommonsCode("ortega")
+                .name("Menu item " + i).station("Entrees").build()),
+        new Sample("UCSBOrganization", UCSBOrganization.class, i -> UCSBOrganization.builder()
+            .orgCode("ORG" + i).orgTranslationShort("Org " + i)
+            .orgTranslation("Student Organization Number " + i).inactive(i % 7 == 0).build()),
+        new Sample("User", User.class, i -> User.builder().id(i).email("user" + i + "@ucsb.edu")
+            .googleSub("1157" + i).pictureUrl("https://lh3.googleusercontent.com/a/photo" + i)
+            .fullName("Chris Gaucho " + i).givenName("Chris").familyName("Gaucho " + i)
+            .emailVerified(true).locale("en").hostedDomain("ucsb.edu").admin(i % 10 == 0).build()));
+
+    for (Sample sample : samples) {
+      List<Object> rows = new ArrayList<>(ROWS);
+      for (int i = 0; i < ROWS; i++) {
+        rows.add(sample.row().apply(i));
+      }
+      Map<MediaType, Result> results = new LinkedHashMap<>();
+      for (MediaType format : ResponseFormats.SUPPORTED) {
+        results.put(format, measure(mappers.get(format), sample.type(), rows));
+      }
+      Result json = results.get(MediaType.APPLICATION_JSON);
+      for (Map.Entry<MediaType, Result> result : results.entrySet()) {
+        Result r = result.getValue();
+        log.info("{} x{} {}: {} bytes ({}% of JSON), encode {}/s ({}x), decode {}/s ({}x)",
+            sample.name(), ROWS, result.getKey(), r.bytes(), Math.round(100.0 * r.bytes() / json.bytes()),
+            Math.round(r.encodesPerSecond()), ratio(r.encodesPerSecond(), json.encodesPerSecond()),
+            Math.round(r.decodesPerSecond()), ratio(r.decodesPerSecond(), json.decodesPerSecond()));
+      }
+    }
+  }
+
+  private Result measure(ObjectMapper mapper, Class<?> type, List<Object> rows) throws Exception {
+    JavaType listType = mapper.getTypeFactory().constructCollectionType(List.class, type);
+    byte[] bytes = mapper.writeValueAsBytes(rows);
+    assertEquals(rows.size(), mapper.<List<?>>readValue(bytes, listType).size());
+
+    for (int i = 0; i < WARMUP_ROUNDS; i++) {
+      mapper.writeValueAsBytes(rows);
+      mapper.readValue(bytes, listType);
+    }
+
+    long start = System.nanoTime();
+    for (int i = 0; i < ROUNDS; i++) {
+      mapper.writeValueAsBytes(rows);
+    }
+    double encodes = ROUNDS / ((System.nanoTime() - start) / 1e9);
+
+    start = System.nanoTime();
+    for (int i = 0; i < ROUNDS; i++) {
+      mapper.readValue(bytes, listType);
+    }
+    double decodes = ROUNDS / ((System.nanoTime() - start) / 1e9);
+
+    return new Result(bytes.length, encodes, decodes);
+  }
+
+  private static double ratio(double value, double baseline) {
+    return Math.round(value / baseline * 100) / 100.0;
+  }
+}
@@ -0,0 +1,158 @@
+package edu.ucsb.cs156.example.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+import lombok.extern.slf4j.Slf4j;
+
+// Insert throughput with IDENTITY ids versus pooled-lo sequence ids
+// (allocationSize 50), using the same JDBC batching settings as the app.
+// Runs against in-memory H2, and H2 in PostgreSQL mode with the Postgres
+// dialect; set -Dbenchmark.postgres.url (and .username, .password) to
+// also run against a real Postgres.
+//
+// Not part of the normal build:  mvn test -P benchmark
+
+@Slf4j
+@Tag("benchmark")
+class IdGenerationBenchmark {
+
+  static final int ROWS = 20_000;
+  static final int ROWS_PER_TRANSACTION = 1_000;
+  static final int BATCH_SIZE = 50;
+
+  @Entity(name = "bench_identity")
+  static class IdentityRow {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    long id;
+    String name;
+
+    IdentityRow() {
+    }
+
+    IdentityRow(String name) {
+      this.name = name;
+    }
+  }
+
+  @Entity(name = "bench_sequence")
+  static class SequenceRow {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "bench_sequence_seq")
+    @SequenceGenerator(name = "bench_sequence_seq", sequenceName = "bench_sequence_seq", allocationSize = 50)
+    long id;
+    String name;
+
+    SequenceRow() {
+    }
+
+    SequenceRow(String name) {
+      this.name = name;
+    }
+  }
+
+  record Target(String name, String url, String username, String password, String dialect) {
+  }
+
+  @BeforeAll
+  static void quiet() {
+    // outside Spring Boot logback defaults to DEBUG, which would dominate the timings
+    ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.INFO);
+  }
+
+  @Test
+  void insert_throughput_identity_vs_sequence() {
+    List<Target> targets = new ArrayList<>();
+    targets.add(new Target("h2", "jdbc:h2:mem:bench_h2;DB_CLOSE_DELAY=-1", "sa", "",
+        "org.hibernate.dialect.H2Dialect"));
+    targets.add(new Target("h2 (postgres mode)",
+        "jdbc:h2:mem:bench_pg;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1", "sa", "",
+        "org.hibernate.dialect.PostgreSQL10Dialect"));
+    String postgres = System.getProperty("benchmark.postgres.url");
+    if (postgres != null) {
+      targets.add(new Target("postgres", postgres, System.getProperty("benchmark.postgres.username", "postgres"),
+          System.getProperty("benchmark.postgres.password", ""), "org.hibernate.dialect.PostgreSQL10Dialect"));
+    }
+
+    for (Target target : targets) {
+      try (SessionFactory sessionFactory = sessionFactory(target)) {
+        // warm up both paths before measuring
+        insert(sessionFactory, IdentityRow::new, ROWS_PER_TRANSACTION);
+        insert(sessionFactory, SequenceRow::new, ROWS_PER_TRANSACTION);
+
+        double identity = insert(sessionFactory, IdentityRow::new, ROWS);
+        double sequence = insert(sessionFactory, SequenceRow::new, ROWS);
+        log.info("{}: IDENTITY {} rows/s, SEQUENCE pooled-lo {} rows/s ({}x)", target.name(),
+            Math.round(identity), Math.round(sequence), Math.round(sequence / identity * 10) / 10.0);
+
+        assertEquals(ROWS + ROWS_PER_TRANSACTION, count(sessionFactory, "bench_identity"));
+        assertEquals(ROWS + ROWS_PER_TRANSACTION, count(sessionFactory, "bench_sequence"));
+      }
+    }
+  }
+
+  private SessionFactory sessionFactory(Target target) {
+    return new Configuration()
+        .addAnnotatedClass(IdentityRow.class)
+        .addAnnotatedClass(SequenceRow.class)
+        .setProperty(AvailableSettings.URL, target.url())
+        .setProperty(AvailableSettings.USER, target.username())
+        .setProperty(AvailableSettings.PASS, target.password())
+        .setProperty(AvailableSettings.DIALECT, target.dialect())
+        .setProperty(AvailableSettings.HBM2DDL_AUTO, "create-drop")
+        .setProperty(AvailableSettings.STATEMENT_BATCH_SIZE, Integer.toString(BATCH_SIZE))
+        .setProperty(AvailableSettings.ORDER_INSERTS, "true")
+        .setProperty(AvailableSettings.PREFERRED_POOLED_OPTIMIZER, "pooled-lo")
+        .buildSessionFactory();
+  }
+
+  // returns rows inserted per second
+  private double insert(SessionFactory sessionFactory, RowFactory rows, int count) {
+    long start = System.nanoTime();
+    for (int done = 0; done < count; done += ROWS_PER_TRANSACTION) {
+      try (Session session = sessionFactory.openSession()) {
+        session.beginTransaction();
+        for (int i = 0; i < ROWS_PER_TRANSACTION; i++) {
+          session.persist(rows.create("row " + (done + i)));
+          if ((i + 1) % BATCH_SIZE == 0) {
+            session.flush();
+            session.clear();
+          }
+        }
+        session.getTransaction().commit();
+      }
+    }
+    return count / ((System.nanoTime() - start) / 1e9);
+  }
+
+  private long count(SessionFactory sessionFactory, String entity) {
+    try (Session session = sessionFactory.openSession()) {
+      return session.createQuery("select count(*) from " + entity, Long.class).getSingleResult();
+    }
+  }
+
+  interface RowFactory {
+    Object create(String name);
+  }
+}
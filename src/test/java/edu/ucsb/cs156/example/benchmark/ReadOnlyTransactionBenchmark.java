@@ -0,0 +1,157 @@
+package edu.ucsb.cs156.example.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import lombok.extern.slf4j.Slf4j;
+
+// Heap and CPU cost of loading a whole table (what /api/ucsbdates/all does)
+// in a read-write transaction versus a read-only one.  Spring's
+// @Transactional(readOnly = true) puts the Hibernate session in
+// FlushMode.MANUAL and default read-only mode, which is reproduced here on
+// a plain Session so that nothing else is measured:
+//   - read-write keeps a snapshot of every loaded row and dirty-checks all
+//     of them when the transaction commits
+//   - read-only keeps no snapshots and skips the flush
+// Allocated bytes and CPU time are per thread (com.sun.management.ThreadMXBean);
+// retained heap is measured after a GC while the rows are still in the session.
+//
+// Not part of the normal build:  mvn test -P benchmark
+
+@Slf4j
+@Tag("benchmark")
+class ReadOnlyTransactionBenchmark {
+
+  static final int ROWS = 100_000;
+  static final int ROUNDS = 5;
+  static final int BATCH_SIZE = 50;
+
+  static final com.sun.management.ThreadMXBean threads =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+  static final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+  record Cost(long allocated, long cpuNanos, long retained) {
+    Cost plus(Cost other) {
+      return new Cost(allocated + other.allocated, cpuNanos + other.cpuNanos, retained + other.retained);
+    }
+  }
+
+  @BeforeAll
+  static void quiet() {
+    // outside Spring Boot logback defaults to DEBUG, which would dominate the timings
+    ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.INFO);
+  }
+
+  @Test
+  void load_all_read_write_vs_read_only() {
+    try (SessionFactory sessionFactory = sessionFactory()) {
+      populate(sessionFactory);
+
+      // warm up both paths before measuring
+      loadAll(sessionFactory, false);
+      loadAll(sessionFactory, true);
+
+      Cost readWrite = new Cost(0, 0, 0);
+      Cost readOnly = new Cost(0, 0, 0);
+      for (int round = 0; round < ROUNDS; round++) {
+        readWrite = readWrite.plus(loadAll(sessionFactory, false));
+        readOnly = readOnly.plus(loadAll(sessionFactory, true));
+      }
+
+      log.info("{} rows, mean of {} rounds", ROWS, ROUNDS);
+      log.info("read-write: allocated {} MB, cpu {} ms, retained {} MB",
+          mb(readWrite.allocated() / ROUNDS), ms(readWrite.cpuNanos() / ROUNDS), mb(readWrite.retained() / ROUNDS));
+      log.info("read-only:  allocated {} MB, cpu {} ms, retained {} MB",
+          mb(readOnly.allocated() / ROUNDS), ms(readOnly.cpuNanos() / ROUNDS), mb(readOnly.retained() / ROUNDS));
+      log.info("read-only saves {} MB allocated, {} ms cpu and {} MB retained per request",
+          mb((readWrite.allocated() - readOnly.allocated()) / ROUNDS),
+          ms((readWrite.cpuNanos() - readOnly.cpuNanos()) / ROUNDS),
+          mb((readWrite.retained() - readOnly.retained()) / ROUNDS));
+    }
+  }
+
+  private SessionFactory sessionFactory() {
+    return new Configuration()
+        .addAnnotatedClass(UCSBDate.class)
+        .setProperty(AvailableSettings.URL, "jdbc:h2:mem:bench_readonly;DB_CLOSE_DELAY=-1")
+        .setProperty(AvailableSettings.USER, "sa")
+        .setProperty(AvailableSettings.PASS, "")
+        .setProperty(AvailableSettings.DIALECT, "org.hibernate.dialect.H2Dialect")
+        .setProperty(AvailableSettings.HBM2DDL_AUTO, "create-drop")
+        .setProperty(AvailableSettings.STATEMENT_BATCH_SIZE, Integer.toString(BATCH_SIZE))
+        .setProperty(AvailableSettings.STATEMENT_FETCH_SIZE, "200")
+        .setProperty(AvailableSettings.PREFERRED_POOLED_OPTIMIZER, "pooled-lo")
+        .buildSessionFactory();
+  }
+
+  private void populate(SessionFactory sessionFactory) {
+    LocalDateTime start = LocalDateTime.parse("2022-01-03T00:00:00");
+    try (Session session = sessionFactory.openSession()) {
+      session.beginTransaction();
+      for (int i = 0; i < ROWS; i++) {
+        session.persist(UCSBDate.builder()
+            .quarterYYYYQ("2022" + (i % 4 + 1))
+            .name("date " + i)
+            .localDateTime(start.plusHours(i))
+            .build());
+        if ((i + 1) % BATCH_SIZE == 0) {
+          session.flush();
+          session.clear();
+        }
+      }
+      session.getTransaction().commit();
+    }
+  }
+
+  // one /all request: open, load every row, commit; the rows stay in the
+  // session until it closes, as they would until the response is written
+  private Cost loadAll(SessionFactory sessionFactory, boolean readOnly) {
+    System.gc();
+    long heapBefore = memory.getHeapMemoryUsage().getUsed();
+    long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+    long cpuBefore = threads.getCurrentThreadCpuTime();
+    long retained;
+    try (Session session = sessionFactory.openSession()) {
+      if (readOnly) {
+        session.setDefaultReadOnly(true);
+        session.setHibernateFlushMode(FlushMode.MANUAL);
+      }
+      session.beginTransaction();
+      List<UCSBDate> rows = session.createQuery("from ucsbdates", UCSBDate.class).list();
+      session.getTransaction().commit();
+      long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+      long cpu = threads.getCurrentThreadCpuTime() - cpuBefore;
+
+      System.gc();
+      retained = memory.getHeapMemoryUsage().getUsed() - heapBefore;
+      assertEquals(ROWS, rows.size());
+      return new Cost(allocated, cpu, retained);
+    }
+  }
+
+  private static long mb(long bytes) {
+    return Math.round(bytes / 1024.0 / 1024.0);
+  }
+
+  private static long ms(long nanos) {
+    return Math.round(nanos / 1e6);
+  }
+}
@@ -0,0 +1,102 @@
+package edu.ucsb.cs156.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import edu.ucsb.cs156.example.services.TableVersionService;
+
+// A primary and a replica that are separate H2 databases, so the replica
+// only has what a test copies to it: it is as far behind as the test says.
+
+@DataJpaTest(properties = {
+    "spring.datasource.url=" + LaggingReplicaTests.PRIMARY_URL,
+    "app.datasource.replica.url=" + LaggingReplicaTests.REPLICA_URL })
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ ReplicaDataSourceConfig.class, SecondLevelCacheConfig.class, TransactionManagerConfig.class,
+    TableVersionService.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class LaggingReplicaTests {
+
+  static final String PRIMARY_URL = "jdbc:h2:mem:lagging_primary;DB_CLOSE_DELAY=-1";
+  static final String REPLICA_URL = "jdbc:h2:mem:lagging_replica;DB_CLOSE_DELAY=-1";
+
+  @Autowired
+  UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
+
+  @Autowired
+  PlatformTransactionManager transactionManager;
+
+  @Autowired
+  @Qualifier("replicaDataSource")
+  DataSource replicaDataSource;
+
+  JdbcTemplate replica;
+
+  @BeforeEach
+  void setup() {
+    replica = new JdbcTemplate(replicaDataSource);
+    replica.execute("CREATE TABLE IF NOT EXISTS ucsbdiningcommons (code VARCHAR(255) PRIMARY KEY,"
+        + " has_dining_cam BOOLEAN NOT NULL, has_sack_meal BOOLEAN NOT NULL, has_take_out_meal BOOLEAN NOT NULL,"
+        + " latitude DOUBLE, longitude DOUBLE, name VARCHAR(255), version BIGINT NOT NULL DEFAULT 0)");
+    // both databases have the row as first saved
+    ucsbDiningCommonsRepository.save(commons("De La Guerra"));
+    replica.update("INSERT INTO ucsbdiningcommons VALUES ('de-la-guerra', TRUE, FALSE, FALSE, 34.41, -119.85,"
+        + " 'De La Guerra', 0)");
+    // then the primary takes a write the replica has not replayed yet
+    ucsbDiningCommonsRepository.updateById("de-la-guerra", null, commons("De La Guerra Commons"));
+  }
+
+  @AfterEach
+  void cleanup() {
+    ReplicaRoutingDataSource.readFromPrimary(false);
+    ucsbDiningCommonsRepository.deleteAll();
+    replica.execute("DELETE FROM ucsbdiningcommons");
+  }
+
+  private static UCSBDiningCommons commons(String name) {
+    return UCSBDiningCommons.builder()
+        .code("de-la-guerra")
+        .name(name)
+        .hasDiningCam(true)
+        .latitude(34.41)
+        .longitude(-119.85)
+        .build();
+  }
+
+  private String nameOnThePrimary() {
+    return new TransactionTemplate(transactionManager)
+        .execute(status -> ucsbDiningCommonsRepository.findById("de-la-guerra").get().getName());
+  }
+
+  @Test
+  void a_replica_read_does_not_put_its_stale_row_in_the_second_level_cache() {
+    // read-only: from the replica, which is behind
+    assertEquals("De La Guerra", ucsbDiningCommonsRepository.findById("de-la-guerra").get().getName());
+
+    assertEquals("De La Guerra Commons", nameOnThePrimary());
+  }
+
+  @Test
+  void reads_for_a_version_tagged_response_go_to_the_primary() {
+    ReplicaRoutingDataSource.readFromPrimary(true);
+
+    assertEquals("De La Guerra Commons", ucsbDiningCommonsRepository.findById("de-la-guerra").get().getName());
+  }
+}
@@ -0,0 +1,107 @@
+package edu.ucsb.cs156.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+class ReplicaRoutingDataSourceTests {
+
+  DataSource primary = database("primary");
+  DataSource replica = database("replica");
+  AtomicBoolean replicaUsable = new AtomicBoolean(true);
+
+  ReplicaRoutingDataSource routing;
+  JdbcTemplate jdbcTemplate;
+  TransactionTemplate transactions;
+
+  @BeforeEach
+  void setup() {
+    routing = new ReplicaRoutingDataSource(primary, replica, replicaUsable::get);
+    DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+    jdbcTemplate = new JdbcTemplate(dataSource);
+    transactions = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+  }
+
+  @Test
+  void read_only_transactions_go_to_the_replica() {
+    transactions.setReadOnly(true);
+
+    assertEquals("replica", transactions.execute(status -> whoAmI()));
+    assertEquals(1, routing.replicaConnectionCount());
+  }
+
+  @Test
+  void read_write_transactions_and_work_outside_transactions_go_to_the_primary() {
+    assertEquals("primary", transactions.execute(status -> whoAmI()));
+    assertEquals("primary", whoAmI());
+    assertEquals(0, routing.replicaConnectionCount());
+  }
+
+  @Test
+  void read_only_transactions_go_to_the_primary_while_reads_are_pinned_to_it() {
+    transactions.setReadOnly(true);
+    ReplicaRoutingDataSource.readFromPrimary(true);
+    try {
+      assertEquals("primary", transactions.execute(status -> whoAmI()));
+    } finally {
+      ReplicaRoutingDataSource.readFromPrimary(false);
+    }
+    assertEquals("replica", transactions.execute(status -> whoAmI()));
+    assertEquals(0, routing.fallbackCount());
+  }
+
+  @Test
+  void read_only_transactions_fall_back_to_the_primary_when_the_replica_is_unusable() {
+    transactions.setReadOnly(true);
+    replicaUsable.set(false);
+
+    assertEquals("primary", transactions.execute(status -> whoAmI()));
+    assertEquals(1, routing.fallbackCount());
+  }
+
+  @Test
+  void monitor_finds_a_reachable_replica_usable() {
+    ReplicaLagMonitor monitor = new ReplicaLagMonitor(replica, 5000, 1000);
+
+    monitor.check();
+
+    assertTrue(monitor.getAsBoolean());
+    assertEquals(0, monitor.lagMillis());
+  }
+
+  @Test
+  void monitor_finds_an_unreachable_replica_unusable() {
+    ReplicaLagMonitor down = new ReplicaLagMonitor(
+        new DriverManagerDataSource("jdbc:h2:tcp://localhost:1/nowhere", "sa", ""), 5000, 1000);
+    down.check();
+
+    assertFalse(down.getAsBoolean());
+    assertEquals(-1, down.lagMillis());
+  }
+
+  private String whoAmI() {
+    return jdbcTemplate.queryForObject("SELECT name FROM whoami", String.class);
+  }
+
+  private static DataSource database(String name) {
+    DataSource dataSource = new DriverManagerDataSource(
+        "jdbc:h2:mem:routing_" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+    JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+    jdbc.execute("CREATE TABLE IF NOT EXISTS whoami (name VARCHAR(16))");
+    jdbc.execute("DELETE FROM whoami");
+    jdbc.update("INSERT INTO whoami VALUES (?)", name);
+    return dataSource;
+  }
+}
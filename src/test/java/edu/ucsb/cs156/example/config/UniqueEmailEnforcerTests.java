@@ -0,0 +1,82 @@
+package edu.ucsb.cs156.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+class UniqueEmailEnforcerTests {
+
+  JdbcTemplate jdbcTemplate = new JdbcTemplate(
+      new DriverManagerDataSource("jdbc:h2:mem:unique_email;DB_CLOSE_DELAY=-1", "sa", ""));
+  UniqueEmailEnforcer enforcer = new UniqueEmailEnforcer();
+
+  @BeforeEach
+  void setup() {
+    jdbcTemplate.execute("DROP TABLE IF EXISTS users");
+    jdbcTemplate.execute("CREATE TABLE users (id BIGINT PRIMARY KEY, email VARCHAR(255), admin BOOLEAN DEFAULT FALSE)");
+    enforcer.jdbcTemplate = jdbcTemplate;
+  }
+
+  @Test
+  void test_the_constraint_is_added_when_there_are_no_duplicates() {
+    jdbcTemplate.update("INSERT INTO users (id, email) VALUES (1, 'a@ucsb.edu'), (2, 'b@ucsb.edu'), (3, NULL),"
+        + " (4, NULL)");
+    assertFalse(enforcer.hasUniqueEmailIndex());
+
+    enforcer.enforce();
+
+    assertEquals(List.of(1L, 2L, 3L, 4L), jdbcTemplate.queryForList("SELECT id FROM users ORDER BY id", Long.class));
+    assertTrue(enforcer.hasUniqueEmailIndex());
+    assertThrows(DataIntegrityViolationException.class,
+        () -> jdbcTemplate.update("INSERT INTO users (id, email) VALUES (6, 'b@ucsb.edu')"));
+  }
+
+  @Test
+  void test_duplicates_fail_startup_and_are_left_in_place() {
+    jdbcTemplate.update("INSERT INTO users (id, email) VALUES (1, 'a@ucsb.edu'), (2, 'b@ucsb.edu'), (3, 'a@ucsb.edu'),"
+        + " (4, NULL), (5, NULL)");
+
+    IllegalStateException e = assertThrows(IllegalStateException.class, () -> enforcer.enforce());
+
+    assertTrue(e.getMessage().contains("a@ucsb.edu=[1, 3]"), e.getMessage());
+    assertFalse(e.getMessage().contains("b@ucsb.edu"), e.getMessage());
+    assertEquals(List.of(1L, 2L, 3L, 4L, 5L), jdbcTemplate.queryForList("SELECT id FROM users ORDER BY id", Long.class));
+    assertFalse(enforcer.hasUniqueEmailIndex());
+  }
+
+  @Test
+  void test_an_explicit_merge_keeps_the_oldest_row_with_admin_from_any_duplicate() {
+    jdbcTemplate.update("INSERT INTO users (id, email, admin) VALUES (1, 'a@ucsb.edu', FALSE), (2, 'b@ucsb.edu', FALSE),"
+        + " (3, 'a@ucsb.edu', TRUE), (4, 'b@ucsb.edu', FALSE), (5, NULL, FALSE), (6, NULL, FALSE)");
+    enforcer.mergeDuplicateEmails = true;
+
+    enforcer.enforce();
+
+    assertEquals(List.of(1L, 2L, 5L, 6L), jdbcTemplate.queryForList("SELECT id FROM users ORDER BY id", Long.class));
+    assertEquals(List.of(true, false),
+        jdbcTemplate.queryForList("SELECT admin FROM users WHERE id IN (1, 2) ORDER BY id", Boolean.class));
+    assertTrue(enforcer.hasUniqueEmailIndex());
+    assertThrows(DataIntegrityViolationException.class,
+        () -> jdbcTemplate.update("INSERT INTO users (id, email) VALUES (7, 'b@ucsb.edu')"));
+  }
+
+  @Test
+  void test_an_existing_constraint_is_left_alone() {
+    jdbcTemplate.execute("ALTER TABLE users ADD CONSTRAINT users_email_unique UNIQUE (email)");
+    jdbcTemplate.update("INSERT INTO users (id, email) VALUES (1, 'a@ucsb.edu')");
+
+    enforcer.enforce();
+
+    assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Integer.class));
+    assertTrue(enforcer.hasUniqueEmailIndex());
+  }
+}
@@ -1,5 +1,10 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.errors.UnknownFieldException;
+import java.util.LinkedHashMap;
+import edu.ucsb.cs156.example.services.FieldSelectionService;
+import edu.ucsb.cs156.example.models.ArticleSummary;
+import java.util.stream.Stream;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
@@ -9,6 +14,10 @@ import edu.ucsb.cs156.example.repositories.ArticleRepository;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Map;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import org.springframework.data.domain.PageRequest;
+import java.util.List;
+import edu.ucsb.cs156.example.models.BulkResult;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
@@ -28,6 +37,7 @@ import java.util.Optional;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -39,6 +49,9 @@ public class ArticleControllerTests extends ControllerTestCase {
     @MockBean
     ArticleRepository articleRepository;
 
+    @MockBean
+    FieldSelectionService fieldSelection;
+
     @MockBean
     UserRepository userRepository;
 
@@ -156,20 +169,66 @@ public class ArticleControllerTests extends ControllerTestCase {
             ArrayList<Article> expectedArticles = new ArrayList<>();
             expectedArticles.addAll(Arrays.asList(article1, article2));
 
-            when(articleRepository.findAll()).thenReturn(expectedArticles);
+            when(articleRepository.streamAllByOrderByIdAsc()).thenReturn(expectedArticles.stream());
 
             // act
             MvcResult response = mockMvc.perform(get("/api/Article/all"))
-                            .andExpect(status().isOk()).andReturn();
+                            .andExpect(request().asyncStarted()).andReturn();
+            mockMvc.perform(asyncDispatch(response)).andExpect(status().isOk());
 
             // assert
 
-            verify(articleRepository, times(1)).findAll();
+            verify(articleRepository, times(1)).streamAllByOrderByIdAsc();
             String expectedJson = mapper.writeValueAsString(expectedArticles);
             String responseString = response.getResponse().getContentAsString();
             assertEquals(expectedJson, responseString);
     }
 
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_selected_fields_of_all_articles() throws Exception {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", 1);
+            row.put("title", "no");
+            when(fieldSelection.fields(eq(Article.class), eq("id,title"))).thenReturn(List.of("id", "title"));
+            when(fieldSelection.stream(eq(Article.class), eq(List.of("id", "title")))).thenReturn(Stream.of(row));
+
+            MvcResult response = mockMvc.perform(get("/api/Article/all?fields=id,title"))
+                            .andExpect(request().asyncStarted()).andReturn();
+            mockMvc.perform(asyncDispatch(response)).andExpect(status().isOk());
+
+            verify(articleRepository, times(0)).streamAllByOrderByIdAsc();
+            assertEquals("[{\"id\":1,\"title\":\"no\"}]", response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void get_all_with_an_unknown_field_is_bad_request() throws Exception {
+            when(fieldSelection.fields(eq(Article.class), eq("id,password")))
+                            .thenThrow(new UnknownFieldException(Article.class, "password", List.of("id", "title")));
+
+            MvcResult response = mockMvc.perform(get("/api/Article/all?fields=id,password"))
+                            .andExpect(status().isBadRequest()).andReturn();
+
+            Map<String, Object> json = responseToJson(response);
+            assertEquals("UnknownFieldException", json.get("type"));
+            assertEquals("Article has no field password; known fields are id, title", json.get("message"));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_article_summaries() throws Exception {
+            ArticleSummary summary = ArticleSummary.builder().id(1).title("no").explanation("short").build();
+            when(articleRepository.streamSummaries()).thenReturn(Stream.of(summary));
+
+            MvcResult response = mockMvc.perform(get("/api/Article/summary"))
+                            .andExpect(request().asyncStarted()).andReturn();
+            mockMvc.perform(asyncDispatch(response)).andExpect(status().isOk());
+
+            verify(articleRepository, times(1)).streamSummaries();
+            assertEquals(mapper.writeValueAsString(List.of(summary)), response.getResponse().getContentAsString());
+    }
+
     @WithMockUser(roles = { "ADMIN", "USER" })
     @Test
     public void an_admin_user_can_post_a_new_article() throws Exception {
@@ -205,17 +264,7 @@ public class ArticleControllerTests extends ControllerTestCase {
     public void admin_can_delete_a_article() throws Exception {
             // arrange
 
-            LocalDate ld = LocalDate.parse("2022-01-03");
-
-            Article article = Article.builder()
-                            .dateAdded(ld)
-                            .email("asd@ucsb.edu")
-                            .explanation("no")
-                            .url("no")
-                            .title("no")
-                            .build();
-
-            when(articleRepository.findById(eq(15L))).thenReturn(Optional.of(article));
+            when(articleRepository.removeById(eq(15L))).thenReturn(1);
 
             // act
             MvcResult response = mockMvc.perform(
@@ -224,8 +273,7 @@ public class ArticleControllerTests extends ControllerTestCase {
                             .andExpect(status().isOk()).andReturn();
 
             // assert
-            verify(articleRepository, times(1)).findById(15L);
-            verify(articleRepository, times(1)).delete(any());
+            verify(articleRepository, times(1)).removeById(15L);
 
             Map<String, Object> json = responseToJson(response);
             assertEquals("Article with id 15 deleted", json.get("message"));
@@ -237,7 +285,7 @@ public class ArticleControllerTests extends ControllerTestCase {
                     throws Exception {
             // arrange
 
-            when(articleRepository.findById(eq(15L))).thenReturn(Optional.empty());
+            when(articleRepository.removeById(eq(15L))).thenReturn(0);
 
             // act
             MvcResult response = mockMvc.perform(
@@ -246,7 +294,7 @@ public class ArticleControllerTests extends ControllerTestCase {
                             .andExpect(status().isNotFound()).andReturn();
 
             // assert
-            verify(articleRepository, times(1)).findById(15L);
+            verify(articleRepository, times(1)).removeById(15L);
             Map<String, Object> json = responseToJson(response);
             assertEquals("Article with id 15 not found", json.get("message"));
     }
@@ -256,18 +304,10 @@ public class ArticleControllerTests extends ControllerTestCase {
     public void admin_can_edit_an_existing_article() throws Exception {
             // arrange
 
-            LocalDate ld1 = LocalDate.parse("2022-01-03");
             LocalDate ld2 = LocalDate.parse("2022-01-03");
 
-            Article articleOrig = Article.builder()
-                            .dateAdded(ld1)
-                            .email("asd@ucsb.edu")
-                            .explanation("no")
-                            .url("no")
-                            .title("no")
-                            .build();
-
             Article articleEdited =Article.builder()
+                            .id(67L)
                             .dateAdded(ld2)
                             .email("dsa@ucsb.edu")
                             .explanation("yes")
@@ -277,7 +317,9 @@ public class ArticleControllerTests extends ControllerTestCase {
 
             String requestBody = mapper.writeValueAsString(articleEdited);
 
-            when(articleRepository.findById(eq(67L))).thenReturn(Optional.of(articleOrig));
+            when(articleRepository.updateById(eq(67L), isNull(), eq(articleEdited))).thenReturn(1);
+
+            when(articleRepository.findById(eq(67L))).thenReturn(Optional.of(articleEdited));
 
             // act
             MvcResult response = mockMvc.perform(
@@ -289,8 +331,7 @@ public class ArticleControllerTests extends ControllerTestCase {
                             .andExpect(status().isOk()).andReturn();
 
             // assert
-            verify(articleRepository, times(1)).findById(67L);
-            verify(articleRepository, times(1)).save(articleEdited); // should be saved with correct user
+            verify(articleRepository, times(1)).updateById(67L, null, articleEdited);
             String responseString = response.getResponse().getContentAsString();
             assertEquals(requestBody, responseString);
     }
@@ -312,7 +353,7 @@ public class ArticleControllerTests extends ControllerTestCase {
 
             String requestBody = mapper.writeValueAsString(article);
 
-            when(articleRepository.findById(eq(67L))).thenReturn(Optional.empty());
+            when(articleRepository.updateById(eq(67L), isNull(), any())).thenReturn(0);
 
             // act
             MvcResult response = mockMvc.perform(
@@ -324,9 +365,136 @@ public class ArticleControllerTests extends ControllerTestCase {
                             .andExpect(status().isNotFound()).andReturn();
 
             // assert
-            verify(articleRepository, times(1)).findById(67L);
+            verify(articleRepository, times(1)).updateById(eq(67L), isNull(), any());
             Map<String, Object> json = responseToJson(response);
             assertEquals("Article with id 67 not found", json.get("message"));
 
     }
-}
\ No newline at end of file
+
+    // Tests for /api/Article/page
+
+    @Test
+    public void logged_out_users_cannot_get_a_page() throws Exception {
+        mockMvc.perform(get("/api/Article/page"))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void full_page_returns_the_last_id_as_next() throws Exception {
+        // arrange
+        Article first = Article.builder().id(2L).build();
+        Article second = Article.builder().id(3L).build();
+        List<Article> rows = new ArrayList<>(Arrays.asList(first, second));
+        when(articleRepository.findByIdGreaterThanOrderByIdAsc(eq(1L), eq(PageRequest.of(0, 2)))).thenReturn(rows);
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/Article/page?after=1&limit=2"))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(articleRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(1L), eq(PageRequest.of(0, 2)));
+        String expectedJson = mapper.writeValueAsString(new KeysetPage<>(rows, second.getId()));
+        assertEquals(expectedJson, response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void short_page_has_no_next_and_defaults_apply() throws Exception {
+        // arrange
+        List<Article> rows = new ArrayList<>(Arrays.asList(Article.builder().id(1L).build()));
+        when(articleRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, ApiController.DEFAULT_PAGE_LIMIT)))).thenReturn(rows);
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/Article/page"))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        String expectedJson = mapper.writeValueAsString(new KeysetPage<>(rows, null));
+        assertEquals(expectedJson, response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void page_limit_is_capped() throws Exception {
+        when(articleRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_LIMIT)))).thenReturn(new ArrayList<>());
+
+        mockMvc.perform(get("/api/Article/page?limit=5000"))
+                .andExpect(status().isOk());
+
+        verify(articleRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_LIMIT)));
+    }
+
+    // Tests for /api/Article/bulk
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_regular_users_cannot_post_bulk() throws Exception {
+        mockMvc.perform(post("/api/Article/bulk").with(csrf())
+                .contentType(MediaType.APPLICATION_JSON).content("[]"))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_can_post_bulk() throws Exception {
+        // arrange
+        List<Article> incoming = Arrays.asList(Article.builder().id(9L).title("first").build(), Article.builder().id(9L).title("second").build());
+        List<Article> unsaved = Arrays.asList(Article.builder().id(0L).title("first").build(), Article.builder().id(0L).title("second").build());
+        List<Article> saved = Arrays.asList(Article.builder().id(1L).title("first").build(), Article.builder().id(2L).title("second").build());
+        when(articleRepository.saveAll(eq(unsaved))).thenReturn(saved);
+
+        // act
+        MvcResult response = mockMvc.perform(post("/api/Article/bulk").with(csrf())
+                .contentType(MediaType.APPLICATION_JSON).content(mapper.writeValueAsString(incoming)))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        String expectedJson = mapper.writeValueAsString(Arrays.asList(
+                new BulkResult(0, 1L, "created", null),
+                new BulkResult(1, 2L, "created", null)));
+        assertEquals(expectedJson, response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_can_update_bulk_and_missing_rows_are_reported() throws Exception {
+        // arrange
+        Article stored = Article.builder().id(1L).title("old").build();
+        Article edited = Article.builder().id(1L).title("new").build();
+        Article missing = Article.builder().id(9L).title("new").build();
+        when(articleRepository.findAllById(eq(Arrays.asList(1L, 9L)))).thenReturn(Arrays.asList(stored));
+
+        // act
+        MvcResult response = mockMvc.perform(put("/api/Article/bulk").with(csrf())
+                .contentType(MediaType.APPLICATION_JSON).content(mapper.writeValueAsString(Arrays.asList(edited, missing))))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(articleRepository, times(1)).saveAll(eq(Arrays.asList(edited)));
+        String expectedJson = mapper.writeValueAsString(Arrays.asList(
+                new BulkResult(0, 1L, "updated", null),
+                new BulkResult(1, 9L, "notFound", "Article with id 9 not found")));
+        assertEquals(expectedJson, response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_can_delete_bulk_and_missing_rows_are_reported() throws Exception {
+        // arrange
+        Article stored = Article.builder().id(1L).title("old").build();
+        when(articleRepository.findAllById(eq(Arrays.asList(1L, 9L)))).thenReturn(Arrays.asList(stored));
+
+        // act
+        MvcResult response = mockMvc.perform(delete("/api/Article/bulk").with(csrf())
+                .contentType(MediaType.APPLICATION_JSON).content(mapper.writeValueAsString(Arrays.asList(1L, 9L))))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(articleRepository, times(1)).deleteAll(eq(Arrays.asList(stored)));
+        String expectedJson = mapper.writeValueAsString(Arrays.asList(
+                new BulkResult(0, 1L, "deleted", null),
+                new BulkResult(1, 9L, "notFound", "Article with id 9 not found")));
+        assertEquals(expectedJson, response.getResponse().getContentAsString());
+    }
+}
@@ -1,5 +1,10 @@
 package edu.ucsb.cs156.example.controllers;
 
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.fasterxml.jackson.databind.JsonNode;
+import edu.ucsb.cs156.example.services.FieldSelectionService;
+import edu.ucsb.cs156.example.models.HelpRequestSummary;
+import java.util.stream.Stream;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import lombok.With;
@@ -10,6 +15,10 @@ import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Map;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import org.springframework.data.domain.PageRequest;
+import java.util.List;
+import edu.ucsb.cs156.example.models.BulkResult;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
@@ -28,6 +37,7 @@ import java.time.LocalDateTime;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -39,6 +49,9 @@ public class HelpRequestControllerTests extends ControllerTestCase{
     @MockBean 
     HelpRequestRepository helpRequestRepository; 
 
+    @MockBean
+    FieldSelectionService fieldSelection;
+
     @MockBean
     UserRepository userRepository; 
 
@@ -156,20 +169,58 @@ public class HelpRequestControllerTests extends ControllerTestCase{
         ArrayList<HelpRequest> expectedRequests = new ArrayList<>(); 
         expectedRequests.addAll(Arrays.asList(request,request1)); 
 
-        when(helpRequestRepository.findAll()).thenReturn(expectedRequests); 
+        when(helpRequestRepository.streamAllByOrderByIdAsc()).thenReturn(expectedRequests.stream()); 
 
         //act
         MvcResult response = mockMvc.perform(get("/api/helprequest/all"))
-                    .andExpect(status().isOk()).andReturn(); 
+                    .andExpect(request().asyncStarted()).andReturn(); 
+        mockMvc.perform(asyncDispatch(response)).andExpect(status().isOk());
         
         //assert 
 
-        verify(helpRequestRepository,times(1)).findAll(); 
+        verify(helpRequestRepository, times(1)).streamAllByOrderByIdAsc(); 
         String expectedJson = mapper.writeValueAsString(expectedRequests); 
         String responseString = response.getResponse().getContentAsString(); 
         assertEquals(expectedJson,responseString); 
     }
 
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void all_is_sent_as_smile_when_the_client_asks_for_it() throws Exception {
+            HelpRequest helpRequest = HelpRequest.builder()
+                            .id(1L)
+                            .requesterEmail("victoriareed@ucsb.edu")
+                            .teamId("s22-4pm-4")
+                            .tableOrBreakoutRoom("table-4")
+                            .requestTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                            .explanation("help-with-team02")
+                            .build();
+            when(helpRequestRepository.streamAllByOrderByIdAsc()).thenReturn(Stream.of(helpRequest));
+
+            MvcResult response = mockMvc.perform(get("/api/helprequest/all").header("Accept", "application/x-jackson-smile"))
+                            .andExpect(request().asyncStarted()).andReturn();
+            mockMvc.perform(asyncDispatch(response))
+                            .andExpect(status().isOk())
+                            .andExpect(header().string("Content-Type", "application/x-jackson-smile"));
+
+            JsonNode expected = mapper.readTree(mapper.writeValueAsString(List.of(helpRequest)));
+            assertEquals(expected, new SmileMapper().readTree(response.getResponse().getContentAsByteArray()));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_help_request_summaries() throws Exception {
+            HelpRequestSummary summary = HelpRequestSummary.builder().id(1).teamId("s22-5pm-3").explanation("short").build();
+            when(helpRequestRepository.streamSummaries()).thenReturn(Stream.of(summary));
+
+            MvcResult response = mockMvc.perform(get("/api/helprequest/summary"))
+                            .andExpect(request().asyncStarted()).andReturn();
+            mockMvc.perform(asyncDispatch(response)).andExpect(status().isOk());
+
+            verify(helpRequestRepository, times(1)).streamSummaries();
+            assertEquals(mapper.writeValueAsString(List.of(summary)), response.getResponse().getContentAsString());
+    }
+
 
     @WithMockUser(roles = { "ADMIN", "USER" })
     @Test
@@ -205,17 +256,7 @@ public class HelpRequestControllerTests extends ControllerTestCase{
     public void admin_can_delete_a_request() throws Exception{
         //arrange
 
-        LocalDateTime ldt2 = LocalDateTime.parse("2022-03-11T00:00:00");
-        HelpRequest request = HelpRequest.builder()
-                    .requesterEmail("victoriareed@ucsb.edu")
-                    .teamId("s22-4pm-4")
-                    .tableOrBreakoutRoom("table-4")
-                    .requestTime(ldt2)
-                    .explanation("help-with-team02")
-                    .solved(false)
-                    .build();
-        
-        when(helpRequestRepository.findById(eq(1L))).thenReturn(Optional.of(request));
+        when(helpRequestRepository.removeById(eq(1L))).thenReturn(1);
 
         //act
         MvcResult response = mockMvc.perform(
@@ -224,8 +265,7 @@ public class HelpRequestControllerTests extends ControllerTestCase{
                         .andExpect(status().isOk()).andReturn(); 
         
          //assert
-         verify(helpRequestRepository,times(1)).findById(1L); 
-         verify(helpRequestRepository,times(1)).delete(any()); 
+         verify(helpRequestRepository, times(1)).removeById(1L);
 
          Map<String,Object> json = responseToJson(response); 
          assertEquals("HelpRequest with id 1 deleted", json.get("message"));
@@ -236,7 +276,7 @@ public class HelpRequestControllerTests extends ControllerTestCase{
     public void admin_tries_to_delete_non_existant_request_and_gets_right_error_message() throws Exception{
         //arrange
 
-        when(helpRequestRepository.findById(eq(4L))).thenReturn(Optional.empty()); 
+        when(helpRequestRepository.removeById(eq(4L))).thenReturn(0); 
 
         //act
         MvcResult response = mockMvc.perform(
@@ -245,7 +285,7 @@ public class HelpRequestControllerTests extends ControllerTestCase{
                         .andExpect(status().isNotFound()).andReturn(); 
         
         //assert
-        verify(helpRequestRepository,times(1)).findById(4L); 
+        verify(helpRequestRepository,times(1)).removeById(4L); 
         Map<String,Object> json = responseToJson(response); 
         assertEquals("HelpRequest with id 4 not found", json.get("message"));
     }
@@ -256,18 +296,10 @@ public class HelpRequestControllerTests extends ControllerTestCase{
         public void admin_can_edit_an_existing_request() throws Exception {
                 // arrange
 
-                LocalDateTime ldt2 = LocalDateTime.parse("2022-03-11T00:00:00");
                 LocalDateTime ldt3 = LocalDateTime.parse("2022-04-11T00:00:00");
-                HelpRequest requestOrig = HelpRequest.builder()
-                    .requesterEmail("victoriareed@ucsb.edu")
-                    .teamId("s22-4pm-4")
-                    .tableOrBreakoutRoom("table-4")
-                    .requestTime(ldt2)
-                    .explanation("help-with-team02")
-                    .solved(false)
-                    .build();
 
                 HelpRequest requestEdited = HelpRequest.builder()
+                                .id(1L)
                                 .requesterEmail("victoria@ucsb.edu")
                                 .teamId("s22-4pm")
                                 .tableOrBreakoutRoom("table-44")
@@ -278,7 +310,9 @@ public class HelpRequestControllerTests extends ControllerTestCase{
 
                 String requestBody = mapper.writeValueAsString(requestEdited);
 
-                when(helpRequestRepository.findById(eq(1L))).thenReturn(Optional.of(requestOrig));
+                when(helpRequestRepository.updateById(eq(1L), isNull(), eq(requestEdited))).thenReturn(1);
+
+                when(helpRequestRepository.findById(eq(1L))).thenReturn(Optional.of(requestEdited));
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -290,8 +324,7 @@ public class HelpRequestControllerTests extends ControllerTestCase{
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(helpRequestRepository, times(1)).findById(1L);
-                verify(helpRequestRepository, times(1)).save(requestEdited); // should be saved with updated info
+                verify(helpRequestRepository, times(1)).updateById(1L, null, requestEdited);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(requestBody, responseString);
         }
@@ -313,7 +346,7 @@ public class HelpRequestControllerTests extends ControllerTestCase{
 
                 String requestBody = mapper.writeValueAsString(requestEdited);
 
-                when(helpRequestRepository.findById(eq(1L))).thenReturn(Optional.empty());
+                when(helpRequestRepository.updateById(eq(1L), isNull(), any())).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -325,10 +358,136 @@ public class HelpRequestControllerTests extends ControllerTestCase{
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(helpRequestRepository, times(1)).findById(1L);
+                verify(helpRequestRepository, times(1)).updateById(eq(1L), isNull(), any());
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("HelpRequest with id 1 not found", json.get("message"));
 
         }
-}
 
+    // Tests for /api/helprequest/page
+
+    @Test
+    public void logged_out_users_cannot_get_a_page() throws Exception {
+        mockMvc.perform(get("/api/helprequest/page"))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void full_page_returns_the_last_id_as_next() throws Exception {
+        // arrange
+        HelpRequest first = HelpRequest.builder().id(2L).build();
+        HelpRequest second = HelpRequest.builder().id(3L).build();
+        List<HelpRequest> rows = new ArrayList<>(Arrays.asList(first, second));
+        when(helpRequestRepository.findByIdGreaterThanOrderByIdAsc(eq(1L), eq(PageRequest.of(0, 2)))).thenReturn(rows);
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/helprequest/page?after=1&limit=2"))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(helpRequestRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(1L), eq(PageRequest.of(0, 2)));
+        String expectedJson = mapper.writeValueAsString(new KeysetPage<>(rows, second.getId()));
+        assertEquals(expectedJson, response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void short_page_has_no_next_and_defaults_apply() throws Exception {
+        // arrange
+        List<HelpRequest> rows = new ArrayList<>(Arrays.asList(HelpRequest.builder().id(1L).build()));
+        when(helpRequestRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, ApiController.DEFAULT_PAGE_LIMIT)))).thenReturn(rows);
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/helprequest/page"))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        String expectedJson = mapper.writeValueAsString(new KeysetPage<>(rows, null));
+        assertEquals(expectedJson, response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void page_limit_is_capped() throws Exception {
+        when(helpRequestRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_LIMIT)))).thenReturn(new ArrayList<>());
+
+        mockMvc.perform(get("/api/helprequest/page?limit=5000"))
+                .andExpect(status().isOk());
+
+        verify(helpRequestRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_LIMIT)));
+    }
+
+    // Tests for /api/helprequest/bulk
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_regular_users_cannot_post_bulk() throws Exception {
+        mockMvc.perform(post("/api/helprequest/bulk").with(csrf())
+                .contentType(MediaType.APPLICATION_JSON).content("[]"))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_can_post_bulk() throws Exception {
+        // arrange
+        List<HelpRequest> incoming = Arrays.asList(HelpRequest.builder().id(9L).teamId("first").build(), HelpRequest.builder().id(9L).teamId("second").build());
+        List<HelpRequest> unsaved = Arrays.asList(HelpRequest.builder().id(0L).teamId("first").build(), HelpRequest.builder().id(0L).teamId("second").build());
+        List<HelpRequest> saved = Arrays.asList(HelpRequest.builder().id(1L).teamId("first").build(), HelpRequest.builder().id(2L).teamId("second").build());
+        when(helpRequestRepository.saveAll(eq(unsaved))).thenReturn(saved);
+
+        // act
+        MvcResult response = mockMvc.perform(post("/api/helprequest/bulk").with(csrf())
+                .contentType(MediaType.APPLICATION_JSON).content(mapper.writeValueAsString(incoming)))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        String expectedJson = mapper.writeValueAsString(Arrays.asList(
+                new BulkResult(0, 1L, "created", null),
+                new BulkResult(1, 2L, "created", null)));
+        assertEquals(expectedJson, response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_can_update_bulk_and_missing_rows_are_reported() throws Exception {
+        // arrange
+        HelpRequest stored = HelpRequest.builder().id(1L).teamId("old").build();
+        HelpRequest edited = HelpRequest.builder().id(1L).teamId("new").build();
+        HelpRequest missing = HelpRequest.builder().id(9L).teamId("new").build();
+        when(helpRequestRepository.findAllById(eq(Arrays.asList(1L, 9L)))).thenReturn(Arrays.asList(stored));
+
+        // act
+        MvcResult response = mockMvc.perform(put("/api/helprequest/bulk").with(csrf())
+                .contentType(MediaType.APPLICATION_JSON).content(mapper.writeValueAsString(Arrays.asList(edited, missing))))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(helpRequestRepository, times(1)).saveAll(eq(Arrays.asList(edited)));
+        String expectedJson = mapper.writeValueAsString(Arrays.asList(
+                new BulkResult(0, 1L, "updated", null),
+                new BulkResult(1, 9L, "notFound", "HelpRequest with id 9 not found")));
+        assertEquals(expectedJson, response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_can_delete_bulk_and_missing_rows_are_reported() throws Exception {
+        // arrange
+        HelpRequest stored = HelpRequest.builder().id(1L).teamId("old").build();
+        when(helpRequestRepository.findAllById(eq(Arrays.asList(1L, 9L)))).thenReturn(Arrays.asList(stored));
+
+        // act
+        MvcResult response = mockMvc.perform(delete("/api/helprequest/bulk").with(csrf())
+                .contentType(MediaType.APPLICATION_JSON).content(mapper.writeValueAsString(Arrays.asList(1L, 9L))))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(helpRequestRepository, times(1)).deleteAll(eq(Arrays.asList(stored)));
+        String expectedJson = mapper.writeValueAsString(Arrays.asList(
+                new BulkResult(0, 1L, "deleted", null),
+                new BulkResult(1, 9L, "notFound", "HelpRequest with id 9 not found")));
+        assertEquals(expectedJson, response.getResponse().getContentAsString());
+    }
+}
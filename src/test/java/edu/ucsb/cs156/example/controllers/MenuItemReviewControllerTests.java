@@ -1,5 +1,10 @@
 package edu.ucsb.cs156.example.controllers;
 
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.databind.JsonNode;
+import edu.ucsb.cs156.example.services.FieldSelectionService;
+import edu.ucsb.cs156.example.models.MenuItemReviewSummary;
+import java.util.stream.Stream;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
@@ -9,6 +14,10 @@ import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Map;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import org.springframework.data.domain.PageRequest;
+import java.util.List;
+import edu.ucsb.cs156.example.models.BulkResult;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
@@ -27,6 +36,7 @@ import java.time.LocalDateTime;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -38,6 +48,9 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
         @MockBean
         MenuItemReviewRepository menuItemReviewRepository;
 
+        @MockBean
+        FieldSelectionService fieldSelection;
+
         @MockBean
         UserRepository userRepository;
 
@@ -160,20 +173,82 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
                 ArrayList<MenuItemReview> expectedCommons = new ArrayList<>();
                 expectedCommons.addAll(Arrays.asList(review1, review2));
 
-                when(menuItemReviewRepository.findAll()).thenReturn(expectedCommons);
+                when(menuItemReviewRepository.streamAllByOrderByIdAsc()).thenReturn(expectedCommons.stream());
 
                 // act
                 MvcResult response = mockMvc.perform(get("/api/MenuItemReview/all"))
-                                .andExpect(status().isOk()).andReturn();
+                                .andExpect(request().asyncStarted()).andReturn();
+                mockMvc.perform(asyncDispatch(response)).andExpect(status().isOk());
 
                 // assert
 
-                verify(menuItemReviewRepository, times(1)).findAll();
+                verify(menuItemReviewRepository, times(1)).streamAllByOrderByIdAsc();
                 String expectedJson = mapper.writeValueAsString(expectedCommons);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
         }
 
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void all_is_sent_as_cbor_when_the_client_asks_for_it() throws Exception {
+                MenuItemReview review = MenuItemReview.builder()
+                                .id(1L)
+                                .itemId(27L)
+                                .reviewerEmail("cgaucho@ucsb.edu")
+                                .stars(3)
+                                .dateReviewed(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .comments("bland af")
+                                .build();
+                when(menuItemReviewRepository.streamAllByOrderByIdAsc()).thenReturn(Stream.of(review));
+
+                MvcResult response = mockMvc.perform(get("/api/MenuItemReview/all").header("Accept", "application/cbor"))
+                                .andExpect(request().asyncStarted()).andReturn();
+                mockMvc.perform(asyncDispatch(response))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("Content-Type", "application/cbor"));
+
+                JsonNode expected = mapper.readTree(mapper.writeValueAsString(List.of(review)));
+                assertEquals(expected, new CBORMapper().readTree(response.getResponse().getContentAsByteArray()));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_by_id_is_sent_as_cbor_when_the_client_asks_for_it() throws Exception {
+                MenuItemReview review = MenuItemReview.builder()
+                                .id(7L)
+                                .itemId(27L)
+                                .reviewerEmail("cgaucho@ucsb.edu")
+                                .stars(3)
+                                .dateReviewed(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .comments("bland af")
+                                .build();
+                when(menuItemReviewRepository.findById(eq(7L))).thenReturn(Optional.of(review));
+
+                MvcResult response = mockMvc.perform(get("/api/MenuItemReview?id=7").header("Accept", "application/cbor"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("Content-Type", "application/cbor"))
+                                .andExpect(header().string("ETag", "\"0-cbor\""))
+                                .andExpect(header().string("Vary", "Accept"))
+                                .andReturn();
+
+                JsonNode expected = mapper.readTree(mapper.writeValueAsString(review));
+                assertEquals(expected, new CBORMapper().readTree(response.getResponse().getContentAsByteArray()));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_menu_item_review_summaries() throws Exception {
+                MenuItemReviewSummary summary = MenuItemReviewSummary.builder().id(1L).itemId(2L).stars(4).comments("short").build();
+                when(menuItemReviewRepository.streamSummaries()).thenReturn(Stream.of(summary));
+
+                MvcResult response = mockMvc.perform(get("/api/MenuItemReview/summary"))
+                                .andExpect(request().asyncStarted()).andReturn();
+                mockMvc.perform(asyncDispatch(response)).andExpect(status().isOk());
+
+                verify(menuItemReviewRepository, times(1)).streamSummaries();
+                assertEquals(mapper.writeValueAsString(List.of(summary)), response.getResponse().getContentAsString());
+        }
+
         @WithMockUser(roles = { "ADMIN", "USER" })
         @Test
         public void an_admin_user_can_post_a_new_review() throws Exception {
@@ -209,17 +284,7 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
         public void admin_can_delete_a_review() throws Exception {
                 // arrange
 
-                LocalDateTime ldt = LocalDateTime.parse("2022-01-03T00:00:00");
-                MenuItemReview review = MenuItemReview.builder()
-                                .id(1L)
-                                .itemId(27L)
-                                .reviewerEmail("cgaucho@ucsb.edu")
-                                .stars(3)
-                                .dateReviewed(ldt)
-                                .comments("bland af")
-                                .build();
-
-                when(menuItemReviewRepository.findById(eq(1L))).thenReturn(Optional.of(review));
+                when(menuItemReviewRepository.removeById(eq(1L))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -228,8 +293,7 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(menuItemReviewRepository, times(1)).findById(1L);
-                verify(menuItemReviewRepository, times(1)).delete(any());
+                verify(menuItemReviewRepository, times(1)).removeById(1L);
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("MenuItemReview with id 1 deleted", json.get("message"));
@@ -241,7 +305,7 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(menuItemReviewRepository.findById(eq(2L))).thenReturn(Optional.empty());
+                when(menuItemReviewRepository.removeById(eq(2L))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -250,7 +314,7 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(menuItemReviewRepository, times(1)).findById(2L);
+                verify(menuItemReviewRepository, times(1)).removeById(2L);
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("MenuItemReview with id 2 not found", json.get("message"));
         }
@@ -260,16 +324,6 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
         public void admin_can_edit_an_existing_reviews() throws Exception {
                 // arrange
 
-                LocalDateTime ldt = LocalDateTime.parse("2022-01-03T00:00:00");
-                MenuItemReview review = MenuItemReview.builder()
-                                .id(1L)
-                                .itemId(27L)
-                                .reviewerEmail("cgaucho@ucsb.edu")
-                                .stars(3)
-                                .dateReviewed(ldt)
-                                .comments("bland af")
-                                .build();
-
                 LocalDateTime ldt2 = LocalDateTime.parse("2022-04-20T00:00:00");
                 MenuItemReview reviewEdited = MenuItemReview.builder()
                                 .id(1L)
@@ -282,7 +336,9 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(reviewEdited);
 
-                when(menuItemReviewRepository.findById(eq(1L))).thenReturn(Optional.of(review));
+                when(menuItemReviewRepository.updateById(eq(1L), isNull(), eq(reviewEdited))).thenReturn(1);
+
+                when(menuItemReviewRepository.findById(eq(1L))).thenReturn(Optional.of(reviewEdited));
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -294,8 +350,7 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(menuItemReviewRepository, times(1)).findById(1L);
-                verify(menuItemReviewRepository, times(1)).save(reviewEdited); // should be saved with updated info
+                verify(menuItemReviewRepository, times(1)).updateById(1L, null, reviewEdited);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(requestBody, responseString);
         }
@@ -317,7 +372,7 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(reviewEdited);
 
-                when(menuItemReviewRepository.findById(eq(2L))).thenReturn(Optional.empty());
+                when(menuItemReviewRepository.updateById(eq(2L), isNull(), any())).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -329,10 +384,136 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(menuItemReviewRepository, times(1)).findById(2L);
+                verify(menuItemReviewRepository, times(1)).updateById(eq(2L), isNull(), any());
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("MenuItemReview with id 2 not found", json.get("message"));
 
         }
-}
 
+        // Tests for /api/MenuItemReview/page
+
+        @Test
+        public void logged_out_users_cannot_get_a_page() throws Exception {
+                mockMvc.perform(get("/api/MenuItemReview/page"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void full_page_returns_the_last_id_as_next() throws Exception {
+                // arrange
+                MenuItemReview first = MenuItemReview.builder().id(2L).build();
+                MenuItemReview second = MenuItemReview.builder().id(3L).build();
+                List<MenuItemReview> rows = new ArrayList<>(Arrays.asList(first, second));
+                when(menuItemReviewRepository.findByIdGreaterThanOrderByIdAsc(eq(1L), eq(PageRequest.of(0, 2)))).thenReturn(rows);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/MenuItemReview/page?after=1&limit=2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(menuItemReviewRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(1L), eq(PageRequest.of(0, 2)));
+                String expectedJson = mapper.writeValueAsString(new KeysetPage<>(rows, second.getId()));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void short_page_has_no_next_and_defaults_apply() throws Exception {
+                // arrange
+                List<MenuItemReview> rows = new ArrayList<>(Arrays.asList(MenuItemReview.builder().id(1L).build()));
+                when(menuItemReviewRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, ApiController.DEFAULT_PAGE_LIMIT)))).thenReturn(rows);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/MenuItemReview/page"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                String expectedJson = mapper.writeValueAsString(new KeysetPage<>(rows, null));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void page_limit_is_capped() throws Exception {
+                when(menuItemReviewRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_LIMIT)))).thenReturn(new ArrayList<>());
+
+                mockMvc.perform(get("/api/MenuItemReview/page?limit=5000"))
+                                .andExpect(status().isOk());
+
+                verify(menuItemReviewRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_LIMIT)));
+        }
+
+        // Tests for /api/MenuItemReview/bulk
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_post_bulk() throws Exception {
+                mockMvc.perform(post("/api/MenuItemReview/bulk").with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON).content("[]"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_post_bulk() throws Exception {
+                // arrange
+                List<MenuItemReview> incoming = Arrays.asList(MenuItemReview.builder().id(9L).comments("first").build(), MenuItemReview.builder().id(9L).comments("second").build());
+                List<MenuItemReview> unsaved = Arrays.asList(MenuItemReview.builder().id(null).comments("first").build(), MenuItemReview.builder().id(null).comments("second").build());
+                List<MenuItemReview> saved = Arrays.asList(MenuItemReview.builder().id(1L).comments("first").build(), MenuItemReview.builder().id(2L).comments("second").build());
+                when(menuItemReviewRepository.saveAll(eq(unsaved))).thenReturn(saved);
+
+                // act
+                MvcResult response = mockMvc.perform(post("/api/MenuItemReview/bulk").with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON).content(mapper.writeValueAsString(incoming)))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(
+                                new BulkResult(0, 1L, "created", null),
+                                new BulkResult(1, 2L, "created", null)));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_update_bulk_and_missing_rows_are_reported() throws Exception {
+                // arrange
+                MenuItemReview stored = MenuItemReview.builder().id(1L).comments("old").build();
+                MenuItemReview edited = MenuItemReview.builder().id(1L).comments("new").build();
+                MenuItemReview missing = MenuItemReview.builder().id(9L).comments("new").build();
+                when(menuItemReviewRepository.findAllById(eq(Arrays.asList(1L, 9L)))).thenReturn(Arrays.asList(stored));
+
+                // act
+                MvcResult response = mockMvc.perform(put("/api/MenuItemReview/bulk").with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON).content(mapper.writeValueAsString(Arrays.asList(edited, missing))))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(menuItemReviewRepository, times(1)).saveAll(eq(Arrays.asList(edited)));
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(
+                                new BulkResult(0, 1L, "updated", null),
+                                new BulkResult(1, 9L, "notFound", "MenuItemReview with id 9 not found")));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_delete_bulk_and_missing_rows_are_reported() throws Exception {
+                // arrange
+                MenuItemReview stored = MenuItemReview.builder().id(1L).comments("old").build();
+                when(menuItemReviewRepository.findAllById(eq(Arrays.asList(1L, 9L)))).thenReturn(Arrays.asList(stored));
+
+                // act
+                MvcResult response = mockMvc.perform(delete("/api/MenuItemReview/bulk").with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON).content(mapper.writeValueAsString(Arrays.asList(1L, 9L))))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(menuItemReviewRepository, times(1)).deleteAll(eq(Arrays.asList(stored)));
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(
+                                new BulkResult(0, 1L, "deleted", null),
+                                new BulkResult(1, 9L, "notFound", "MenuItemReview with id 9 not found")));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+}
@@ -1,5 +1,8 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.services.FieldSelectionService;
+import edu.ucsb.cs156.example.models.RecommendationSummary;
+import java.util.stream.Stream;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
@@ -9,6 +12,10 @@ import edu.ucsb.cs156.example.repositories.RecommendationRepository;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Map;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import org.springframework.data.domain.PageRequest;
+import java.util.List;
+import edu.ucsb.cs156.example.models.BulkResult;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
@@ -27,6 +34,7 @@ import java.time.LocalDateTime;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -38,6 +46,9 @@ public class RecommendationReviewControllerTests extends ControllerTestCase {
         @MockBean
         RecommendationRepository recommendationRepository;
 
+        @MockBean
+        FieldSelectionService fieldSelection;
+
         @MockBean
         UserRepository userRepository;
 
@@ -161,20 +172,35 @@ public class RecommendationReviewControllerTests extends ControllerTestCase {
                 ArrayList<Recommendation> expectedCommons = new ArrayList<>();
                 expectedCommons.addAll(Arrays.asList(rec, rec2));
 
-                when(recommendationRepository.findAll()).thenReturn(expectedCommons);
+                when(recommendationRepository.streamAllByOrderByIdAsc()).thenReturn(expectedCommons.stream());
 
                 // act
                 MvcResult response = mockMvc.perform(get("/api/Recommendation/all"))
-                                .andExpect(status().isOk()).andReturn();
+                                .andExpect(request().asyncStarted()).andReturn();
+                mockMvc.perform(asyncDispatch(response)).andExpect(status().isOk());
 
                 // assert
 
-                verify(recommendationRepository, times(1)).findAll();
+                verify(recommendationRepository, times(1)).streamAllByOrderByIdAsc();
                 String expectedJson = mapper.writeValueAsString(expectedCommons);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
         }
 
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_recommendation_summaries() throws Exception {
+                RecommendationSummary summary = RecommendationSummary.builder().id(1).professorEmail("prof@ucsb.edu").explanation("short").build();
+                when(recommendationRepository.streamSummaries()).thenReturn(Stream.of(summary));
+
+                MvcResult response = mockMvc.perform(get("/api/Recommendation/summary"))
+                                .andExpect(request().asyncStarted()).andReturn();
+                mockMvc.perform(asyncDispatch(response)).andExpect(status().isOk());
+
+                verify(recommendationRepository, times(1)).streamSummaries();
+                assertEquals(mapper.writeValueAsString(List.of(summary)), response.getResponse().getContentAsString());
+        }
+
         @WithMockUser(roles = { "ADMIN", "USER" })
         @Test
         public void an_admin_user_can_post_a_new_commons() throws Exception {
@@ -208,18 +234,8 @@ public class RecommendationReviewControllerTests extends ControllerTestCase {
         @Test
         public void admin_can_delete_a_date() throws Exception {
                 // arrange
-                LocalDateTime time = LocalDateTime.parse("2022-01-03T00:00:00");
-                Recommendation rec = Recommendation.builder()
-                            .id(21L)
-                            .requesterEmail("cgaucho@ucsb.edu")
-                            .professorEmail("phtcon@ucsb.edu")
-                            .explanation("salt")
-                            .dateRequested(time)
-                            .dateNeeded(LocalDateTime.now())
-                            .done(true)
-                            .build();
 
-                when(recommendationRepository.findById(eq(21L))).thenReturn(Optional.of(rec));
+                when(recommendationRepository.removeById(eq(21L))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -228,8 +244,7 @@ public class RecommendationReviewControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(recommendationRepository, times(1)).findById(21L);
-                verify(recommendationRepository, times(1)).delete(any());
+                verify(recommendationRepository, times(1)).removeById(21L);
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Recommendation with id 21 deleted", json.get("message"));
@@ -241,7 +256,7 @@ public class RecommendationReviewControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(recommendationRepository.findById(eq(22L))).thenReturn(Optional.empty());
+                when(recommendationRepository.removeById(eq(22L))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -250,7 +265,7 @@ public class RecommendationReviewControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(recommendationRepository, times(1)).findById(22L);
+                verify(recommendationRepository, times(1)).removeById(22L);
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Recommendation with id 22 not found", json.get("message"));
         }
@@ -260,17 +275,6 @@ public class RecommendationReviewControllerTests extends ControllerTestCase {
         public void admin_can_edit_an_existing_commons() throws Exception {
                 // arrange
 
-                LocalDateTime time = LocalDateTime.parse("2022-01-03T00:00:00");
-                Recommendation recOrig = Recommendation.builder()
-                            .id(21L)
-                            .requesterEmail("cgaucho@ucsb.edu")
-                            .professorEmail("phtcon@ucsb.edu")
-                            .explanation("salt")
-                            .dateRequested(time)
-                            .dateNeeded(LocalDateTime.now())
-                            .done(true)
-                            .build();
-
                 LocalDateTime time2 = LocalDateTime.parse("2022-04-20T00:00:00");
                 Recommendation recEdited = Recommendation.builder()
                             .id(21L)
@@ -284,7 +288,9 @@ public class RecommendationReviewControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(recEdited);
 
-                when(recommendationRepository.findById(eq(21L))).thenReturn(Optional.of(recOrig));
+                when(recommendationRepository.updateById(eq(21L), isNull(), eq(recEdited))).thenReturn(1);
+
+                when(recommendationRepository.findById(eq(21L))).thenReturn(Optional.of(recEdited));
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -296,8 +302,7 @@ public class RecommendationReviewControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(recommendationRepository, times(1)).findById(21L);
-                verify(recommendationRepository, times(1)).save(recEdited); // should be saved with updated info
+                verify(recommendationRepository, times(1)).updateById(21L, null, recEdited);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(requestBody, responseString);
         }
@@ -319,7 +324,7 @@ public class RecommendationReviewControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(editedCommons);
 
-                when(recommendationRepository.findById(eq(21L))).thenReturn(Optional.empty());
+                when(recommendationRepository.updateById(eq(21L), isNull(), any())).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -331,9 +336,167 @@ public class RecommendationReviewControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(recommendationRepository, times(1)).findById(21L);
+                verify(recommendationRepository, times(1)).updateById(eq(21L), isNull(), any());
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Recommendation with id 21 not found", json.get("message"));
 
         }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_edit_with_stale_if_match_is_precondition_failed() throws Exception {
+                // arrange
+                Recommendation recEdited = Recommendation.builder()
+                            .id(21L)
+                            .requesterEmail("cgaucho@ucsb.edu")
+                            .professorEmail("phtcon@ucsb.edu")
+                            .explanation("salt")
+                            .done(true)
+                            .build();
+
+                when(recommendationRepository.updateById(eq(21L), eq(5L), any())).thenReturn(0);
+                when(recommendationRepository.existsById(eq(21L))).thenReturn(true);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/Recommendation?id=21")
+                                                .header("If-Match", "\"5\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(recEdited))
+                                                .with(csrf()))
+                                .andExpect(status().isPreconditionFailed()).andReturn();
+
+                // assert
+                verify(recommendationRepository, times(1)).updateById(eq(21L), eq(5L), any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Recommendation with id 21 is no longer at version 5", json.get("message"));
+        }
+
+        // Tests for /api/Recommendation/page
+
+        @Test
+        public void logged_out_users_cannot_get_a_page() throws Exception {
+                mockMvc.perform(get("/api/Recommendation/page"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void full_page_returns_the_last_id_as_next() throws Exception {
+                // arrange
+                Recommendation first = Recommendation.builder().id(2L).build();
+                Recommendation second = Recommendation.builder().id(3L).build();
+                List<Recommendation> rows = new ArrayList<>(Arrays.asList(first, second));
+                when(recommendationRepository.findByIdGreaterThanOrderByIdAsc(eq(1L), eq(PageRequest.of(0, 2)))).thenReturn(rows);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/Recommendation/page?after=1&limit=2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(recommendationRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(1L), eq(PageRequest.of(0, 2)));
+                String expectedJson = mapper.writeValueAsString(new KeysetPage<>(rows, second.getId()));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void short_page_has_no_next_and_defaults_apply() throws Exception {
+                // arrange
+                List<Recommendation> rows = new ArrayList<>(Arrays.asList(Recommendation.builder().id(1L).build()));
+                when(recommendationRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, ApiController.DEFAULT_PAGE_LIMIT)))).thenReturn(rows);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/Recommendation/page"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                String expectedJson = mapper.writeValueAsString(new KeysetPage<>(rows, null));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void page_limit_is_capped() throws Exception {
+                when(recommendationRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_LIMIT)))).thenReturn(new ArrayList<>());
+
+                mockMvc.perform(get("/api/Recommendation/page?limit=5000"))
+                                .andExpect(status().isOk());
+
+                verify(recommendationRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_LIMIT)));
+        }
+
+        // Tests for /api/Recommendation/bulk
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_post_bulk() throws Exception {
+                mockMvc.perform(post("/api/Recommendation/bulk").with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON).content("[]"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_post_bulk() throws Exception {
+                // arrange
+                List<Recommendation> incoming = Arrays.asList(Recommendation.builder().id(9L).explanation("first").build(), Recommendation.builder().id(9L).explanation("second").build());
+                List<Recommendation> unsaved = Arrays.asList(Recommendation.builder().id(0L).explanation("first").build(), Recommendation.builder().id(0L).explanation("second").build());
+                List<Recommendation> saved = Arrays.asList(Recommendation.builder().id(1L).explanation("first").build(), Recommendation.builder().id(2L).explanation("second").build());
+                when(recommendationRepository.saveAll(eq(unsaved))).thenReturn(saved);
+
+                // act
+                MvcResult response = mockMvc.perform(post("/api/Recommendation/bulk").with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON).content(mapper.writeValueAsString(incoming)))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(
+                                new BulkResult(0, 1L, "created", null),
+                                new BulkResult(1, 2L, "created", null)));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_update_bulk_and_missing_rows_are_reported() throws Exception {
+                // arrange
+                Recommendation stored = Recommendation.builder().id(1L).explanation("old").build();
+                Recommendation edited = Recommendation.builder().id(1L).explanation("new").build();
+                Recommendation missing = Recommendation.builder().id(9L).explanation("new").build();
+                when(recommendationRepository.findAllById(eq(Arrays.asList(1L, 9L)))).thenReturn(Arrays.asList(stored));
+
+                // act
+                MvcResult response = mockMvc.perform(put("/api/Recommendation/bulk").with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON).content(mapper.writeValueAsString(Arrays.asList(edited, missing))))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(recommendationRepository, times(1)).saveAll(eq(Arrays.asList(edited)));
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(
+                                new BulkResult(0, 1L, "updated", null),
+                                new BulkResult(1, 9L, "notFound", "Recommendation with id 9 not found")));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_delete_bulk_and_missing_rows_are_reported() throws Exception {
+                // arrange
+                Recommendation stored = Recommendation.builder().id(1L).explanation("old").build();
+                when(recommendationRepository.findAllById(eq(Arrays.asList(1L, 9L)))).thenReturn(Arrays.asList(stored));
+
+                // act
+                MvcResult response = mockMvc.perform(delete("/api/Recommendation/bulk").with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON).content(mapper.writeValueAsString(Arrays.asList(1L, 9L))))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(recommendationRepository, times(1)).deleteAll(eq(Arrays.asList(stored)));
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(
+                                new BulkResult(0, 1L, "deleted", null),
+                                new BulkResult(1, 9L, "notFound", "Recommendation with id 9 not found")));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
 }
@@ -0,0 +1,133 @@
+package edu.ucsb.cs156.example.controllers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MvcResult;
+
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.aop.LoggingAspect;
+import edu.ucsb.cs156.example.aop.RequestLogSampling;
+import edu.ucsb.cs156.example.aop.SqlStatementCounter;
+import edu.ucsb.cs156.example.config.ReplicaRoutingDataSource;
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.FieldSelectionService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// Streamed bodies are written on the bounded pool set up in WebMvcConfig;
+// here it has one thread and no queue.  A body reads from the primary
+// when its request does (ConditionalGetInterceptor, for @ConditionalGet),
+// and its statements count toward the handler's (LoggingAspect).
+
+@WebMvcTest(controllers = HelpRequestController.class)
+@TestPropertySource(properties = { "app.streaming.threads=1", "app.streaming.queueCapacity=0" })
+public class StreamingExecutorTests extends ControllerTestCase {
+
+  @TestConfiguration
+  @EnableAspectJAutoProxy(proxyTargetClass = true)
+  @Import({ LoggingAspect.class, RequestLogSampling.class })
+  static class MetricsConfig {
+    @Bean
+    MeterRegistry meterRegistry() {
+      return new SimpleMeterRegistry();
+    }
+  }
+
+  @Autowired
+  MeterRegistry meterRegistry;
+
+  @MockBean
+  HelpRequestRepository helpRequestRepository;
+
+  @MockBean
+  FieldSelectionService fieldSelection;
+
+  @MockBean
+  UserRepository userRepository;
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void a_stream_that_finds_the_pool_full_gets_503() throws Exception {
+    CountDownLatch writing = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    when(helpRequestRepository.streamAllByOrderByIdAsc()).then(invocation -> {
+      writing.countDown();
+      release.await(5, TimeUnit.SECONDS);
+      return Stream.<HelpRequest>empty();
+    });
+
+    MvcResult first = mockMvc.perform(get("/api/helprequest/all"))
+        .andExpect(request().asyncStarted()).andReturn();
+    assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+    mockMvc.perform(get("/api/helprequest/all"))
+        .andExpect(status().isServiceUnavailable());
+
+    release.countDown();
+    first.getAsyncResult(5000);
+    assertEquals("[]", mockMvc.perform(asyncDispatch(first)).andExpect(status().isOk())
+        .andReturn().getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void a_conditional_stream_reads_from_the_primary_on_the_streaming_thread() throws Exception {
+    AtomicBoolean primary = new AtomicBoolean();
+    when(helpRequestRepository.streamAllByOrderByIdAsc()).then(invocation -> {
+      primary.set(ReplicaRoutingDataSource.readsFromPrimary());
+      return Stream.<HelpRequest>empty();
+    });
+
+    MvcResult result = mockMvc.perform(get("/api/helprequest/all"))
+        .andExpect(request().asyncStarted()).andReturn();
+    result.getAsyncResult(5000);
+    mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+
+    assertTrue(primary.get());
+    assertFalse(ReplicaRoutingDataSource.readsFromPrimary());
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void statements_a_summary_stream_issues_are_counted_for_its_handler() throws Exception {
+    when(helpRequestRepository.streamSummaries()).then(invocation -> {
+      new SqlStatementCounter().inspect("select id, summary from helprequests");
+      return Stream.empty();
+    });
+
+    MvcResult result = mockMvc.perform(get("/api/helprequest/summary"))
+        .andExpect(request().asyncStarted()).andReturn();
+    result.getAsyncResult(5000);
+    mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+
+    DistributionSummary statements = meterRegistry.find("app.handler.statements")
+        .tag("handler", "HelpRequestController.helpRequestSummaries").summary();
+    assertEquals(1, statements.count());
+    assertEquals(1.0, statements.totalAmount());
+  }
+}
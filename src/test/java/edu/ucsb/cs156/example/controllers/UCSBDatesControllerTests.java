@@ -1,16 +1,27 @@
 package edu.ucsb.cs156.example.controllers;
 
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.UCSBDate;
 import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.services.TableVersionService;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Map;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import org.springframework.data.domain.PageRequest;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import edu.ucsb.cs156.example.models.BulkResult;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
@@ -25,9 +36,13 @@ import java.time.LocalDateTime;
 
 import java.util.Optional;
 
+import static org.hamcrest.Matchers.matchesPattern;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -36,6 +51,9 @@ import static org.mockito.Mockito.when;
 @Import(TestConfig.class)
 public class UCSBDatesControllerTests extends ControllerTestCase {
 
+        @Autowired
+        TableVersionService tableVersions;
+
         @MockBean
         UCSBDateRepository ucsbDateRepository;
 
@@ -152,7 +170,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                 ArrayList<UCSBDate> expectedDates = new ArrayList<>();
                 expectedDates.addAll(Arrays.asList(ucsbDate1, ucsbDate2));
 
-                when(ucsbDateRepository.findAll()).thenReturn(expectedDates);
+                when(ucsbDateRepository.streamAllByOrderByIdAsc()).thenReturn(expectedDates.stream());
 
                 // act
                 MvcResult response = mockMvc.perform(get("/api/ucsbdates/all"))
@@ -160,7 +178,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
 
                 // assert
 
-                verify(ucsbDateRepository, times(1)).findAll();
+                verify(ucsbDateRepository, times(1)).streamAllByOrderByIdAsc();
                 String expectedJson = mapper.writeValueAsString(expectedDates);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
@@ -199,15 +217,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
         public void admin_can_delete_a_date() throws Exception {
                 // arrange
 
-                LocalDateTime ldt1 = LocalDateTime.parse("2022-01-03T00:00:00");
-
-                UCSBDate ucsbDate1 = UCSBDate.builder()
-                                .name("firstDayOfClasses")
-                                .quarterYYYYQ("20222")
-                                .localDateTime(ldt1)
-                                .build();
-
-                when(ucsbDateRepository.findById(eq(15L))).thenReturn(Optional.of(ucsbDate1));
+                when(ucsbDateRepository.removeById(eq(15L))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -216,8 +226,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbDateRepository, times(1)).findById(15L);
-                verify(ucsbDateRepository, times(1)).delete(any());
+                verify(ucsbDateRepository, times(1)).removeById(15L);
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDate with id 15 deleted", json.get("message"));
@@ -229,7 +238,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(ucsbDateRepository.findById(eq(15L))).thenReturn(Optional.empty());
+                when(ucsbDateRepository.removeById(eq(15L))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -238,7 +247,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbDateRepository, times(1)).findById(15L);
+                verify(ucsbDateRepository, times(1)).removeById(15L);
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDate with id 15 not found", json.get("message"));
         }
@@ -248,16 +257,10 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
         public void admin_can_edit_an_existing_ucsbdate() throws Exception {
                 // arrange
 
-                LocalDateTime ldt1 = LocalDateTime.parse("2022-01-03T00:00:00");
                 LocalDateTime ldt2 = LocalDateTime.parse("2023-01-03T00:00:00");
 
-                UCSBDate ucsbDateOrig = UCSBDate.builder()
-                                .name("firstDayOfClasses")
-                                .quarterYYYYQ("20222")
-                                .localDateTime(ldt1)
-                                .build();
-
                 UCSBDate ucsbDateEdited = UCSBDate.builder()
+                                .id(67L)
                                 .name("firstDayOfFestivus")
                                 .quarterYYYYQ("20232")
                                 .localDateTime(ldt2)
@@ -265,7 +268,16 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(ucsbDateEdited);
 
-                when(ucsbDateRepository.findById(eq(67L))).thenReturn(Optional.of(ucsbDateOrig));
+                UCSBDate ucsbDateStored = UCSBDate.builder()
+                                .id(67L)
+                                .name("firstDayOfFestivus")
+                                .quarterYYYYQ("20232")
+                                .localDateTime(ldt2)
+                                .version(5)
+                                .build();
+
+                when(ucsbDateRepository.updateById(eq(67L), isNull(), eq(ucsbDateEdited))).thenReturn(1);
+                when(ucsbDateRepository.findById(eq(67L))).thenReturn(Optional.of(ucsbDateStored));
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -274,13 +286,43 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                                                 .characterEncoding("utf-8")
                                                 .content(requestBody)
                                                 .with(csrf()))
-                                .andExpect(status().isOk()).andReturn();
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "\"5-json\""))
+                                .andReturn();
 
                 // assert
-                verify(ucsbDateRepository, times(1)).findById(67L);
-                verify(ucsbDateRepository, times(1)).save(ucsbDateEdited); // should be saved with correct user
+                verify(ucsbDateRepository, times(1)).updateById(67L, null, ucsbDateEdited);
                 String responseString = response.getResponse().getContentAsString();
-                assertEquals(requestBody, responseString);
+                assertEquals(mapper.writeValueAsString(ucsbDateStored), responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void put_without_if_match_does_not_echo_the_version_in_the_request_body() throws Exception {
+                UCSBDate ucsbDateEdited = UCSBDate.builder()
+                                .id(67L)
+                                .name("firstDayOfFestivus")
+                                .version(99)
+                                .build();
+                UCSBDate ucsbDateStored = UCSBDate.builder()
+                                .id(67L)
+                                .name("firstDayOfFestivus")
+                                .version(2)
+                                .build();
+                when(ucsbDateRepository.updateById(eq(67L), isNull(), any())).thenReturn(1);
+                when(ucsbDateRepository.findById(eq(67L))).thenReturn(Optional.of(ucsbDateStored));
+
+                MvcResult response = mockMvc.perform(
+                                put("/api/ucsbdates?id=67")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .content(mapper.writeValueAsString(ucsbDateEdited))
+                                                .with(csrf()))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "\"2-json\""))
+                                .andReturn();
+
+                Map<String, Object> json = responseToJson(response);
+                assertEquals(2, json.get("version"));
         }
 
         @WithMockUser(roles = { "ADMIN", "USER" })
@@ -298,7 +340,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(ucsbEditedDate);
 
-                when(ucsbDateRepository.findById(eq(67L))).thenReturn(Optional.empty());
+                when(ucsbDateRepository.updateById(eq(67L), isNull(), any())).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -310,9 +352,427 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbDateRepository, times(1)).findById(67L);
+                verify(ucsbDateRepository, times(1)).updateById(eq(67L), isNull(), any());
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDate with id 67 not found", json.get("message"));
 
         }
+
+        // Tests for /api/ucsbdates/page
+
+        @Test
+        public void logged_out_users_cannot_get_a_page() throws Exception {
+                mockMvc.perform(get("/api/ucsbdates/page"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void full_page_returns_the_last_id_as_next() throws Exception {
+                // arrange
+                UCSBDate first = UCSBDate.builder().id(2L).build();
+                UCSBDate second = UCSBDate.builder().id(3L).build();
+                List<UCSBDate> rows = new ArrayList<>(Arrays.asList(first, second));
+                when(ucsbDateRepository.findByIdGreaterThanOrderByIdAsc(eq(1L), eq(PageRequest.of(0, 2)))).thenReturn(rows);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/page?after=1&limit=2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(1L), eq(PageRequest.of(0, 2)));
+                String expectedJson = mapper.writeValueAsString(new KeysetPage<>(rows, second.getId()));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void short_page_has_no_next_and_defaults_apply() throws Exception {
+                // arrange
+                List<UCSBDate> rows = new ArrayList<>(Arrays.asList(UCSBDate.builder().id(1L).build()));
+                when(ucsbDateRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, ApiController.DEFAULT_PAGE_LIMIT)))).thenReturn(rows);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/page"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                String expectedJson = mapper.writeValueAsString(new KeysetPage<>(rows, null));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void page_limit_is_capped() throws Exception {
+                when(ucsbDateRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_LIMIT)))).thenReturn(new ArrayList<>());
+
+                mockMvc.perform(get("/api/ucsbdates/page?limit=5000"))
+                                .andExpect(status().isOk());
+
+                verify(ucsbDateRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_LIMIT)));
+        }
+
+        // Tests for /api/ucsbdates/bulk
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_post_bulk() throws Exception {
+                mockMvc.perform(post("/api/ucsbdates/bulk").with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON).content("[]"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_post_bulk() throws Exception {
+                // arrange
+                List<UCSBDate> incoming = Arrays.asList(UCSBDate.builder().id(9L).name("first").build(), UCSBDate.builder().id(9L).name("second").build());
+                List<UCSBDate> unsaved = Arrays.asList(UCSBDate.builder().id(0L).name("first").build(), UCSBDate.builder().id(0L).name("second").build());
+                List<UCSBDate> saved = Arrays.asList(UCSBDate.builder().id(1L).name("first").build(), UCSBDate.builder().id(2L).name("second").build());
+                when(ucsbDateRepository.saveAll(eq(unsaved))).thenReturn(saved);
+
+                // act
+                MvcResult response = mockMvc.perform(post("/api/ucsbdates/bulk").with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON).content(mapper.writeValueAsString(incoming)))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(
+                                new BulkResult(0, 1L, "created", null),
+                                new BulkResult(1, 2L, "created", null)));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_update_bulk_and_missing_rows_are_reported() throws Exception {
+                // arrange
+                UCSBDate stored = UCSBDate.builder().id(1L).name("old").build();
+                UCSBDate edited = UCSBDate.builder().id(1L).name("new").build();
+                UCSBDate missing = UCSBDate.builder().id(9L).name("new").build();
+                when(ucsbDateRepository.findAllById(eq(Arrays.asList(1L, 9L)))).thenReturn(Arrays.asList(stored));
+
+                // act
+                MvcResult response = mockMvc.perform(put("/api/ucsbdates/bulk").with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON).content(mapper.writeValueAsString(Arrays.asList(edited, missing))))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(1)).saveAll(eq(Arrays.asList(edited)));
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(
+                                new BulkResult(0, 1L, "updated", null),
+                                new BulkResult(1, 9L, "notFound", "UCSBDate with id 9 not found")));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void bulk_with_an_invalid_item_is_rejected_before_anything_is_saved() throws Exception {
+                // arrange
+                UCSBDate valid = UCSBDate.builder().name("firstDayOfClasses").quarterYYYYQ("20222").build();
+                UCSBDate invalid = UCSBDate.builder().name("lastDayOfClasses").quarterYYYYQ("2022").build();
+                String requestBody = mapper.writeValueAsString(Arrays.asList(valid, invalid));
+
+                // act
+                MvcResult posted = mockMvc.perform(post("/api/ucsbdates/bulk").with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON).content(requestBody))
+                                .andExpect(status().isBadRequest()).andReturn();
+                mockMvc.perform(put("/api/ucsbdates/bulk").with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON).content(requestBody))
+                                .andExpect(status().isBadRequest());
+
+                // assert
+                verify(ucsbDateRepository, never()).saveAll(any());
+                Map<String, Object> json = responseToJson(posted);
+                assertEquals("ConstraintViolationException", json.get("type"));
+                assertEquals("postBulk.incoming[1].quarterYYYYQ: must be in the format YYYYQ, e.g. 20224 for Fall 2022",
+                                json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_delete_bulk_and_missing_rows_are_reported() throws Exception {
+                // arrange
+                UCSBDate stored = UCSBDate.builder().id(1L).name("old").build();
+                when(ucsbDateRepository.findAllById(eq(Arrays.asList(1L, 9L)))).thenReturn(Arrays.asList(stored));
+
+                // act
+                MvcResult response = mockMvc.perform(delete("/api/ucsbdates/bulk").with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON).content(mapper.writeValueAsString(Arrays.asList(1L, 9L))))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(1)).deleteAll(eq(Arrays.asList(stored)));
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(
+                                new BulkResult(0, 1L, "deleted", null),
+                                new BulkResult(1, 9L, "notFound", "UCSBDate with id 9 not found")));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        // Tests for ETag / If-None-Match
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_all_with_current_etag_is_not_modified() throws Exception {
+                when(ucsbDateRepository.streamAllByOrderByIdAsc()).thenAnswer(invocation -> Stream.empty());
+
+                MvcResult first = mockMvc.perform(get("/api/ucsbdates/all"))
+                                .andExpect(status().isOk()).andReturn();
+                String etag = first.getResponse().getHeader("ETag");
+
+                mockMvc.perform(get("/api/ucsbdates/all").header("If-None-Match", etag))
+                                .andExpect(status().isNotModified())
+                                .andExpect(header().string("ETag", etag))
+                                .andExpect(content().string(""));
+
+                verify(ucsbDateRepository, times(1)).streamAllByOrderByIdAsc();
+        }
+
+        @Test
+        public void logged_out_users_sending_a_current_etag_get_403_not_304() throws Exception {
+                String etag = tableVersions.etag("ucsbdates", MediaType.APPLICATION_JSON);
+
+                mockMvc.perform(get("/api/ucsbdates/all").header("If-None-Match", etag))
+                                .andExpect(status().is(403))
+                                .andExpect(header().doesNotExist("ETag"));
+                verify(ucsbDateRepository, times(0)).streamAllByOrderByIdAsc();
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void the_etag_of_one_format_does_not_match_another() throws Exception {
+                when(ucsbDateRepository.streamAllByOrderByIdAsc()).thenAnswer(invocation -> Stream.empty());
+
+                MvcResult json = mockMvc.perform(get("/api/ucsbdates/all"))
+                                .andExpect(status().isOk()).andReturn();
+                String etag = json.getResponse().getHeader("ETag");
+
+                MvcResult cbor = mockMvc.perform(get("/api/ucsbdates/all")
+                                .header("Accept", "application/cbor").header("If-None-Match", etag))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("Content-Type", "application/cbor"))
+                                .andReturn();
+                assertNotEquals(etag, cbor.getResponse().getHeader("ETag"));
+                assertEquals("Accept", cbor.getResponse().getHeader("Vary"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void a_write_changes_the_etag() throws Exception {
+                when(ucsbDateRepository.streamAllByOrderByIdAsc()).thenAnswer(invocation -> Stream.empty());
+                when(ucsbDateRepository.removeById(eq(15L))).thenReturn(1);
+
+                MvcResult first = mockMvc.perform(get("/api/ucsbdates/all"))
+                                .andExpect(status().isOk()).andReturn();
+                String etag = first.getResponse().getHeader("ETag");
+
+                mockMvc.perform(delete("/api/ucsbdates?id=15").with(csrf()))
+                                .andExpect(status().isOk());
+
+                MvcResult after = mockMvc.perform(get("/api/ucsbdates/all").header("If-None-Match", etag))
+                                .andExpect(status().isOk()).andReturn();
+                assertNotEquals(etag, after.getResponse().getHeader("ETag"));
+                verify(ucsbDateRepository, times(2)).streamAllByOrderByIdAsc();
+        }
+
+        // Tests for optimistic locking (@Version as ETag, If-Match on PUT)
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_by_id_sends_the_version_as_etag() throws Exception {
+                UCSBDate ucsbDate = UCSBDate.builder()
+                                .id(7L)
+                                .name("firstDayOfClasses")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .version(3)
+                                .build();
+                when(ucsbDateRepository.findById(eq(7L))).thenReturn(Optional.of(ucsbDate));
+
+                mockMvc.perform(get("/api/ucsbdates?id=7"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "\"3-json\""))
+                                .andExpect(header().string("Vary", "Accept"));
+
+                mockMvc.perform(get("/api/ucsbdates?id=7").header("If-None-Match", "\"3-json\""))
+                                .andExpect(status().isNotModified())
+                                .andExpect(content().string(""));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void a_json_etag_does_not_validate_a_cbor_copy_of_the_row() throws Exception {
+                UCSBDate ucsbDate = UCSBDate.builder()
+                                .id(7L)
+                                .name("firstDayOfClasses")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .version(3)
+                                .build();
+                when(ucsbDateRepository.findById(eq(7L))).thenReturn(Optional.of(ucsbDate));
+
+                mockMvc.perform(get("/api/ucsbdates?id=7")
+                                                .header("Accept", "application/cbor")
+                                                .header("If-None-Match", "\"3-json\""))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("Content-Type", "application/cbor"))
+                                .andExpect(header().string("ETag", "\"3-cbor\""));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void put_with_current_if_match_returns_the_next_version() throws Exception {
+                UCSBDate ucsbDateEdited = UCSBDate.builder()
+                                .id(67L)
+                                .name("firstDayOfFestivus")
+                                .quarterYYYYQ("20232")
+                                .localDateTime(LocalDateTime.parse("2023-01-03T00:00:00"))
+                                .version(3)
+                                .build();
+                when(ucsbDateRepository.updateById(eq(67L), eq(3L), eq(ucsbDateEdited))).thenReturn(1);
+
+                MvcResult response = mockMvc.perform(
+                                put("/api/ucsbdates?id=67")
+                                                .header("If-Match", "\"3-json\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .content(mapper.writeValueAsString(ucsbDateEdited))
+                                                .with(csrf()))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "\"4-json\""))
+                                .andReturn();
+
+                ucsbDateEdited.setVersion(4);
+                assertEquals(mapper.writeValueAsString(ucsbDateEdited), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void put_with_stale_if_match_is_precondition_failed() throws Exception {
+                UCSBDate ucsbDateEdited = UCSBDate.builder().id(67L).name("firstDayOfFestivus").build();
+                when(ucsbDateRepository.updateById(eq(67L), eq(2L), any())).thenReturn(0);
+                when(ucsbDateRepository.existsById(eq(67L))).thenReturn(true);
+
+                MvcResult response = mockMvc.perform(
+                                put("/api/ucsbdates?id=67")
+                                                .header("If-Match", "W/\"2\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .content(mapper.writeValueAsString(ucsbDateEdited))
+                                                .with(csrf()))
+                                .andExpect(status().isPreconditionFailed()).andReturn();
+
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("VersionConflictException", json.get("type"));
+                assertEquals("UCSBDate with id 67 is no longer at version 2", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void put_with_if_match_for_a_missing_row_is_not_found() throws Exception {
+                UCSBDate ucsbDateEdited = UCSBDate.builder().id(67L).name("firstDayOfFestivus").build();
+                when(ucsbDateRepository.updateById(eq(67L), eq(-1L), any())).thenReturn(0);
+                when(ucsbDateRepository.existsById(eq(67L))).thenReturn(false);
+
+                mockMvc.perform(
+                                put("/api/ucsbdates?id=67")
+                                                .header("If-Match", "\"ucsbdates-1-0\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .content(mapper.writeValueAsString(ucsbDateEdited))
+                                                .with(csrf()))
+                                .andExpect(status().isNotFound());
+
+                verify(ucsbDateRepository, times(1)).existsById(67L);
+        }
+
+        // Tests for the cached /all response body
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void repeated_reads_of_all_are_served_from_the_cached_body() throws Exception {
+                UCSBDate ucsbDate = UCSBDate.builder()
+                                .name("firstDayOfClasses")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .build();
+                when(ucsbDateRepository.streamAllByOrderByIdAsc()).thenAnswer(invocation -> Stream.of(ucsbDate));
+                String expectedJson = mapper.writeValueAsString(List.of(ucsbDate));
+
+                mockMvc.perform(get("/api/ucsbdates/all"))
+                                .andExpect(status().isOk())
+                                .andExpect(content().string(expectedJson));
+                mockMvc.perform(get("/api/ucsbdates/all"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("Content-Type", "application/json"))
+                                .andExpect(content().string(expectedJson));
+
+                verify(ucsbDateRepository, times(1)).streamAllByOrderByIdAsc();
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void all_is_sent_gzipped_when_the_client_accepts_it() throws Exception {
+                List<UCSBDate> dates = new ArrayList<>();
+                for (int i = 0; i < 50; i++) {
+                        dates.add(UCSBDate.builder()
+                                        .id(i)
+                                        .name("date " + i)
+                                        .quarterYYYYQ("20222")
+                                        .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00").plusDays(i))
+                                        .build());
+                }
+                when(ucsbDateRepository.streamAllByOrderByIdAsc()).thenAnswer(invocation -> dates.stream());
+                String expectedJson = mapper.writeValueAsString(dates);
+
+                MvcResult gzipped = mockMvc.perform(get("/api/ucsbdates/all").header("Accept-Encoding", "gzip, deflate"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("Content-Encoding", "gzip"))
+                                .andExpect(header().stringValues("Vary", "Accept", "Accept-Encoding"))
+                                .andReturn();
+                mockMvc.perform(get("/api/ucsbdates/all"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().doesNotExist("Content-Encoding"))
+                                .andExpect(content().string(expectedJson));
+
+                byte[] compressed = gzipped.getResponse().getContentAsByteArray();
+                try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+                        assertEquals(expectedJson, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                }
+                verify(ucsbDateRepository, times(1)).streamAllByOrderByIdAsc();
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void all_is_cached_separately_for_each_format() throws Exception {
+                UCSBDate ucsbDate = UCSBDate.builder()
+                                .id(1)
+                                .name("firstDayOfClasses")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .build();
+                when(ucsbDateRepository.streamAllByOrderByIdAsc()).thenAnswer(invocation -> Stream.of(ucsbDate));
+                String expectedJson = mapper.writeValueAsString(List.of(ucsbDate));
+
+                mockMvc.perform(get("/api/ucsbdates/all"))
+                                .andExpect(status().isOk())
+                                .andExpect(content().string(expectedJson));
+                MvcResult cbor = mockMvc.perform(get("/api/ucsbdates/all").header("Accept", "application/cbor"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("Content-Type", "application/cbor"))
+                                .andReturn();
+
+                assertEquals(mapper.readTree(expectedJson), new CBORMapper().readTree(cbor.getResponse().getContentAsByteArray()));
+                verify(ucsbDateRepository, times(2)).streamAllByOrderByIdAsc();
+        }
+
+        // Tests for Server-Timing
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void api_responses_carry_server_timing() throws Exception {
+                when(ucsbDateRepository.streamAllByOrderByIdAsc()).thenAnswer(invocation -> Stream.empty());
+
+                mockMvc.perform(get("/api/ucsbdates/all"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("Server-Timing", matchesPattern(
+                                                "db;dur=\\d+\\.\\d;desc=\"Database\", auth;dur=.*, ser;dur=.*, app;dur=.*, total;dur=\\d+\\.\\d")));
+        }
 }
@@ -9,6 +9,10 @@ import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Map;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import org.springframework.data.domain.PageRequest;
+import java.util.List;
+import edu.ucsb.cs156.example.models.BulkResult;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
@@ -26,6 +30,7 @@ import java.util.Optional;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -217,7 +222,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                                 .longitude(-119.867427)
                                 .build();
 
-                when(ucsbDiningCommonsRepository.findById(eq("portola"))).thenReturn(Optional.of(portola));
+                when(ucsbDiningCommonsRepository.removeById(eq("portola"))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -226,8 +231,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsRepository, times(1)).findById("portola");
-                verify(ucsbDiningCommonsRepository, times(1)).delete(any());
+                verify(ucsbDiningCommonsRepository, times(1)).removeById("portola");
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommons with id portola deleted", json.get("message"));
@@ -239,7 +243,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(ucsbDiningCommonsRepository.findById(eq("munger-hall"))).thenReturn(Optional.empty());
+                when(ucsbDiningCommonsRepository.removeById(eq("munger-hall"))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -248,7 +252,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsRepository, times(1)).findById("munger-hall");
+                verify(ucsbDiningCommonsRepository, times(1)).removeById("munger-hall");
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommons with id munger-hall not found", json.get("message"));
         }
@@ -258,16 +262,6 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
         public void admin_can_edit_an_existing_commons() throws Exception {
                 // arrange
 
-                UCSBDiningCommons carrilloOrig = UCSBDiningCommons.builder()
-                                .name("Carrillo")
-                                .code("carrillo")
-                                .hasSackMeal(false)
-                                .hasTakeOutMeal(false)
-                                .hasDiningCam(true)
-                                .latitude(34.409953)
-                                .longitude(-119.85277)
-                                .build();
-
                 UCSBDiningCommons carrilloEdited = UCSBDiningCommons.builder()
                                 .name("Carrillo Dining Hall")
                                 .code("carrillo")
@@ -280,7 +274,9 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(carrilloEdited);
 
-                when(ucsbDiningCommonsRepository.findById(eq("carrillo"))).thenReturn(Optional.of(carrilloOrig));
+                when(ucsbDiningCommonsRepository.updateById(eq("carrillo"), isNull(), eq(carrilloEdited))).thenReturn(1);
+
+                when(ucsbDiningCommonsRepository.findById(eq("carrillo"))).thenReturn(Optional.of(carrilloEdited));
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -292,8 +288,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsRepository, times(1)).findById("carrillo");
-                verify(ucsbDiningCommonsRepository, times(1)).save(carrilloEdited); // should be saved with updated info
+                verify(ucsbDiningCommonsRepository, times(1)).updateById("carrillo", null, carrilloEdited);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(requestBody, responseString);
         }
@@ -315,7 +310,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(editedCommons);
 
-                when(ucsbDiningCommonsRepository.findById(eq("munger-hall"))).thenReturn(Optional.empty());
+                when(ucsbDiningCommonsRepository.updateById(eq("munger-hall"), isNull(), any())).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -327,9 +322,158 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsRepository, times(1)).findById("munger-hall");
+                verify(ucsbDiningCommonsRepository, times(1)).updateById(eq("munger-hall"), isNull(), any());
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommons with id munger-hall not found", json.get("message"));
 
         }
+
+        // Tests for /api/ucsbdiningcommons/page
+
+        @Test
+        public void logged_out_users_cannot_get_a_page() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommons/page"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void full_page_returns_the_last_code_as_next() throws Exception {
+                // arrange
+                UCSBDiningCommons first = UCSBDiningCommons.builder().code("dlg").build();
+                UCSBDiningCommons second = UCSBDiningCommons.builder().code("ortega").build();
+                List<UCSBDiningCommons> rows = new ArrayList<>(Arrays.asList(first, second));
+                when(ucsbDiningCommonsRepository.findByCodeGreaterThanOrderByCodeAsc(eq("bbb"), eq(PageRequest.of(0, 2)))).thenReturn(rows);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/page?after=bbb&limit=2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, times(1)).findByCodeGreaterThanOrderByCodeAsc(eq("bbb"), eq(PageRequest.of(0, 2)));
+                String expectedJson = mapper.writeValueAsString(new KeysetPage<>(rows, second.getCode()));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void short_page_has_no_next_and_defaults_apply() throws Exception {
+                // arrange
+                List<UCSBDiningCommons> rows = new ArrayList<>(Arrays.asList(UCSBDiningCommons.builder().code("carrillo").build()));
+                when(ucsbDiningCommonsRepository.findByCodeGreaterThanOrderByCodeAsc(eq(""), eq(PageRequest.of(0, ApiController.DEFAULT_PAGE_LIMIT)))).thenReturn(rows);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/page"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                String expectedJson = mapper.writeValueAsString(new KeysetPage<>(rows, null));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void page_limit_is_capped() throws Exception {
+                when(ucsbDiningCommonsRepository.findByCodeGreaterThanOrderByCodeAsc(eq(""), eq(PageRequest.of(0, ApiController.MAX_PAGE_LIMIT)))).thenReturn(new ArrayList<>());
+
+                mockMvc.perform(get("/api/ucsbdiningcommons/page?limit=5000"))
+                                .andExpect(status().isOk());
+
+                verify(ucsbDiningCommonsRepository, times(1)).findByCodeGreaterThanOrderByCodeAsc(eq(""), eq(PageRequest.of(0, ApiController.MAX_PAGE_LIMIT)));
+        }
+
+        // Tests for /api/ucsbdiningcommons/bulk
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_post_bulk() throws Exception {
+                mockMvc.perform(post("/api/ucsbdiningcommons/bulk").with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON).content("[]"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_post_bulk() throws Exception {
+                // arrange
+                List<UCSBDiningCommons> incoming = Arrays.asList(UCSBDiningCommons.builder().code("carrillo").name("first").build(), UCSBDiningCommons.builder().code("dlg").name("second").build());
+                when(ucsbDiningCommonsRepository.saveAll(eq(incoming))).thenReturn(incoming);
+
+                // act
+                MvcResult response = mockMvc.perform(post("/api/ucsbdiningcommons/bulk").with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON).content(mapper.writeValueAsString(incoming)))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(
+                                new BulkResult(0, "carrillo", "created", null),
+                                new BulkResult(1, "dlg", "created", null)));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_posting_bulk_gets_existing_and_repeated_codes_reported_as_duplicates() throws Exception {
+                // arrange
+                UCSBDiningCommons stored = UCSBDiningCommons.builder().code("carrillo").name("stored").build();
+                UCSBDiningCommons existing = UCSBDiningCommons.builder().code("carrillo").name("first").build();
+                UCSBDiningCommons fresh = UCSBDiningCommons.builder().code("dlg").name("second").build();
+                UCSBDiningCommons repeated = UCSBDiningCommons.builder().code("dlg").name("third").build();
+                when(ucsbDiningCommonsRepository.findAllById(eq(Arrays.asList("carrillo", "dlg")))).thenReturn(Arrays.asList(stored));
+
+                // act
+                MvcResult response = mockMvc.perform(post("/api/ucsbdiningcommons/bulk").with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON).content(mapper.writeValueAsString(Arrays.asList(existing, fresh, repeated))))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, times(1)).saveAll(eq(Arrays.asList(fresh)));
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(
+                                new BulkResult(0, "carrillo", "duplicate", "UCSBDiningCommons with id carrillo already exists"),
+                                new BulkResult(1, "dlg", "created", null),
+                                new BulkResult(2, "dlg", "duplicate", "UCSBDiningCommons with id dlg already exists")));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_update_bulk_and_missing_rows_are_reported() throws Exception {
+                // arrange
+                UCSBDiningCommons stored = UCSBDiningCommons.builder().code("carrillo").name("old").build();
+                UCSBDiningCommons edited = UCSBDiningCommons.builder().code("carrillo").name("new").build();
+                UCSBDiningCommons missing = UCSBDiningCommons.builder().code("ortega").name("new").build();
+                when(ucsbDiningCommonsRepository.findAllById(eq(Arrays.asList("carrillo", "ortega")))).thenReturn(Arrays.asList(stored));
+
+                // act
+                MvcResult response = mockMvc.perform(put("/api/ucsbdiningcommons/bulk").with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON).content(mapper.writeValueAsString(Arrays.asList(edited, missing))))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, times(1)).saveAll(eq(Arrays.asList(edited)));
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(
+                                new BulkResult(0, "carrillo", "updated", null),
+                                new BulkResult(1, "ortega", "notFound", "UCSBDiningCommons with id ortega not found")));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_delete_bulk_and_missing_rows_are_reported() throws Exception {
+                // arrange
+                UCSBDiningCommons stored = UCSBDiningCommons.builder().code("carrillo").name("old").build();
+                when(ucsbDiningCommonsRepository.findAllById(eq(Arrays.asList("carrillo", "ortega")))).thenReturn(Arrays.asList(stored));
+
+                // act
+                MvcResult response = mockMvc.perform(delete("/api/ucsbdiningcommons/bulk").with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON).content(mapper.writeValueAsString(Arrays.asList("carrillo", "ortega"))))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, times(1)).deleteAll(eq(Arrays.asList(stored)));
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(
+                                new BulkResult(0, "carrillo", "deleted", null),
+                                new BulkResult(1, "ortega", "notFound", "UCSBDiningCommons with id ortega not found")));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
 }
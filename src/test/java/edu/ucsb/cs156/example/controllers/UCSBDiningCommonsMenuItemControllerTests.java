@@ -9,6 +9,10 @@ import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Map;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import org.springframework.data.domain.PageRequest;
+import java.util.List;
+import edu.ucsb.cs156.example.models.BulkResult;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
@@ -26,6 +30,7 @@ import java.util.Optional;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -145,15 +150,16 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
                 ArrayList<UCSBDiningCommonsMenuItem> expectedItem = new ArrayList<>();
                 expectedItem.addAll(Arrays.asList(iceCream, caesarSalad));
 
-                when(ucsbDiningCommonsMenuItemRepository.findAll()).thenReturn(expectedItem);
+                when(ucsbDiningCommonsMenuItemRepository.streamAllByOrderByIdAsc()).thenReturn(expectedItem.stream());
 
                 // act
                 MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommonsmenuitem/all"))
-                                .andExpect(status().isOk()).andReturn();
+                                .andExpect(request().asyncStarted()).andReturn();
+                mockMvc.perform(asyncDispatch(response)).andExpect(status().isOk());
 
                 // assert
 
-                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findAll();
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).streamAllByOrderByIdAsc();
                 String expectedJson = mapper.writeValueAsString(expectedItem);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
@@ -196,7 +202,7 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
                                 .station("entrees")
                                 .build();
 
-                when(ucsbDiningCommonsMenuItemRepository.findById(eq(15L))).thenReturn(Optional.of(sushi));
+                when(ucsbDiningCommonsMenuItemRepository.removeById(eq(15L))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -205,8 +211,7 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findById(15L);
-                verify(ucsbDiningCommonsMenuItemRepository, times(1)).delete(any());
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).removeById(15L);
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommonsMenuItem with id 15 deleted", json.get("message"));
@@ -218,7 +223,7 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
                         throws Exception {
                 // arrange
 
-                when(ucsbDiningCommonsMenuItemRepository.findById(eq(15L))).thenReturn(Optional.empty());
+                when(ucsbDiningCommonsMenuItemRepository.removeById(eq(15L))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -227,7 +232,7 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findById(15L);
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).removeById(15L);
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommonsMenuItem with id 15 not found", json.get("message"));
         }
@@ -237,13 +242,8 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
         public void admin_can_edit_an_existing_item() throws Exception {
                 // arrange
 
-                UCSBDiningCommonsMenuItem ucsbDiningCommonsMenuItemOrig = UCSBDiningCommonsMenuItem.builder()
-                                .diningCommonsCode("portola")
-                                .name("sushi")
-                                .station("entrees")
-                                .build();
-
                 UCSBDiningCommonsMenuItem ucsbDiningCommonsMenuItemEdited = UCSBDiningCommonsMenuItem.builder()
+                                .id(67L)
                                 .diningCommonsCode("dlg")
                                 .name("apple pie")
                                 .station("desserts")
@@ -251,7 +251,9 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
 
                 String requestBody = mapper.writeValueAsString(ucsbDiningCommonsMenuItemEdited);
 
-                when(ucsbDiningCommonsMenuItemRepository.findById(eq(67L))).thenReturn(Optional.of(ucsbDiningCommonsMenuItemOrig));
+                when(ucsbDiningCommonsMenuItemRepository.updateById(eq(67L), isNull(), eq(ucsbDiningCommonsMenuItemEdited))).thenReturn(1);
+
+                when(ucsbDiningCommonsMenuItemRepository.findById(eq(67L))).thenReturn(Optional.of(ucsbDiningCommonsMenuItemEdited));
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -263,8 +265,7 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findById(67L);
-                verify(ucsbDiningCommonsMenuItemRepository, times(1)).save(ucsbDiningCommonsMenuItemEdited); // should be saved with correct user
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).updateById(67L, null, ucsbDiningCommonsMenuItemEdited);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(requestBody, responseString);
         }
@@ -282,7 +283,7 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
 
                 String requestBody = mapper.writeValueAsString(editedItem);
 
-                when(ucsbDiningCommonsMenuItemRepository.findById(eq(67L))).thenReturn(Optional.empty());
+                when(ucsbDiningCommonsMenuItemRepository.updateById(eq(67L), isNull(), any())).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -294,9 +295,136 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findById(67L);
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).updateById(eq(67L), isNull(), any());
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommonsMenuItem with id 67 not found", json.get("message"));
 
         }
+
+        // Tests for /api/ucsbdiningcommonsmenuitem/page
+
+        @Test
+        public void logged_out_users_cannot_get_a_page() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommonsmenuitem/page"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void full_page_returns_the_last_id_as_next() throws Exception {
+                // arrange
+                UCSBDiningCommonsMenuItem first = UCSBDiningCommonsMenuItem.builder().id(2L).build();
+                UCSBDiningCommonsMenuItem second = UCSBDiningCommonsMenuItem.builder().id(3L).build();
+                List<UCSBDiningCommonsMenuItem> rows = new ArrayList<>(Arrays.asList(first, second));
+                when(ucsbDiningCommonsMenuItemRepository.findByIdGreaterThanOrderByIdAsc(eq(1L), eq(PageRequest.of(0, 2)))).thenReturn(rows);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommonsmenuitem/page?after=1&limit=2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(1L), eq(PageRequest.of(0, 2)));
+                String expectedJson = mapper.writeValueAsString(new KeysetPage<>(rows, second.getId()));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void short_page_has_no_next_and_defaults_apply() throws Exception {
+                // arrange
+                List<UCSBDiningCommonsMenuItem> rows = new ArrayList<>(Arrays.asList(UCSBDiningCommonsMenuItem.builder().id(1L).build()));
+                when(ucsbDiningCommonsMenuItemRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, ApiController.DEFAULT_PAGE_LIMIT)))).thenReturn(rows);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommonsmenuitem/page"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                String expectedJson = mapper.writeValueAsString(new KeysetPage<>(rows, null));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void page_limit_is_capped() throws Exception {
+                when(ucsbDiningCommonsMenuItemRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_LIMIT)))).thenReturn(new ArrayList<>());
+
+                mockMvc.perform(get("/api/ucsbdiningcommonsmenuitem/page?limit=5000"))
+                                .andExpect(status().isOk());
+
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_LIMIT)));
+        }
+
+        // Tests for /api/ucsbdiningcommonsmenuitem/bulk
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_post_bulk() throws Exception {
+                mockMvc.perform(post("/api/ucsbdiningcommonsmenuitem/bulk").with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON).content("[]"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_post_bulk() throws Exception {
+                // arrange
+                List<UCSBDiningCommonsMenuItem> incoming = Arrays.asList(UCSBDiningCommonsMenuItem.builder().id(9L).name("first").build(), UCSBDiningCommonsMenuItem.builder().id(9L).name("second").build());
+                List<UCSBDiningCommonsMenuItem> unsaved = Arrays.asList(UCSBDiningCommonsMenuItem.builder().id(0L).name("first").build(), UCSBDiningCommonsMenuItem.builder().id(0L).name("second").build());
+                List<UCSBDiningCommonsMenuItem> saved = Arrays.asList(UCSBDiningCommonsMenuItem.builder().id(1L).name("first").build(), UCSBDiningCommonsMenuItem.builder().id(2L).name("second").build());
+                when(ucsbDiningCommonsMenuItemRepository.saveAll(eq(unsaved))).thenReturn(saved);
+
+                // act
+                MvcResult response = mockMvc.perform(post("/api/ucsbdiningcommonsmenuitem/bulk").with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON).content(mapper.writeValueAsString(incoming)))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(
+                                new BulkResult(0, 1L, "created", null),
+                                new BulkResult(1, 2L, "created", null)));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_update_bulk_and_missing_rows_are_reported() throws Exception {
+                // arrange
+                UCSBDiningCommonsMenuItem stored = UCSBDiningCommonsMenuItem.builder().id(1L).name("old").build();
+                UCSBDiningCommonsMenuItem edited = UCSBDiningCommonsMenuItem.builder().id(1L).name("new").build();
+                UCSBDiningCommonsMenuItem missing = UCSBDiningCommonsMenuItem.builder().id(9L).name("new").build();
+                when(ucsbDiningCommonsMenuItemRepository.findAllById(eq(Arrays.asList(1L, 9L)))).thenReturn(Arrays.asList(stored));
+
+                // act
+                MvcResult response = mockMvc.perform(put("/api/ucsbdiningcommonsmenuitem/bulk").with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON).content(mapper.writeValueAsString(Arrays.asList(edited, missing))))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).saveAll(eq(Arrays.asList(edited)));
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(
+                                new BulkResult(0, 1L, "updated", null),
+                                new BulkResult(1, 9L, "notFound", "UCSBDiningCommonsMenuItem with id 9 not found")));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_delete_bulk_and_missing_rows_are_reported() throws Exception {
+                // arrange
+                UCSBDiningCommonsMenuItem stored = UCSBDiningCommonsMenuItem.builder().id(1L).name("old").build();
+                when(ucsbDiningCommonsMenuItemRepository.findAllById(eq(Arrays.asList(1L, 9L)))).thenReturn(Arrays.asList(stored));
+
+                // act
+                MvcResult response = mockMvc.perform(delete("/api/ucsbdiningcommonsmenuitem/bulk").with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON).content(mapper.writeValueAsString(Arrays.asList(1L, 9L))))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).deleteAll(eq(Arrays.asList(stored)));
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(
+                                new BulkResult(0, 1L, "deleted", null),
+                                new BulkResult(1, 9L, "notFound", "UCSBDiningCommonsMenuItem with id 9 not found")));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
 }
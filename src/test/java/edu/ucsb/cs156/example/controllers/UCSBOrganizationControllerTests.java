@@ -9,6 +9,10 @@ import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Map;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import org.springframework.data.domain.PageRequest;
+import java.util.List;
+import edu.ucsb.cs156.example.models.BulkResult;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
@@ -26,6 +30,7 @@ import java.util.Optional;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -189,14 +194,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
         public void admin_can_delete_an_org() throws Exception {
                 // arrange
 
-                UCSBOrganization org = UCSBOrganization.builder()
-                                .orgCode("ABC")
-                                .orgTranslationShort("AAA BBB CCC")
-                                .orgTranslation("AAAA BBBB CCCC")
-                                .inactive(false)
-                                .build();
-
-                when(ucsbOrganizationRepository.findById(eq("ABC"))).thenReturn(Optional.of(org));
+                when(ucsbOrganizationRepository.removeById(eq("ABC"))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -205,8 +203,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbOrganizationRepository, times(1)).findById("ABC");
-                verify(ucsbOrganizationRepository, times(1)).delete(any());
+                verify(ucsbOrganizationRepository, times(1)).removeById("ABC");
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBOrganization with id ABC deleted", json.get("message"));
@@ -218,7 +215,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(ucsbOrganizationRepository.findById(eq("ABC"))).thenReturn(Optional.empty());
+                when(ucsbOrganizationRepository.removeById(eq("ABC"))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -227,7 +224,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbOrganizationRepository, times(1)).findById("ABC");
+                verify(ucsbOrganizationRepository, times(1)).removeById("ABC");
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBOrganization with id ABC not found", json.get("message"));
         }
@@ -237,13 +234,6 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
         public void admin_can_edit_an_existing_orgs() throws Exception {
                 // arrange
 
-                UCSBOrganization org = UCSBOrganization.builder()
-                                .orgCode("DEF")
-                                .orgTranslationShort("DDD EEE FFF")
-                                .orgTranslation("DDDD EEEE FFFF")
-                                .inactive(false)
-                                .build();
-
                 UCSBOrganization orgEdited = UCSBOrganization.builder()
                                 .orgCode("DEF")
                                 .orgTranslationShort("AAA BBB CCC")
@@ -253,7 +243,9 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(orgEdited);
 
-                when(ucsbOrganizationRepository.findById(eq("DEF"))).thenReturn(Optional.of(org));
+                when(ucsbOrganizationRepository.updateById(eq("DEF"), isNull(), eq(orgEdited))).thenReturn(1);
+
+                when(ucsbOrganizationRepository.findById(eq("DEF"))).thenReturn(Optional.of(orgEdited));
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -265,8 +257,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbOrganizationRepository, times(1)).findById("DEF");
-                verify(ucsbOrganizationRepository, times(1)).save(orgEdited); // should be saved with updated info
+                verify(ucsbOrganizationRepository, times(1)).updateById("DEF", null, orgEdited);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(requestBody, responseString);
         }
@@ -285,7 +276,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(orgEdited);
 
-                when(ucsbOrganizationRepository.findById(eq("ABC"))).thenReturn(Optional.empty());
+                when(ucsbOrganizationRepository.updateById(eq("ABC"), isNull(), any())).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -297,9 +288,158 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbOrganizationRepository, times(1)).findById("ABC");
+                verify(ucsbOrganizationRepository, times(1)).updateById(eq("ABC"), isNull(), any());
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBOrganization with id ABC not found", json.get("message"));
 
         }
+
+        // Tests for /api/ucsborganization/page
+
+        @Test
+        public void logged_out_users_cannot_get_a_page() throws Exception {
+                mockMvc.perform(get("/api/ucsborganization/page"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void full_page_returns_the_last_orgcode_as_next() throws Exception {
+                // arrange
+                UCSBOrganization first = UCSBOrganization.builder().orgCode("dlg").build();
+                UCSBOrganization second = UCSBOrganization.builder().orgCode("ortega").build();
+                List<UCSBOrganization> rows = new ArrayList<>(Arrays.asList(first, second));
+                when(ucsbOrganizationRepository.findByOrgCodeGreaterThanOrderByOrgCodeAsc(eq("bbb"), eq(PageRequest.of(0, 2)))).thenReturn(rows);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsborganization/page?after=bbb&limit=2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbOrganizationRepository, times(1)).findByOrgCodeGreaterThanOrderByOrgCodeAsc(eq("bbb"), eq(PageRequest.of(0, 2)));
+                String expectedJson = mapper.writeValueAsString(new KeysetPage<>(rows, second.getOrgCode()));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void short_page_has_no_next_and_defaults_apply() throws Exception {
+                // arrange
+                List<UCSBOrganization> rows = new ArrayList<>(Arrays.asList(UCSBOrganization.builder().orgCode("carrillo").build()));
+                when(ucsbOrganizationRepository.findByOrgCodeGreaterThanOrderByOrgCodeAsc(eq(""), eq(PageRequest.of(0, ApiController.DEFAULT_PAGE_LIMIT)))).thenReturn(rows);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsborganization/page"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                String expectedJson = mapper.writeValueAsString(new KeysetPage<>(rows, null));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void page_limit_is_capped() throws Exception {
+                when(ucsbOrganizationRepository.findByOrgCodeGreaterThanOrderByOrgCodeAsc(eq(""), eq(PageRequest.of(0, ApiController.MAX_PAGE_LIMIT)))).thenReturn(new ArrayList<>());
+
+                mockMvc.perform(get("/api/ucsborganization/page?limit=5000"))
+                                .andExpect(status().isOk());
+
+                verify(ucsbOrganizationRepository, times(1)).findByOrgCodeGreaterThanOrderByOrgCodeAsc(eq(""), eq(PageRequest.of(0, ApiController.MAX_PAGE_LIMIT)));
+        }
+
+        // Tests for /api/ucsborganization/bulk
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_post_bulk() throws Exception {
+                mockMvc.perform(post("/api/ucsborganization/bulk").with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON).content("[]"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_post_bulk() throws Exception {
+                // arrange
+                List<UCSBOrganization> incoming = Arrays.asList(UCSBOrganization.builder().orgCode("carrillo").orgTranslation("first").build(), UCSBOrganization.builder().orgCode("dlg").orgTranslation("second").build());
+                when(ucsbOrganizationRepository.saveAll(eq(incoming))).thenReturn(incoming);
+
+                // act
+                MvcResult response = mockMvc.perform(post("/api/ucsborganization/bulk").with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON).content(mapper.writeValueAsString(incoming)))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(
+                                new BulkResult(0, "carrillo", "created", null),
+                                new BulkResult(1, "dlg", "created", null)));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_posting_bulk_gets_existing_and_repeated_codes_reported_as_duplicates() throws Exception {
+                // arrange
+                UCSBOrganization stored = UCSBOrganization.builder().orgCode("carrillo").orgTranslation("stored").build();
+                UCSBOrganization existing = UCSBOrganization.builder().orgCode("carrillo").orgTranslation("first").build();
+                UCSBOrganization fresh = UCSBOrganization.builder().orgCode("dlg").orgTranslation("second").build();
+                UCSBOrganization repeated = UCSBOrganization.builder().orgCode("dlg").orgTranslation("third").build();
+                when(ucsbOrganizationRepository.findAllById(eq(Arrays.asList("carrillo", "dlg")))).thenReturn(Arrays.asList(stored));
+
+                // act
+                MvcResult response = mockMvc.perform(post("/api/ucsborganization/bulk").with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON).content(mapper.writeValueAsString(Arrays.asList(existing, fresh, repeated))))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbOrganizationRepository, times(1)).saveAll(eq(Arrays.asList(fresh)));
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(
+                                new BulkResult(0, "carrillo", "duplicate", "UCSBOrganization with id carrillo already exists"),
+                                new BulkResult(1, "dlg", "created", null),
+                                new BulkResult(2, "dlg", "duplicate", "UCSBOrganization with id dlg already exists")));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_update_bulk_and_missing_rows_are_reported() throws Exception {
+                // arrange
+                UCSBOrganization stored = UCSBOrganization.builder().orgCode("carrillo").orgTranslation("old").build();
+                UCSBOrganization edited = UCSBOrganization.builder().orgCode("carrillo").orgTranslation("new").build();
+                UCSBOrganization missing = UCSBOrganization.builder().orgCode("ortega").orgTranslation("new").build();
+                when(ucsbOrganizationRepository.findAllById(eq(Arrays.asList("carrillo", "ortega")))).thenReturn(Arrays.asList(stored));
+
+                // act
+                MvcResult response = mockMvc.perform(put("/api/ucsborganization/bulk").with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON).content(mapper.writeValueAsString(Arrays.asList(edited, missing))))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbOrganizationRepository, times(1)).saveAll(eq(Arrays.asList(edited)));
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(
+                                new BulkResult(0, "carrillo", "updated", null),
+                                new BulkResult(1, "ortega", "notFound", "UCSBOrganization with id ortega not found")));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_delete_bulk_and_missing_rows_are_reported() throws Exception {
+                // arrange
+                UCSBOrganization stored = UCSBOrganization.builder().orgCode("carrillo").orgTranslation("old").build();
+                when(ucsbOrganizationRepository.findAllById(eq(Arrays.asList("carrillo", "ortega")))).thenReturn(Arrays.asList(stored));
+
+                // act
+                MvcResult response = mockMvc.perform(delete("/api/ucsborganization/bulk").with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON).content(mapper.writeValueAsString(Arrays.asList("carrillo", "ortega"))))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbOrganizationRepository, times(1)).deleteAll(eq(Arrays.asList(stored)));
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(
+                                new BulkResult(0, "carrillo", "deleted", null),
+                                new BulkResult(1, "ortega", "notFound", "UCSBOrganization with id ortega not found")));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
 }
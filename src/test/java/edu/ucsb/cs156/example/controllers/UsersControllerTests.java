@@ -5,14 +5,19 @@ import edu.ucsb.cs156.example.entities.User;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 
+import edu.ucsb.cs156.example.models.KeysetPage;
+import java.util.List;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -55,19 +60,74 @@ public class UsersControllerTests extends ControllerTestCase {
     ArrayList<User> expectedUsers = new ArrayList<>();
     expectedUsers.addAll(Arrays.asList(u1, u2, u));
 
-    when(userRepository.findAll()).thenReturn(expectedUsers);
+    when(userRepository.streamAllByOrderByIdAsc()).thenReturn(expectedUsers.stream());
     String expectedJson = mapper.writeValueAsString(expectedUsers);
     
     // act
 
     MvcResult response = mockMvc.perform(get("/api/admin/users"))
-        .andExpect(status().isOk()).andReturn();
+        .andExpect(request().asyncStarted()).andReturn();
+    mockMvc.perform(asyncDispatch(response)).andExpect(status().isOk());
 
     // assert
 
-    verify(userRepository, times(1)).findAll();
+    verify(userRepository, times(1)).streamAllByOrderByIdAsc();
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
 
   }
+
+  // Tests for /api/admin/users/page
+
+  @Test
+  public void logged_out_users_cannot_get_a_page() throws Exception {
+    mockMvc.perform(get("/api/admin/users/page"))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void full_page_returns_the_last_id_as_next() throws Exception {
+    // arrange
+    User first = User.builder().id(2L).build();
+    User second = User.builder().id(3L).build();
+    List<User> rows = new ArrayList<>(Arrays.asList(first, second));
+    when(userRepository.findByIdGreaterThanOrderByIdAsc(eq(1L), eq(PageRequest.of(0, 2)))).thenReturn(rows);
+
+    // act
+    MvcResult response = mockMvc.perform(get("/api/admin/users/page?after=1&limit=2"))
+        .andExpect(status().isOk()).andReturn();
+
+    // assert
+    verify(userRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(1L), eq(PageRequest.of(0, 2)));
+    String expectedJson = mapper.writeValueAsString(new KeysetPage<>(rows, second.getId()));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void short_page_has_no_next_and_defaults_apply() throws Exception {
+    // arrange
+    List<User> rows = new ArrayList<>(Arrays.asList(User.builder().id(1L).build()));
+    when(userRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, ApiController.DEFAULT_PAGE_LIMIT)))).thenReturn(rows);
+
+    // act
+    MvcResult response = mockMvc.perform(get("/api/admin/users/page"))
+        .andExpect(status().isOk()).andReturn();
+
+    // assert
+    String expectedJson = mapper.writeValueAsString(new KeysetPage<>(rows, null));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void page_limit_is_capped() throws Exception {
+    when(userRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_LIMIT)))).thenReturn(new ArrayList<>());
+
+    mockMvc.perform(get("/api/admin/users/page?limit=5000"))
+        .andExpect(status().isOk());
+
+    verify(userRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_LIMIT)));
+  }
 }
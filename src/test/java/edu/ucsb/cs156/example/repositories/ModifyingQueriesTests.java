@@ -0,0 +1,123 @@
+package edu.ucsb.cs156.example.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import edu.ucsb.cs156.example.config.SecondLevelCacheConfig;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+
+// Runs the @Modifying updateById / removeById queries (JPQL with SpEL
+// :#{#incoming.x} parameters) against H2, for both repository patterns:
+// a generated long id (UCSBDateRepository) and a string key
+// (UCSBDiningCommonsRepository, which is also in the second-level cache).
+// Each repository call commits on its own, as it does from a controller.
+
+@DataJpaTest
+@Import(SecondLevelCacheConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ModifyingQueriesTests {
+
+  @Autowired
+  UCSBDateRepository ucsbDateRepository;
+
+  @Autowired
+  UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
+
+  @AfterEach
+  void cleanup() {
+    ucsbDateRepository.deleteAll();
+    ucsbDiningCommonsRepository.deleteAll();
+  }
+
+  private static UCSBDate date(String name) {
+    return UCSBDate.builder()
+        .quarterYYYYQ("20221")
+        .name(name)
+        .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+        .build();
+  }
+
+  private static UCSBDiningCommons commons(String name) {
+    return UCSBDiningCommons.builder()
+        .code("de-la-guerra")
+        .name(name)
+        .hasSackMeal(false)
+        .hasTakeOutMeal(false)
+        .hasDiningCam(true)
+        .latitude(34.41)
+        .longitude(-119.85)
+        .build();
+  }
+
+  @Test
+  void test_update_by_long_id_writes_the_fields_and_bumps_the_version() {
+    long id = ucsbDateRepository.save(date("firstDayOfClasses")).getId();
+
+    UCSBDate incoming = date("lastDayOfClasses");
+    incoming.setQuarterYYYYQ("20222");
+    assertEquals(1, ucsbDateRepository.updateById(id, null, incoming));
+
+    UCSBDate stored = ucsbDateRepository.findById(id).get();
+    assertEquals("lastDayOfClasses", stored.getName());
+    assertEquals("20222", stored.getQuarterYYYYQ());
+    assertEquals(1, stored.getVersion());
+  }
+
+  @Test
+  void test_update_by_long_id_with_a_stale_version_or_missing_row_changes_nothing() {
+    long id = ucsbDateRepository.save(date("firstDayOfClasses")).getId();
+    ucsbDateRepository.updateById(id, 0L, date("lastDayOfClasses"));
+
+    assertEquals(0, ucsbDateRepository.updateById(id, 0L, date("finals")));
+    assertEquals(0, ucsbDateRepository.updateById(id + 1000, null, date("finals")));
+    assertEquals("lastDayOfClasses", ucsbDateRepository.findById(id).get().getName());
+  }
+
+  @Test
+  void test_remove_by_long_id_deletes_the_row() {
+    long id = ucsbDateRepository.save(date("firstDayOfClasses")).getId();
+
+    assertEquals(1, ucsbDateRepository.removeById(id));
+    assertEquals(0, ucsbDateRepository.removeById(id));
+    assertFalse(ucsbDateRepository.existsById(id));
+  }
+
+  @Test
+  void test_update_by_string_id_writes_the_fields_and_is_not_hidden_by_the_cache() {
+    ucsbDiningCommonsRepository.save(commons("De La Guerra"));
+    // puts the row in the second-level cache
+    assertEquals(0, ucsbDiningCommonsRepository.findById("de-la-guerra").get().getVersion());
+
+    UCSBDiningCommons incoming = commons("De La Guerra Commons");
+    incoming.setHasSackMeal(true);
+    assertEquals(1, ucsbDiningCommonsRepository.updateById("de-la-guerra", 0L, incoming));
+    assertEquals(0, ucsbDiningCommonsRepository.updateById("de-la-guerra", 0L, incoming));
+
+    UCSBDiningCommons stored = ucsbDiningCommonsRepository.findById("de-la-guerra").get();
+    assertEquals("De La Guerra Commons", stored.getName());
+    assertTrue(stored.getHasSackMeal());
+    assertEquals(1, stored.getVersion());
+  }
+
+  @Test
+  void test_remove_by_string_id_deletes_the_row() {
+    ucsbDiningCommonsRepository.save(commons("De La Guerra"));
+    ucsbDiningCommonsRepository.findById("de-la-guerra");
+
+    assertEquals(1, ucsbDiningCommonsRepository.removeById("de-la-guerra"));
+    assertEquals(0, ucsbDiningCommonsRepository.removeById("de-la-guerra"));
+    assertFalse(ucsbDiningCommonsRepository.findById("de-la-guerra").isPresent());
+  }
+}
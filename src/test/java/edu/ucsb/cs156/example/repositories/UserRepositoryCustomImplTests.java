@@ -0,0 +1,161 @@
+package edu.ucsb.cs156.example.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.models.UserChangedEvent;
+
+// Runs the login upsert against H2, which takes the MERGE path.  The
+// Postgres INSERT ... ON CONFLICT path needs a real Postgres (H2 has no
+// ON CONFLICT DO UPDATE); set -Dtest.postgres.url (and .username,
+// .password) to run the same cases against one.  The schema comes from
+// the User mapping, as it does with ddl-auto.
+
+class UserRepositoryCustomImplTests {
+
+  record Target(String name, String url, String username, String password, String dialect) {
+  }
+
+  static List<Target> targets() {
+    List<Target> targets = new ArrayList<>();
+    targets.add(new Target("h2", "jdbc:h2:mem:user_upsert;DB_CLOSE_DELAY=-1", "sa", "",
+        "org.hibernate.dialect.H2Dialect"));
+    String postgres = System.getProperty("test.postgres.url");
+    if (postgres != null) {
+      targets.add(new Target("postgres", postgres, System.getProperty("test.postgres.username", "postgres"),
+          System.getProperty("test.postgres.password", ""), "org.hibernate.dialect.PostgreSQL10Dialect"));
+    }
+    return targets;
+  }
+
+  interface Case {
+    void run(UserRepositoryCustomImpl upserts, JdbcTemplate jdbcTemplate, List<Object> events);
+  }
+
+  // each case gets freshly created tables
+  private void onEachTarget(Case test) {
+    for (Target target : targets()) {
+      Configuration configuration = new Configuration()
+          .addAnnotatedClass(User.class)
+          .setProperty(AvailableSettings.URL, target.url())
+          .setProperty(AvailableSettings.USER, target.username())
+          .setProperty(AvailableSettings.PASS, target.password())
+          .setProperty(AvailableSettings.DIALECT, target.dialect())
+          .setProperty(AvailableSettings.HBM2DDL_AUTO, "create-drop");
+      // Spring Boot's column naming: googleSub -> google_sub
+      configuration.setPhysicalNamingStrategy(new CamelCaseToUnderscoresNamingStrategy());
+      SessionFactory sessionFactory = configuration.buildSessionFactory();
+      try (sessionFactory) {
+        List<Object> events = new ArrayList<>();
+        UserRepositoryCustomImpl upserts = new UserRepositoryCustomImpl();
+        upserts.jdbcTemplate = new JdbcTemplate(
+            new DriverManagerDataSource(target.url(), target.username(), target.password()));
+        upserts.applicationEventPublisher = events::add;
+        test.run(upserts, upserts.jdbcTemplate, events);
+      }
+    }
+  }
+
+  private static User user(String email) {
+    return User.builder()
+        .email(email)
+        .googleSub("sub-" + email)
+        .pictureUrl("https://example.org/" + email)
+        .fullName("Chris Gaucho")
+        .givenName("Chris")
+        .familyName("Gaucho")
+        .emailVerified(true)
+        .locale("en")
+        .hostedDomain("ucsb.edu")
+        .admin(false)
+        .build();
+  }
+
+  private static Map<String, Object> row(JdbcTemplate jdbcTemplate, String email) {
+    return jdbcTemplate.queryForMap("SELECT id, picture_url, admin, version FROM users WHERE email = ?", email);
+  }
+
+  @Test
+  void test_a_new_email_is_inserted_with_an_id_from_the_sequence() {
+    onEachTarget((upserts, jdbcTemplate, events) -> {
+      assertEquals(1, upserts.upsertOnLogin(user("cgaucho@ucsb.edu")));
+
+      Map<String, Object> row = row(jdbcTemplate, "cgaucho@ucsb.edu");
+      assertTrue(((Number) row.get("id")).longValue() > 0);
+      assertEquals(0L, ((Number) row.get("version")).longValue());
+      assertEquals(List.of(new UserChangedEvent("cgaucho@ucsb.edu")), events);
+    });
+  }
+
+  @Test
+  void test_an_unchanged_profile_writes_nothing() {
+    onEachTarget((upserts, jdbcTemplate, events) -> {
+      upserts.upsertOnLogin(user("cgaucho@ucsb.edu"));
+
+      assertEquals(0, upserts.upsertOnLogin(user("cgaucho@ucsb.edu")));
+      assertEquals(0L, ((Number) row(jdbcTemplate, "cgaucho@ucsb.edu").get("version")).longValue());
+      assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Integer.class));
+    });
+  }
+
+  @Test
+  void test_a_changed_profile_is_updated_in_place_and_bumps_the_version() {
+    onEachTarget((upserts, jdbcTemplate, events) -> {
+      upserts.upsertOnLogin(user("cgaucho@ucsb.edu"));
+      Object id = row(jdbcTemplate, "cgaucho@ucsb.edu").get("id");
+
+      User changed = user("cgaucho@ucsb.edu");
+      changed.setPictureUrl("https://example.org/new-picture");
+      assertEquals(1, upserts.upsertOnLogin(changed));
+
+      Map<String, Object> row = row(jdbcTemplate, "cgaucho@ucsb.edu");
+      assertEquals(id, row.get("id"));
+      assertEquals("https://example.org/new-picture", row.get("picture_url"));
+      assertEquals(1L, ((Number) row.get("version")).longValue());
+    });
+  }
+
+  @Test
+  void test_admin_is_promoted_but_never_demoted() {
+    onEachTarget((upserts, jdbcTemplate, events) -> {
+      upserts.upsertOnLogin(user("cgaucho@ucsb.edu"));
+
+      User admin = user("cgaucho@ucsb.edu");
+      admin.setAdmin(true);
+      assertEquals(1, upserts.upsertOnLogin(admin));
+      assertEquals(true, row(jdbcTemplate, "cgaucho@ucsb.edu").get("admin"));
+
+      assertEquals(0, upserts.upsertOnLogin(user("cgaucho@ucsb.edu")));
+      assertEquals(true, row(jdbcTemplate, "cgaucho@ucsb.edu").get("admin"));
+    });
+  }
+
+  @Test
+  void test_a_batch_inserts_new_users_and_skips_unchanged_ones() {
+    onEachTarget((upserts, jdbcTemplate, events) -> {
+      upserts.upsertOnLogin(user("cgaucho@ucsb.edu"));
+      events.clear();
+
+      int[] rows = upserts.upsertAllOnLogin(List.of(user("ldelplaya@ucsb.edu"), user("cgaucho@ucsb.edu")));
+
+      assertArrayEquals(new int[] { 1, 0 }, rows);
+      assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Integer.class));
+      assertEquals(List.of(new UserChangedEvent("ldelplaya@ucsb.edu"), new UserChangedEvent("cgaucho@ucsb.edu")),
+          events);
+    });
+  }
+}
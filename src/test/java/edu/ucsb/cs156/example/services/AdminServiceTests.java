@@ -0,0 +1,84 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.models.UserChangedEvent;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+
+@ExtendWith(SpringExtension.class)
+@Import(TestConfig.class)
+@ContextConfiguration
+@TestPropertySource(properties = "app.admin.emails=phtcon@ucsb.edu")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class AdminServiceTests {
+
+  @MockBean
+  UserRepository userRepository;
+
+  @Autowired
+  AdminService adminService;
+
+  @Test
+  void test_configured_admin_does_not_touch_the_database() {
+    assertTrue(adminService.isAdmin("phtcon@ucsb.edu"));
+    assertTrue(adminService.isConfiguredAdmin("phtcon@ucsb.edu"));
+    verify(userRepository, never()).findByEmail(any());
+  }
+
+  @Test
+  void test_admin_flag_from_database_is_cached() {
+    User u = User.builder().email("cgaucho@ucsb.edu").admin(true).build();
+    when(userRepository.findByEmail(eq("cgaucho@ucsb.edu"))).thenReturn(Optional.of(u));
+
+    assertTrue(adminService.isAdmin("cgaucho@ucsb.edu"));
+    assertTrue(adminService.isAdmin("cgaucho@ucsb.edu"));
+
+    verify(userRepository, times(1)).findByEmail(eq("cgaucho@ucsb.edu"));
+    assertFalse(adminService.isConfiguredAdmin("cgaucho@ucsb.edu"));
+    assertEquals(0.5, adminService.hitRatio());
+  }
+
+  @Test
+  void test_unknown_user_is_not_admin() {
+    when(userRepository.findByEmail(eq("nobody@ucsb.edu"))).thenReturn(Optional.empty());
+    assertFalse(adminService.isAdmin("nobody@ucsb.edu"));
+  }
+
+  @Test
+  void test_user_changed_event_drops_cached_flag() {
+    User before = User.builder().email("ldelplaya@ucsb.edu").admin(false).build();
+    User after = User.builder().email("ldelplaya@ucsb.edu").admin(true).build();
+    when(userRepository.findByEmail(eq("ldelplaya@ucsb.edu")))
+        .thenReturn(Optional.of(before))
+        .thenReturn(Optional.of(after));
+
+    assertFalse(adminService.isAdmin("ldelplaya@ucsb.edu"));
+    adminService.onUserChanged(new UserChangedEvent("ldelplaya@ucsb.edu"));
+    assertTrue(adminService.isAdmin("ldelplaya@ucsb.edu"));
+
+    verify(userRepository, times(2)).findByEmail(eq("ldelplaya@ucsb.edu"));
+  }
+
+}
@@ -0,0 +1,53 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+
+@ExtendWith(SpringExtension.class)
+@Import(TestConfig.class)
+@ContextConfiguration
+class CurrentUserCacheTests {
+
+  @MockBean
+  UserRepository userRepository;
+
+  @Autowired
+  CurrentUserCache currentUserCache;
+
+  @Test
+  void test_put_then_get_is_a_hit() {
+    User u = User.builder().id(1L).email("cgaucho@ucsb.edu").build();
+    long hits = currentUserCache.hitCount();
+
+    currentUserCache.put(u);
+
+    assertSame(u, currentUserCache.get("cgaucho@ucsb.edu"));
+    assertEquals(hits + 1, currentUserCache.hitCount());
+  }
+
+  @Test
+  void test_invalidate_then_get_is_a_miss() {
+    User u = User.builder().id(2L).email("ldelplaya@ucsb.edu").build();
+    currentUserCache.put(u);
+    long misses = currentUserCache.missCount();
+
+    currentUserCache.invalidate("ldelplaya@ucsb.edu");
+
+    assertNull(currentUserCache.get("ldelplaya@ucsb.edu"));
+    assertEquals(misses + 1, currentUserCache.missCount());
+  }
+
+}
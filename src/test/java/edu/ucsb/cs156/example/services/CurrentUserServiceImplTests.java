@@ -0,0 +1,165 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = { CurrentUserServiceImpl.class, CurrentUserCache.class, PrimaryTransactions.class })
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class CurrentUserServiceImplTests {
+
+  @MockBean
+  UserRepository userRepository;
+
+  @MockBean
+  UserWriteBehindQueue userWriteBehindQueue;
+
+  @MockBean
+  AdminService adminService;
+
+  @MockBean
+  GrantedAuthoritiesService grantedAuthoritiesService;
+
+  @Autowired
+  CurrentUserServiceImpl currentUserService;
+
+  @BeforeEach
+  void login() {
+    Map<String, Object> attributes = Map.of(
+        "sub", "115",
+        "email", "cgaucho@ucsb.edu",
+        "picture", "https://example.org/cgaucho.jpg",
+        "name", "Chris Gaucho",
+        "given_name", "Chris",
+        "family_name", "Gaucho",
+        "email_verified", true,
+        "locale", "en",
+        "hd", "ucsb.edu");
+    DefaultOAuth2User principal = new DefaultOAuth2User(
+        List.of(new SimpleGrantedAuthority("ROLE_USER")), attributes, "sub");
+    SecurityContextHolder.getContext().setAuthentication(
+        new OAuth2AuthenticationToken(principal, principal.getAuthorities(), "google"));
+  }
+
+  @AfterEach
+  void logout() {
+    SecurityContextHolder.clearContext();
+  }
+
+  // the row as the OAuth2 login above would have stored it
+  private User stored(long id) {
+    return User.builder()
+        .id(id)
+        .googleSub("115")
+        .email("cgaucho@ucsb.edu")
+        .pictureUrl("https://example.org/cgaucho.jpg")
+        .fullName("Chris Gaucho")
+        .givenName("Chris")
+        .familyName("Gaucho")
+        .emailVerified(true)
+        .locale("en")
+        .hostedDomain("ucsb.edu")
+        .admin(false)
+        .version(3)
+        .build();
+  }
+
+  @Test
+  void test_up_to_date_user_is_read_once_then_served_from_the_cache() {
+    User stored = stored(7);
+    when(userRepository.findByEmail(eq("cgaucho@ucsb.edu"))).thenReturn(Optional.of(stored));
+
+    assertSame(stored, currentUserService.getUser());
+    assertSame(stored, currentUserService.getUser());
+
+    verify(userRepository, times(1)).findByEmail(eq("cgaucho@ucsb.edu"));
+    verify(userRepository, never()).upsertOnLogin(any());
+    verify(userWriteBehindQueue, never()).offer(any());
+  }
+
+  @Test
+  void test_new_user_is_written_at_once_and_answered_with_the_stored_id() {
+    when(userRepository.findByEmail(eq("cgaucho@ucsb.edu")))
+        .thenReturn(Optional.empty())
+        .thenReturn(Optional.of(stored(51)));
+
+    User user = currentUserService.getUser();
+
+    assertEquals(51, user.getId());
+    verify(userRepository).upsertOnLogin(argThat(u -> u.getEmail().equals("cgaucho@ucsb.edu")));
+    verify(userWriteBehindQueue, never()).offer(any());
+  }
+
+  @Test
+  void test_changed_profile_is_written_behind_and_keeps_the_stored_id() {
+    User old = stored(7);
+    old.setPictureUrl("https://example.org/old.jpg");
+    when(userRepository.findByEmail(eq("cgaucho@ucsb.edu"))).thenReturn(Optional.of(old));
+    when(userWriteBehindQueue.offer(any())).thenReturn(true);
+
+    User user = currentUserService.getUser();
+
+    assertEquals(7, user.getId());
+    assertEquals("https://example.org/cgaucho.jpg", user.getPictureUrl());
+    verify(userWriteBehindQueue).offer(user);
+    verify(userRepository, never()).upsertOnLogin(any());
+
+    // the in-memory user is cached until the write lands
+    assertSame(user, currentUserService.getUser());
+    verify(userRepository, times(1)).findByEmail(eq("cgaucho@ucsb.edu"));
+  }
+
+  @Test
+  void test_changed_profile_is_written_synchronously_when_the_queue_is_full() {
+    User old = stored(7);
+    old.setFullName("Chris P. Gaucho");
+    when(userRepository.findByEmail(eq("cgaucho@ucsb.edu"))).thenReturn(Optional.of(old));
+    when(userWriteBehindQueue.offer(any())).thenReturn(false);
+
+    User user = currentUserService.getUser();
+
+    verify(userRepository).upsertOnLogin(user);
+    assertEquals("Chris Gaucho", user.getFullName());
+  }
+
+  @Test
+  void test_configured_admin_is_promoted() {
+    when(adminService.isConfiguredAdmin(eq("cgaucho@ucsb.edu"))).thenReturn(true);
+    when(userRepository.findByEmail(eq("cgaucho@ucsb.edu"))).thenReturn(Optional.of(stored(7)));
+    when(userWriteBehindQueue.offer(any())).thenReturn(true);
+
+    User user = currentUserService.getUser();
+
+    assertTrue(user.getAdmin());
+    verify(userWriteBehindQueue).offer(argThat(User::getAdmin));
+  }
+}
@@ -0,0 +1,87 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.Article;
+import edu.ucsb.cs156.example.errors.UnknownFieldException;
+
+class FieldSelectionServiceTests {
+
+  SessionFactory sessionFactory;
+  Session session;
+  FieldSelectionService fieldSelection = new FieldSelectionService();
+
+  @BeforeEach
+  void setup() {
+    sessionFactory = new Configuration()
+        .addAnnotatedClass(Article.class)
+        .setProperty(AvailableSettings.URL, "jdbc:h2:mem:field_selection;DB_CLOSE_DELAY=-1")
+        .setProperty(AvailableSettings.USER, "sa")
+        .setProperty(AvailableSettings.PASS, "")
+        .setProperty(AvailableSettings.DIALECT, "org.hibernate.dialect.H2Dialect")
+        .setProperty(AvailableSettings.HBM2DDL_AUTO, "create-drop")
+        .buildSessionFactory();
+    session = sessionFactory.openSession();
+    session.beginTransaction();
+    for (String title : List.of("first", "second")) {
+      session.persist(Article.builder()
+          .title(title)
+          .url("https://example.org/" + title)
+          .explanation("a long explanation of " + title)
+          .email("cgaucho@ucsb.edu")
+          .dateAdded(LocalDate.parse("2022-01-03"))
+          .build());
+    }
+    session.flush();
+    session.clear();
+    fieldSelection.entityManager = session;
+  }
+
+  @AfterEach
+  void teardown() {
+    session.getTransaction().rollback();
+    session.close();
+    sessionFactory.close();
+  }
+
+  @Test
+  void test_fields_keeps_request_order_and_drops_repeats() {
+    assertEquals(List.of("title", "id"), fieldSelection.fields(Article.class, " title,id,,title "));
+  }
+
+  @Test
+  void test_fields_rejects_names_the_entity_does_not_map() {
+    UnknownFieldException e = assertThrows(UnknownFieldException.class,
+        () -> fieldSelection.fields(Article.class, "id,password"));
+
+    assertEquals("Article has no field password; known fields are dateAdded, email, explanation, id, title, url, version",
+        e.getMessage());
+    assertThrows(UnknownFieldException.class, () -> fieldSelection.fields(Article.class, " , "));
+  }
+
+  @Test
+  void test_stream_returns_only_the_selected_fields_in_id_order() {
+    try (Stream<Map<String, Object>> rows = fieldSelection.stream(Article.class, List.of("title", "id"))) {
+      List<Map<String, Object>> list = rows.toList();
+
+      assertEquals(2, list.size());
+      assertEquals(List.of("title", "id"), List.copyOf(list.get(0).keySet()));
+      assertEquals("first", list.get(0).get("title"));
+      assertEquals("second", list.get(1).get("title"));
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+
+class ResponseBodyCacheTests {
+
+  ResponseBodyCache cache = cache();
+  AtomicInteger queries = new AtomicInteger();
+
+  private static ResponseBodyCache cache() {
+    ResponseBodyCache cache = new ResponseBodyCache();
+    cache.tableVersions = new TableVersionService();
+    cache.formats = ResponseFormatsTests.formats();
+    cache.primaryTransactions = new PrimaryTransactions();
+    return cache;
+  }
+
+  private ResponseEntity<byte[]> all(String acceptEncoding) {
+    return cache.respond("ucsbdates", acceptEncoding, () -> List.of("version " + queries.incrementAndGet()));
+  }
+
+  @Test
+  void test_body_is_rebuilt_only_after_the_table_changes() {
+    assertArrayEquals("[\"version 1\"]".getBytes(), all(null).getBody());
+    assertArrayEquals("[\"version 1\"]".getBytes(), all(null).getBody());
+
+    cache.tableVersions.bump("ucsbdates");
+
+    assertArrayEquals("[\"version 2\"]".getBytes(), all(null).getBody());
+    assertEquals(2, queries.get());
+  }
+
+  @Test
+  void test_small_bodies_are_not_gzipped() {
+    ResponseEntity<byte[]> response = all("gzip");
+
+    assertNull(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    assertEquals(response.getBody().length, response.getHeaders().getContentLength());
+  }
+
+  @Test
+  void test_large_bodies_are_gzipped_for_clients_that_accept_it() {
+    cache.gzipMinBytes = 0;
+
+    assertEquals("gzip", all("gzip").getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    assertNull(all("identity").getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    assertEquals(1, queries.get());
+  }
+
+  @Test
+  void test_accepts_gzip() {
+    assertTrue(ResponseBodyCache.acceptsGzip("gzip"));
+    assertTrue(ResponseBodyCache.acceptsGzip("deflate, GZIP;q=0.5"));
+    assertTrue(ResponseBodyCache.acceptsGzip("*"));
+    assertFalse(ResponseBodyCache.acceptsGzip(null));
+    assertFalse(ResponseBodyCache.acceptsGzip("br, deflate"));
+    assertFalse(ResponseBodyCache.acceptsGzip("gzip;q=0"));
+    assertFalse(ResponseBodyCache.acceptsGzip("gzip; q=0.0, *"));
+  }
+}
@@ -0,0 +1,56 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.entities.UCSBDate;
+
+class ResponseFormatsTests {
+
+  ResponseFormats formats = formats();
+
+  static ResponseFormats formats() {
+    ResponseFormats formats = new ResponseFormats();
+    formats.builder = new Jackson2ObjectMapperBuilder();
+    formats.mapper = formats.builder.build();
+    formats.init();
+    return formats;
+  }
+
+  @Test
+  void test_negotiate_prefers_json_and_honors_binary_types() {
+    assertEquals(MediaType.APPLICATION_JSON, formats.negotiate(null));
+    assertEquals(MediaType.APPLICATION_JSON, formats.negotiate("*/*"));
+    assertEquals(MediaType.APPLICATION_JSON, formats.negotiate("text/html, application/*"));
+    assertEquals(MediaType.APPLICATION_JSON, formats.negotiate("application/xml"));
+    assertEquals(MediaType.APPLICATION_JSON, formats.negotiate("not a media type"));
+    assertEquals(MediaType.APPLICATION_CBOR, formats.negotiate("application/cbor"));
+    assertEquals(ResponseFormats.SMILE, formats.negotiate("application/json;q=0.5, application/x-jackson-smile"));
+    assertEquals(MediaType.APPLICATION_CBOR, formats.negotiate("application/json;q=0, application/*"));
+  }
+
+  @Test
+  void test_binary_formats_carry_the_same_fields_and_values_as_json() throws Exception {
+    UCSBDate date = UCSBDate.builder()
+        .id(7)
+        .name("firstDayOfClasses")
+        .quarterYYYYQ("20222")
+        .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+        .build();
+    ObjectMapper json = formats.mapper(MediaType.APPLICATION_JSON);
+    JsonNode expected = json.readTree(json.writeValueAsBytes(date));
+
+    for (MediaType format : ResponseFormats.SUPPORTED) {
+      ObjectMapper mapper = formats.mapper(format);
+      assertEquals(expected, mapper.readTree(mapper.writeValueAsBytes(date)), format.toString());
+    }
+  }
+}
@@ -0,0 +1,87 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+class TableVersionServiceTests {
+
+  TableVersionService tableVersions = new TableVersionService();
+
+  @AfterEach
+  void clearSynchronization() {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+
+  @Test
+  void test_bump_changes_only_that_tables_etag() {
+    String dates = tableVersions.etag("ucsbdates", MediaType.APPLICATION_JSON);
+    String commons = tableVersions.etag("ucsbdiningcommons", MediaType.APPLICATION_JSON);
+
+    assertEquals(1, tableVersions.bump("ucsbdates"));
+
+    assertNotEquals(dates, tableVersions.etag("ucsbdates", MediaType.APPLICATION_JSON));
+    assertEquals(commons, tableVersions.etag("ucsbdiningcommons", MediaType.APPLICATION_JSON));
+    assertEquals(1, tableVersions.version("ucsbdates"));
+  }
+
+  @Test
+  void test_etag_is_a_quoted_strong_tag() {
+    String etag = tableVersions.etag("ucsbdates", MediaType.APPLICATION_JSON);
+
+    assertTrue(etag.matches("\"ucsbdates-\\d+-0-json\""), etag);
+  }
+
+  @Test
+  void test_etag_names_the_format() {
+    assertNotEquals(tableVersions.etag("ucsbdates", MediaType.APPLICATION_JSON),
+        tableVersions.etag("ucsbdates", MediaType.APPLICATION_CBOR));
+    assertTrue(tableVersions.etag("ucsbdates", MediaType.APPLICATION_CBOR).endsWith("-cbor\""));
+  }
+
+  @Test
+  void test_a_write_request_bumps_when_its_transaction_commits_and_not_again_at_the_end() {
+    tableVersions.startWrite("ucsbdates");
+    TransactionSynchronizationManager.initSynchronization();
+    tableVersions.transactionStarted();
+
+    assertEquals(0, tableVersions.version("ucsbdates"));
+    TransactionSynchronizationUtils.triggerAfterCommit();
+    assertEquals(1, tableVersions.version("ucsbdates"));
+
+    TransactionSynchronizationManager.clearSynchronization();
+    tableVersions.endWrite();
+    assertEquals(1, tableVersions.version("ucsbdates"));
+  }
+
+  @Test
+  void test_a_write_request_without_a_committed_transaction_bumps_at_the_end() {
+    tableVersions.startWrite("ucsbdates");
+    TransactionSynchronizationManager.initSynchronization();
+    tableVersions.transactionStarted();
+    // rolled back: no afterCommit
+    TransactionSynchronizationManager.clearSynchronization();
+
+    assertEquals(0, tableVersions.version("ucsbdates"));
+    tableVersions.endWrite();
+    assertEquals(1, tableVersions.version("ucsbdates"));
+  }
+
+  @Test
+  void test_transactions_outside_a_write_request_do_not_bump() {
+    TransactionSynchronizationManager.initSynchronization();
+    tableVersions.transactionStarted();
+    TransactionSynchronizationUtils.triggerAfterCommit();
+
+    assertEquals(0, tableVersions.version("ucsbdates"));
+    assertTrue(TransactionSynchronizationManager.getSynchronizations().isEmpty());
+  }
+}
@@ -0,0 +1,78 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = { UserWriteBehindQueue.class, CurrentUserCache.class })
+@TestPropertySource(properties = {
+    "app.users.writeBehind.queueCapacity=2",
+    "app.users.writeBehind.flushIntervalMillis=600000"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class UserWriteBehindQueueTests {
+
+  @MockBean
+  UserRepository userRepository;
+
+  @Autowired
+  UserWriteBehindQueue userWriteBehindQueue;
+
+  @Autowired
+  CurrentUserCache currentUserCache;
+
+  @Test
+  void test_flush_writes_queued_users_in_one_batch_and_invalidates_cache() {
+    User u1 = User.builder().email("cgaucho@ucsb.edu").build();
+    User u2 = User.builder().email("ldelplaya@ucsb.edu").build();
+    currentUserCache.put(u1);
+    when(userRepository.upsertAllOnLogin(any())).thenReturn(new int[] { 1, 1 });
+
+    assertTrue(userWriteBehindQueue.offer(u1));
+    assertTrue(userWriteBehindQueue.offer(u2));
+    assertEquals(2, userWriteBehindQueue.depth());
+
+    userWriteBehindQueue.flush();
+
+    verify(userRepository, times(1)).upsertAllOnLogin(List.of(u1, u2));
+    assertEquals(0, userWriteBehindQueue.depth());
+    assertNull(currentUserCache.get("cgaucho@ucsb.edu"));
+  }
+
+  @Test
+  void test_offer_is_rejected_when_queue_is_full() {
+    assertTrue(userWriteBehindQueue.offer(User.builder().email("a@ucsb.edu").build()));
+    assertTrue(userWriteBehindQueue.offer(User.builder().email("b@ucsb.edu").build()));
+
+    assertFalse(userWriteBehindQueue.offer(User.builder().email("c@ucsb.edu").build()));
+    assertEquals(1, userWriteBehindQueue.rejectedCount());
+  }
+
+  @Test
+  void test_flush_with_empty_queue_does_not_write() {
+    userWriteBehindQueue.flush();
+    verify(userRepository, never()).upsertAllOnLogin(any());
+  }
+
+}
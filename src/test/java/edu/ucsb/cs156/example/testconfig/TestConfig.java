@@ -1,10 +1,15 @@
 package edu.ucsb.cs156.example.testconfig;
 
+import org.mockito.Mockito;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
 
+import edu.ucsb.cs156.example.services.AdminService;
+import edu.ucsb.cs156.example.services.CurrentUserCache;
 import edu.ucsb.cs156.example.services.CurrentUserService;
 import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
+import edu.ucsb.cs156.example.services.PrimaryTransactions;
+import edu.ucsb.cs156.example.services.UserWriteBehindQueue;
 
 @TestConfiguration
 public class TestConfig {
@@ -14,6 +19,27 @@ public class TestConfig {
         return new MockCurrentUserServiceImpl();
     }
 
+    @Bean
+    public AdminService adminService() {
+        return new AdminService();
+    }
+
+    @Bean
+    public CurrentUserCache currentUserCache() {
+        return new CurrentUserCache();
+    }
+
+    // a mock, so that controller tests do not start the background flusher
+    @Bean
+    public UserWriteBehindQueue userWriteBehindQueue() {
+        return Mockito.mock(UserWriteBehindQueue.class);
+    }
+
+    @Bean
+    public PrimaryTransactions primaryTransactions() {
+        return new PrimaryTransactions();
+    }
+
     @Bean
     public GrantedAuthoritiesService grantedAuthoritiesService() {
         return new GrantedAuthoritiesService();